@@ -0,0 +1,60 @@
+package com.decompiler.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.decompiler.config.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * 基准测试共用的配置
+ */
+final class BenchmarkSupport {
+    /**
+     * 默认选项，与直接使用 OptionsBuilder 时一致
+     */
+    static final String OPTIONS_DEFAULT = "default";
+    /**
+     * 关闭泛型、本地变量名、模式匹配等分析的精简选项，用于衡量这些分析的开销
+     */
+    static final String OPTIONS_MINIMAL = "minimal";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 关闭逐个文件的INFO日志，避免日志输出影响测量结果
+     */
+    static void quietLogging() {
+        Logger root = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+        if (root instanceof ch.qos.logback.classic.Logger) {
+            ((ch.qos.logback.classic.Logger) root).setLevel(Level.WARN);
+        }
+    }
+
+    /**
+     * 按名称创建Vineflower选项
+     *
+     * @param optionSet 选项集名称
+     * @param threadCount Vineflower 内部线程数
+     */
+    static Map<String, Object> options(String optionSet, int threadCount) {
+        OptionsBuilder builder = new OptionsBuilder().withThreads(threadCount);
+        switch (optionSet) {
+            case OPTIONS_DEFAULT:
+                break;
+            case OPTIONS_MINIMAL:
+                builder.withGenerics(false)
+                        .withLocalVarNames(false)
+                        .withMethodParams(false)
+                        .withPatternMatching(false)
+                        .withSwitchExpressions(false)
+                        .withRemoveEmptyTryCatch(false);
+                break;
+            default:
+                throw new IllegalArgumentException("未知的选项集: " + optionSet);
+        }
+        return builder.build();
+    }
+}
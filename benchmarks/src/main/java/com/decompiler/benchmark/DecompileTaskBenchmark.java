@@ -0,0 +1,96 @@
+package com.decompiler.benchmark;
+
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.metrics.DecompileMetrics;
+import com.decompiler.model.DecompileJob;
+import com.decompiler.task.DecompileResult;
+import com.decompiler.task.DecompileTask;
+import com.decompiler.task.TaskContext;
+import com.decompiler.util.ArchiveReader;
+import com.decompiler.util.JarUtils;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个 DecompileTask.call 的延迟
+ * 每次反编译同一个生成的顶层类，Vineflower 内部线程数固定为1，与多任务并行时的用法一致
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class DecompileTaskBenchmark {
+    private static final String SAMPLE_ENTRY = "bench/p0/Sample0.class";
+
+    @Param({BenchmarkSupport.OPTIONS_DEFAULT, BenchmarkSupport.OPTIONS_MINIMAL})
+    public String optionSet;
+
+    @Param({"false", "true"})
+    public boolean inMemory;
+
+    private File workDir;
+    private DecompileJob job;
+    private ArchiveReader archiveReader;
+    private TaskContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkSupport.quietLogging();
+        workDir = Files.createTempDirectory("bench-task").toFile();
+        File jarFile = SyntheticJar.generate(new File(workDir, "fixture"), 1);
+        File outputDir = new File(workDir, "output");
+
+        if (inMemory) {
+            job = new DecompileJob(jarFile, SAMPLE_ENTRY, -1, outputDir.getAbsolutePath(), null);
+        } else {
+            File extractDir = new File(workDir, "extract");
+            JarUtils.extractJar(jarFile, extractDir);
+            job = new DecompileJob(new File(extractDir, SAMPLE_ENTRY), outputDir.getAbsolutePath(), null);
+        }
+
+        DecompilerConfig config = new DecompilerConfig.Builder()
+                .inputPath(jarFile.getAbsolutePath())
+                .outputPath(outputDir.getAbsolutePath())
+                .threadCount(1)
+                .inMemory(inMemory)
+                .build();
+        Map<String, Object> options = BenchmarkSupport.options(optionSet, 1);
+        archiveReader = new ArchiveReader();
+        context = new TaskContext(config, options, archiveReader, null, null, new DecompileMetrics(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        archiveReader.close();
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    @Benchmark
+    public DecompileResult call() {
+        DecompileResult result = new DecompileTask(job, context).call();
+        if (!result.isSuccess()) {
+            throw new IllegalStateException("反编译失败: " + result.getErrorMessage());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+package com.decompiler.benchmark;
+
+import com.decompiler.Decompiler;
+import com.decompiler.config.DecompilerConfig;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decompiler.execute 反编译整个输入的耗时
+ * 每次迭代清空输出目录后完整执行一次，结果除以 class 数即为吞吐量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DecompilerBenchmark {
+    @Param({"50", "200"})
+    public int classCount;
+
+    @Param({"1", "4", "8"})
+    public int threadCount;
+
+    @Param({BenchmarkSupport.OPTIONS_DEFAULT, BenchmarkSupport.OPTIONS_MINIMAL})
+    public String optionSet;
+
+    @Param({"false", "true"})
+    public boolean inMemory;
+
+    private File workDir;
+    private File outputDir;
+    private DecompilerConfig config;
+    private Map<String, Object> options;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkSupport.quietLogging();
+        workDir = Files.createTempDirectory("bench-decompiler").toFile();
+
+        File inputDir = new File(workDir, "input");
+        File jarFile = SyntheticJar.generate(new File(workDir, "fixture"), classCount);
+        FileUtils.copyFileToDirectory(jarFile, inputDir);
+
+        outputDir = new File(workDir, "output");
+        config = new DecompilerConfig.Builder()
+                .inputPath(inputDir.getAbsolutePath())
+                .outputPath(outputDir.getAbsolutePath())
+                .threadCount(threadCount)
+                .inMemory(inMemory)
+                .build();
+        // 外层已经按 threadCount 并行，Vineflower 内部只使用一个线程
+        options = BenchmarkSupport.options(optionSet, 1);
+    }
+
+    @Setup(Level.Iteration)
+    public void cleanOutputDir() throws IOException {
+        FileUtils.deleteDirectory(outputDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    @Benchmark
+    public File execute() throws IOException {
+        // Decompiler 内部的线程池只能使用一次，每次执行都需要新建
+        new Decompiler(config, options).execute();
+        return outputDir;
+    }
+}
@@ -0,0 +1,94 @@
+package com.decompiler.benchmark;
+
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.model.DecompileJob;
+import com.decompiler.task.TaskManager;
+import com.decompiler.util.FileUtil;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileUtil.processDirectory 发现任务的耗时
+ * 输入目录中放置若干个JAR，解压模式包含解压和复制，内存模式只读取中央目录
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class DiscoveryBenchmark {
+    /**
+     * 输入目录中JAR的数量
+     */
+    private static final int JAR_COUNT = 4;
+
+    @Param({"100", "1000"})
+    public int classCount;
+
+    @Param({"1", "4"})
+    public int threadCount;
+
+    @Param({"false", "true"})
+    public boolean inMemory;
+
+    private File workDir;
+    private File outputDir;
+    private DecompilerConfig config;
+    private TaskManager taskManager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkSupport.quietLogging();
+        workDir = Files.createTempDirectory("bench-discovery").toFile();
+
+        File inputDir = new File(workDir, "input");
+        File jarFile = SyntheticJar.generate(new File(workDir, "fixture"), classCount);
+        for (int i = 0; i < JAR_COUNT; i++) {
+            FileUtils.copyFile(jarFile, new File(inputDir, "lib-" + i + ".jar"));
+        }
+
+        outputDir = new File(workDir, "output");
+        config = new DecompilerConfig.Builder()
+                .inputPath(inputDir.getAbsolutePath())
+                .outputPath(outputDir.getAbsolutePath())
+                .threadCount(threadCount)
+                .inMemory(inMemory)
+                .build();
+        taskManager = new TaskManager(threadCount);
+    }
+
+    @Setup(Level.Iteration)
+    public void cleanOutputDir() throws IOException {
+        FileUtils.deleteDirectory(outputDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        taskManager.shutdown();
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    @Benchmark
+    public List<DecompileJob> processDirectory() throws IOException {
+        return FileUtil.processDirectory(new File(config.getInputPath()), config, taskManager);
+    }
+}
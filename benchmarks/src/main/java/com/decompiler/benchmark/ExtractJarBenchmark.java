@@ -0,0 +1,64 @@
+package com.decompiler.benchmark;
+
+import com.decompiler.util.JarUtils;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JarUtils.extractJar 解压一个JAR的耗时
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ExtractJarBenchmark {
+    @Param({"100", "1000"})
+    public int classCount;
+
+    private File workDir;
+    private File jarFile;
+    private File extractDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkSupport.quietLogging();
+        workDir = Files.createTempDirectory("bench-extract").toFile();
+        jarFile = SyntheticJar.generate(new File(workDir, "fixture"), classCount);
+        extractDir = new File(workDir, "extract");
+    }
+
+    @Setup(Level.Iteration)
+    public void cleanExtractDir() throws IOException {
+        FileUtils.deleteDirectory(extractDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    @Benchmark
+    public File extractJar() throws IOException {
+        JarUtils.extractJar(jarFile, extractDir);
+        return extractDir;
+    }
+}
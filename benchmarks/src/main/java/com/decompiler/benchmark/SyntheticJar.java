@@ -0,0 +1,204 @@
+package com.decompiler.benchmark;
+
+import org.apache.commons.io.FileUtils;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * 生成基准测试用的JAR文件
+ * 源码按模板生成后用系统编译器编译，每个类包含循环、switch、异常处理、lambda、泛型以及内部类和匿名类，
+ * 反编译开销接近普通业务代码
+ */
+public final class SyntheticJar {
+    /**
+     * 每个包中的类数量
+     */
+    private static final int CLASSES_PER_PACKAGE = 20;
+
+    private SyntheticJar() {
+    }
+
+    /**
+     * 在指定目录下生成包含 classCount 个顶层类的JAR文件
+     *
+     * @param workDir 工作目录，源码和编译结果也放在这里
+     * @param classCount 顶层类的数量，加上内部类和匿名类实际的class文件数约为三倍
+     * @return 生成的JAR文件
+     */
+    public static File generate(File workDir, int classCount) throws IOException {
+        File sourceDir = new File(workDir, "src");
+        File classesDir = new File(workDir, "classes");
+        FileUtils.forceMkdir(sourceDir);
+        FileUtils.forceMkdir(classesDir);
+
+        List<String> sourceFiles = new ArrayList<>(classCount);
+        for (int i = 0; i < classCount; i++) {
+            String packageName = "bench.p" + (i / CLASSES_PER_PACKAGE);
+            String className = "Sample" + i;
+            File packageDir = new File(sourceDir, packageName.replace('.', File.separatorChar));
+            FileUtils.forceMkdir(packageDir);
+
+            File sourceFile = new File(packageDir, className + ".java");
+            Files.writeString(sourceFile.toPath(), classSource(packageName, className, i), StandardCharsets.UTF_8);
+            sourceFiles.add(sourceFile.getAbsolutePath());
+        }
+
+        compile(sourceFiles, classesDir);
+
+        File jarFile = new File(workDir, "synthetic-" + classCount + ".jar");
+        writeJar(classesDir.toPath(), jarFile);
+        return jarFile;
+    }
+
+    private static void compile(List<String> sourceFiles, File classesDir) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("当前运行环境没有Java编译器，请使用JDK运行基准测试");
+        }
+
+        List<String> arguments = new ArrayList<>();
+        // 生成本地变量表，与常见的调试构建一致
+        arguments.add("-g");
+        arguments.add("-nowarn");
+        arguments.add("-d");
+        arguments.add(classesDir.getAbsolutePath());
+        arguments.addAll(sourceFiles);
+
+        int exitCode = compiler.run(null, null, null, arguments.toArray(new String[0]));
+        if (exitCode != 0) {
+            throw new IllegalStateException("编译生成的源码失败，退出码: " + exitCode);
+        }
+    }
+
+    private static void writeJar(Path classesDir, File jarFile) throws IOException {
+        List<Path> classFiles;
+        try (Stream<Path> paths = Files.walk(classesDir)) {
+            classFiles = paths.filter(Files::isRegularFile).sorted().toList();
+        }
+
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jarFile.toPath()))) {
+            for (Path classFile : classFiles) {
+                String entryName = classesDir.relativize(classFile).toString().replace(File.separatorChar, '/');
+                out.putNextEntry(new JarEntry(entryName));
+                Files.copy(classFile, out);
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static String classSource(String packageName, String className, int index) {
+        return "package " + packageName + ";\n"
+                + "\n"
+                + "import java.util.*;\n"
+                + "import java.util.function.*;\n"
+                + "\n"
+                + "public class " + className + "<T extends Comparable<T>> {\n"
+                + "    private final List<T> items = new ArrayList<>();\n"
+                + "    private final Map<String, Integer> counters = new HashMap<>();\n"
+                + "    private int state = " + index + ";\n"
+                + "\n"
+                + "    public void add(T item) {\n"
+                + "        if (item == null) {\n"
+                + "            throw new IllegalArgumentException(\"item\");\n"
+                + "        }\n"
+                + "        items.add(item);\n"
+                + "        counters.merge(item.toString(), 1, Integer::sum);\n"
+                + "    }\n"
+                + "\n"
+                + "    public T max() {\n"
+                + "        T best = null;\n"
+                + "        for (T item : items) {\n"
+                + "            if (best == null || item.compareTo(best) > 0) {\n"
+                + "                best = item;\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return best;\n"
+                + "    }\n"
+                + "\n"
+                + "    public String describe(int code) {\n"
+                + "        switch (code % 5) {\n"
+                + "            case 0: return \"zero\";\n"
+                + "            case 1: return \"one\" + state;\n"
+                + "            case 2: state++; return \"two\";\n"
+                + "            case 3: return String.valueOf(counters.getOrDefault(\"k\" + code, -1));\n"
+                + "            default: return \"other\";\n"
+                + "        }\n"
+                + "    }\n"
+                + "\n"
+                + "    public int parse(String text) {\n"
+                + "        try {\n"
+                + "            return Integer.parseInt(text.trim());\n"
+                + "        } catch (NumberFormatException e) {\n"
+                + "            return -1;\n"
+                + "        } finally {\n"
+                + "            state ^= text.length();\n"
+                + "        }\n"
+                + "    }\n"
+                + "\n"
+                + "    public List<String> transform(Function<T, String> mapper) {\n"
+                + "        List<String> result = new ArrayList<>();\n"
+                + "        items.stream().filter(Objects::nonNull).map(mapper).forEach(value -> {\n"
+                + "            if (!value.isEmpty()) {\n"
+                + "                result.add(value.toUpperCase());\n"
+                + "            }\n"
+                + "        });\n"
+                + "        return result;\n"
+                + "    }\n"
+                + "\n"
+                + "    public long checksum(int[] values) {\n"
+                + "        long sum = 0;\n"
+                + "        int i = 0;\n"
+                + "        while (i < values.length) {\n"
+                + "            sum = sum * 31 + (values[i] > 0 ? values[i] : -values[i]);\n"
+                + "            if (sum > Integer.MAX_VALUE) {\n"
+                + "                break;\n"
+                + "            }\n"
+                + "            i++;\n"
+                + "        }\n"
+                + "        return sum;\n"
+                + "    }\n"
+                + "\n"
+                + "    public Runnable task() {\n"
+                + "        return new Runnable() {\n"
+                + "            @Override\n"
+                + "            public void run() {\n"
+                + "                state += items.size();\n"
+                + "            }\n"
+                + "        };\n"
+                + "    }\n"
+                + "\n"
+                + "    public static class Node {\n"
+                + "        private final String name;\n"
+                + "        private Node next;\n"
+                + "\n"
+                + "        public Node(String name) {\n"
+                + "            this.name = name;\n"
+                + "        }\n"
+                + "\n"
+                + "        public int depth() {\n"
+                + "            int depth = 0;\n"
+                + "            for (Node node = this; node != null; node = node.next) {\n"
+                + "                depth++;\n"
+                + "            }\n"
+                + "            return depth;\n"
+                + "        }\n"
+                + "\n"
+                + "        @Override\n"
+                + "        public String toString() {\n"
+                + "            return name + \"->\" + next;\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n";
+    }
+}
@@ -1,12 +1,32 @@
 package com.decompiler;
 
+import com.decompiler.cache.CheckpointJournal;
+import com.decompiler.cache.OutputManifest;
+import com.decompiler.cache.ResultCache;
 import com.decompiler.config.DecompilerConfig;
+import com.decompiler.config.GroupingMode;
+import com.decompiler.metrics.DecompileMetrics;
+import com.decompiler.model.DecompileBatch;
 import com.decompiler.model.DecompileJob;
+import com.decompiler.task.BatchDecompileTask;
+import com.decompiler.task.ClassDeduplicator;
+import com.decompiler.task.ConcurrencyController;
+import com.decompiler.task.DecompilePipeline;
 import com.decompiler.task.DecompileResult;
 import com.decompiler.task.DecompileTask;
+import com.decompiler.task.MemoryBudget;
+import com.decompiler.task.TaskContext;
 import com.decompiler.task.TaskManager;
+import com.decompiler.task.TimeoutGuard;
+import com.decompiler.util.ArchiveReader;
+import com.decompiler.util.ClassFileScanner;
+import com.decompiler.util.ClasspathIndex;
 import com.decompiler.util.FileUtil;
+import com.decompiler.util.IoExecutor;
 import com.decompiler.util.JarUtils;
+import com.decompiler.util.LibraryIndex;
+import com.decompiler.util.SourceArchiveWriter;
+import com.decompiler.worker.WorkerPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,7 +35,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class Decompiler {
     private static final Logger logger = LoggerFactory.getLogger(Decompiler.class);
@@ -23,78 +46,557 @@ public class Decompiler {
     private final DecompilerConfig config;
     private final Map<String, Object> vineflowerOptions;
     private final TaskManager taskManager;
-    private final AtomicInteger successCount = new AtomicInteger(0);
-    private final AtomicInteger failureCount = new AtomicInteger(0);
+    private final IoExecutor ioExecutor;
+    private final ArchiveReader archiveReader = new ArchiveReader();
+    private final DecompileMetrics metrics;
+    private ResultCache resultCache;
+    private TimeoutGuard timeoutGuard;
+    private WorkerPool workerPool;
+    private OutputManifest manifest;
+    private CheckpointJournal journal;
+    private ClassDeduplicator deduplicator;
+    private LibraryIndex libraries;
+    private SourceArchiveWriter archiveWriter;
+    private ClasspathIndex classpath;
+    private TaskContext taskContext;
+    private Consumer<DecompileResult> resultListener;
+    private MemoryBudget memoryBudget;
 
     public Decompiler(DecompilerConfig config, Map<String, Object> vineflowerOptions) {
         this.config = config;
         this.vineflowerOptions = vineflowerOptions;
-        this.taskManager = new TaskManager(config.getThreadCount());
+        this.metrics = new DecompileMetrics(config.getThreadCount());
+        ConcurrencyController concurrency = config.isAdaptiveConcurrency()
+                ? new ConcurrencyController(config.getThreadCount(), metrics::getBytesRead) : null;
+        this.ioExecutor = new IoExecutor(config.getIoConcurrency());
+        this.taskManager = new TaskManager(config.getThreadCount(), metrics, concurrency, ioExecutor);
+    }
+
+    /**
+     * 在外部提供的线程池中反编译，如守护进程中多个请求共享的线程池，不为本次运行创建线程
+     * 不支持流式模式和自适应并发
+     */
+    public Decompiler(DecompilerConfig config, Map<String, Object> vineflowerOptions, ExecutorService executorService) {
+        this.config = config;
+        this.vineflowerOptions = vineflowerOptions;
+        this.metrics = new DecompileMetrics(config.getThreadCount());
+        this.ioExecutor = new IoExecutor(config.getIoConcurrency());
+        this.taskManager = new TaskManager(config.getThreadCount(), metrics, executorService, ioExecutor);
+    }
+
+    /**
+     * 使用外部共享的结果缓存，如守护进程中所有请求共享一个，不必每次运行都扫描缓存目录
+     * 缓存的选项需要与本次运行相同；配置中没有指定缓存目录时不使用
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * 使用外部共享的内存预算，如守护进程中同时运行的请求共用一个；没有设置时按配置创建
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * 每得到一个class的结果时调用，包括去重和缓存得到的结果；不会被并发调用
+     */
+    public void setResultListener(Consumer<DecompileResult> resultListener) {
+        this.resultListener = resultListener;
+    }
+
+    /**
+     * 本次运行的指标，反编译过程中可以随时读取
+     */
+    public DecompileMetrics getMetrics() {
+        return metrics;
     }
 
     public void execute() throws IOException {
         logger.info("使用 {} 个线程启动反编译", config.getThreadCount());
+        logger.info("I/O任务最多同时执行 {} 个，使用{}", config.getIoConcurrency(),
+                ioExecutor.isVirtual() ? "虚拟线程" : "平台线程");
         logger.info("输入目录：{}", config.getInputPath());
         logger.info("输出目录: {}", config.getOutputPath());
 
+        if (config.getOutputArchive() != null) {
+            warnUnsupportedWithArchive();
+            archiveWriter = new SourceArchiveWriter(new File(config.getOutputArchive()),
+                    new File(config.getOutputPath()), config.getQueueCapacity(), metrics);
+        }
+        if (config.getClasspathIndex() != null) {
+            // 工作进程映射同一个索引文件，需要在启动工作进程之前建好
+            long start = System.nanoTime();
+            classpath = ClasspathIndex.update(new File(config.getClasspathIndex()), new File(config.getInputPath()),
+                    archiveReader);
+            metrics.addPhaseTime(DecompileMetrics.Phase.EXTRACT, System.nanoTime() - start);
+        }
+        if (config.isOutOfProcess() && archiveWriter == null) {
+            // 结果缓存和任务期限由工作进程各自处理
+            resultCache = null;
+            if (memoryBudget != null || config.getMemoryBudgetMb() > 0) {
+                logger.warn("使用工作进程时不使用内存预算，每个工作进程有自己的堆内存");
+                memoryBudget = null;
+            }
+            workerPool = new WorkerPool(config, vineflowerOptions, metrics, config.getThreadCount());
+        } else {
+            if (config.getCacheDir() == null || archiveWriter != null) {
+                resultCache = null;
+            } else if (resultCache == null) {
+                resultCache = new ResultCache(new File(config.getCacheDir()), config.getCacheMaxSize(), vineflowerOptions,
+                        classpath != null);
+            }
+            if (config.getJobTimeoutMillis() > 0) {
+                timeoutGuard = new TimeoutGuard();
+            }
+            if (memoryBudget == null && config.getMemoryBudgetMb() > 0) {
+                memoryBudget = new MemoryBudget(config.getMemoryBudgetMb() * 1024L * 1024);
+            }
+        }
+        if (config.isIncremental() && archiveWriter == null) {
+            manifest = OutputManifest.load(new File(config.getOutputPath()), config, vineflowerOptions);
+        }
+        if (archiveWriter == null) {
+            journal = CheckpointJournal.open(new File(config.getOutputPath()), config, vineflowerOptions);
+        }
+        if (config.getLibraryIndex() != null) {
+            File sourcesDir = config.getLibrarySourcesDir() == null ? null : new File(config.getLibrarySourcesDir());
+            libraries = LibraryIndex.load(new File(config.getLibraryIndex()), sourcesDir, archiveWriter);
+        }
+        if (config.isDeduplicate() && archiveWriter == null) {
+            deduplicator = new ClassDeduplicator(config, archiveReader, metrics, workerPool == null);
+        }
+        taskContext = new TaskContext(config, vineflowerOptions, archiveReader, resultCache, timeoutGuard, metrics,
+                archiveWriter, classpath, taskManager.getConcurrency(), memoryBudget, ioExecutor);
+        if (config.isJmxEnabled()) {
+            metrics.registerMBean();
+        }
+
+        try {
+            if (config.isStreaming()) {
+                // 边发现边反编译
+                new DecompilePipeline(config, taskManager, manifest, libraries, this::createStreamTask).run(this::processResult);
+            } else if (!processAllJobs()) {
+                return;
+            }
+            if (archiveWriter != null) {
+                // 正常结束时写入归档失败作为本次运行的错误抛出
+                archiveWriter.close();
+            }
+        } finally {
+            closeJournal();
+            saveManifest();
+            closeArchiveWriter();
+            archiveReader.close();
+            ioExecutor.close();
+            if (timeoutGuard != null) {
+                timeoutGuard.close();
+            }
+            if (workerPool != null) {
+                workerPool.close();
+            }
+            metrics.finish();
+            metrics.unregisterMBean();
+            writeMetricsFile();
+        }
+
+        // 输出统计信息
+        printStats();
+    }
+
+    /**
+     * 写入源码归档时不使用依赖输出目录中文件的功能
+     */
+    private void warnUnsupportedWithArchive() {
+        if (config.isOutOfProcess()) {
+            logger.warn("写入源码归档时不使用工作进程，在当前进程中反编译");
+        }
+        if (config.getCacheDir() != null) {
+            logger.warn("写入源码归档时不使用结果缓存");
+        }
+        if (config.isIncremental()) {
+            logger.warn("写入源码归档时不支持增量反编译，重新反编译全部输入");
+        }
+        if (config.isDeduplicate()) {
+            logger.warn("写入源码归档时不去重");
+        }
+        if (config.isResume()) {
+            logger.warn("写入源码归档时不记录检查点，不能从上次中断的位置继续");
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.warn("写入检查点日志失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 出错提前结束时关闭源码归档，已经关闭时不做任何事
+     */
+    private void closeArchiveWriter() {
+        if (archiveWriter == null) {
+            return;
+        }
+        try {
+            archiveWriter.close();
+        } catch (IOException e) {
+            logger.error("写入源码归档失败: {}", config.getOutputArchive(), e);
+        }
+    }
+
+    private void saveManifest() {
+        if (manifest == null) {
+            return;
+        }
+        if (libraries != null) {
+            libraries.getServedFiles().forEach(manifest::addOutputs);
+        }
+        try {
+            manifest.save();
+        } catch (IOException e) {
+            logger.warn("保存增量清单失败: {}", e.getMessage());
+        }
+    }
+
+    private void writeMetricsFile() {
+        if (config.getMetricsFile() == null) {
+            return;
+        }
+        try {
+            metrics.writeSummary(new File(config.getMetricsFile()));
+        } catch (IOException e) {
+            logger.warn("写入指标文件失败: {} - {}", config.getMetricsFile(), e.getMessage());
+        }
+    }
+
+    /**
+     * 先收集全部任务再执行，没有找到任务时返回false
+     */
+    private boolean processAllJobs() throws IOException {
         // 准备需要反编译的文件
         List<DecompileJob> jobs = prepareDecompileJobs();
 
         logger.info("共找到 {} 个等待反编译的文件", jobs.size());
 
         if (jobs.isEmpty()) {
-            logger.warn("没有找到可反编译的文件");
-            return;
+            if (manifest != null && manifest.getUnchangedCount() > 0) {
+                logger.info("输入没有变化，沿用上次的反编译结果");
+            } else if (libraries != null && libraries.getSkippedClassCount() > 0) {
+                logger.info("输入中只有已知的第三方库，没有需要反编译的文件");
+            } else {
+                logger.warn("没有找到可反编译的文件");
+            }
+            return false;
         }
 
         // 执行反编译任务
-        List<DecompileResult> results = taskManager.processTasks(jobs,
-                (job) -> new DecompileTask(job, config, vineflowerOptions),
-                this::processResult);
+        List<DecompileResult> results;
+        if (config.getGroupingMode() == GroupingMode.NONE) {
+            jobs = replayCompleted(jobs);
+            if (deduplicator != null) {
+                List<DecompileBatch> batches = new ArrayList<>(jobs.size());
+                for (DecompileJob job : jobs) {
+                    DecompileBatch batch = new DecompileBatch(job.getDisplayName());
+                    batch.addJob(job);
+                    batches.add(batch);
+                }
+                batches = deduplicate(batches);
+                jobs = batches.stream().flatMap(batch -> batch.getJobs().stream()).collect(Collectors.toList());
+            }
+            results = taskManager.processTasks(jobs, this::estimateCost,
+                    this::createJobTask,
+                    this::processResult);
+        } else {
+            List<DecompileBatch> batches = DecompileBatch.group(jobs, config.getGroupingMode());
+            logger.info("按 {} 分为 {} 组进行反编译", config.getGroupingMode(), batches.size());
+            batches = replayCompletedBatches(batches);
+            if (deduplicator != null) {
+                batches = deduplicate(batches);
+            }
+            results = taskManager.processBatches(batches, this::createTask, this::processResult);
+        }
+        return true;
+    }
 
-        // 输出统计信息
-        printStats();
+    /**
+     * 去掉组内与之前的源文件内容相同的任务，只返回仍需反编译的组
+     * 指纹在I/O执行器中并行计算，登记按原来的顺序进行，第一次出现的源文件作为代表
+     */
+    private List<DecompileBatch> deduplicate(List<DecompileBatch> batches) {
+        long start = System.nanoTime();
+        List<Callable<List<ClassDeduplicator.SourceUnit>>> fingerprintTasks = new ArrayList<>(batches.size());
+        for (DecompileBatch batch : batches) {
+            fingerprintTasks.add(() -> deduplicator.fingerprint(batch));
+        }
+        List<List<ClassDeduplicator.SourceUnit>> fingerprints = taskManager.executeParallel(fingerprintTasks);
+
+        List<DecompileBatch> unique = new ArrayList<>(batches.size());
+        for (int i = 0; i < batches.size(); i++) {
+            // 计算指纹的任务失败时这一组不参与去重
+            List<ClassDeduplicator.SourceUnit> units = fingerprints.get(i) != null ? fingerprints.get(i) : List.of();
+            ClassDeduplicator.Deduplicated deduplicated = deduplicator.deduplicate(batches.get(i), units);
+            deduplicated.getResults().forEach(this::processResult);
+            if (deduplicated.getBatch() != null) {
+                unique.add(deduplicated.getBatch());
+            }
+        }
+        metrics.addPhaseTime(DecompileMetrics.Phase.WALK, System.nanoTime() - start);
+
+        logger.info("去重后剩余 {} 组，跳过 {} 个重复的class",
+                unique.size(), metrics.getDuplicateClassCount());
+        return unique;
     }
 
-    private void processResult(DecompileResult result) {
-        if (result.isSuccess()) {
-            successCount.incrementAndGet();
+    /**
+     * 从检查点日志中恢复上次运行已经完成的任务，返回仍然需要反编译的任务
+     */
+    private List<DecompileJob> replayCompleted(List<DecompileJob> jobs) {
+        if (journal == null) {
+            return jobs;
+        }
+        List<DecompileJob> pending = new ArrayList<>(jobs.size());
+        for (DecompileJob job : jobs) {
+            List<DecompileResult> replayed = journal.replay(List.of(job));
+            if (replayed == null) {
+                pending.add(job);
+            } else {
+                replayed.forEach(this::processResult);
+            }
+        }
+        logReplayed(jobs.size() - pending.size(), pending.size());
+        return pending;
+    }
+
+    /**
+     * 从检查点日志中恢复上次运行已经完成的组，组内有任何一个任务没有完成时整组重新反编译
+     */
+    private List<DecompileBatch> replayCompletedBatches(List<DecompileBatch> batches) {
+        if (journal == null) {
+            return batches;
+        }
+        List<DecompileBatch> pending = new ArrayList<>(batches.size());
+        int replayedJobs = 0;
+        int pendingJobs = 0;
+        for (DecompileBatch batch : batches) {
+            List<DecompileResult> replayed = journal.replay(batch.getJobs());
+            if (replayed == null) {
+                pending.add(batch);
+                pendingJobs += batch.getJobs().size();
+            } else {
+                replayed.forEach(this::processResult);
+                replayedJobs += replayed.size();
+            }
+        }
+        logReplayed(replayedJobs, pendingJobs);
+        return pending;
+    }
+
+    private static void logReplayed(int replayed, int pending) {
+        if (replayed > 0) {
+            logger.info("从检查点恢复 {} 个已完成的class，还需要反编译 {} 个", replayed, pending);
+        }
+    }
+
+    /**
+     * 流式处理时在工作线程中恢复检查点和去重，已完成的组和重复的组都不反编译
+     */
+    private Callable<List<DecompileResult>> createStreamTask(DecompileBatch batch) {
+        if (journal != null) {
+            List<DecompileResult> replayed = journal.replay(batch.getJobs());
+            if (replayed != null) {
+                return () -> replayed;
+            }
+        }
+        if (deduplicator == null) {
+            return createTask(batch);
+        }
+        return () -> {
+            ClassDeduplicator.Deduplicated deduplicated = deduplicator.deduplicate(batch, deduplicator.fingerprint(batch));
+            if (deduplicated.getBatch() == null) {
+                return deduplicated.getResults();
+            }
+            List<DecompileResult> results = new ArrayList<>(deduplicated.getResults());
+            results.addAll(createTask(deduplicated.getBatch()).call());
+            return results;
+        };
+    }
+
+    /**
+     * 为一组任务创建反编译任务，不分组时组内的每个class各自使用一个上下文
+     * 任务抛出异常时组内每个class得到失败结果，不会从本次运行中消失
+     */
+    private Callable<List<DecompileResult>> createTask(DecompileBatch batch) {
+        Callable<List<DecompileResult>> task;
+        if (workerPool != null) {
+            task = () -> workerPool.decompile(batch.getJobs());
+        } else if (config.getGroupingMode() == GroupingMode.NONE) {
+            task = () -> batch.getJobs().stream()
+                    .map(job -> new DecompileTask(job, taskContext).call())
+                    .collect(Collectors.toList());
         } else {
-            failureCount.incrementAndGet();
+            task = new BatchDecompileTask(batch, taskContext);
+        }
+        return () -> {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                logger.error("反编译失败: " + batch.getKey(), e);
+                return batch.getJobs().stream()
+                        .map(job -> new DecompileResult(job, false, e.getMessage(), null))
+                        .collect(Collectors.toList());
+            }
+        };
+    }
+
+    /**
+     * 为单个任务创建反编译任务，使用工作进程时交给工作进程执行
+     * 代表任务失败时同样需要结果，等待它的重复任务才能得到填充
+     */
+    private Callable<DecompileResult> createJobTask(DecompileJob job) {
+        if (workerPool != null) {
+            return () -> {
+                long start = System.nanoTime();
+                try {
+                    return workerPool.decompile(List.of(job)).get(0);
+                } catch (Exception e) {
+                    logger.error("反编译失败: " + job.getDisplayName(), e);
+                    return new DecompileResult(job, false, e.getMessage(), null);
+                } finally {
+                    metrics.recordClassLatency(System.nanoTime() - start);
+                }
+            };
+        }
+        return new DecompileTask(job, taskContext);
+    }
+
+    /**
+     * 估算反编译开销，任务已有扫描结果（如去重时读取过）时按class字节数和方法数计算，否则只按大小计算
+     * 不为排序读取class，否则每个class在反编译之前要多读一遍
+     */
+    private long estimateCost(DecompileJob job) {
+        return ClassFileScanner.estimateCost(job.getClassInfo(), job.getSize());
+    }
+
+    private void processResult(DecompileResult result) {
+        metrics.recordResult(result);
+        if (journal != null) {
+            journal.record(result);
+        }
+        if (manifest != null) {
+            manifest.recordResult(result);
+        }
+        if (!result.isSuccess()) {
             logger.warn("反编译失败: {}, 错误: {}",
-                    result.getJob().getSourceFile().getName(),
+                    result.getJob().getDisplayName(),
                     result.getErrorMessage());
         }
+        if (resultListener != null) {
+            resultListener.accept(result);
+        }
+        // 代表任务完成后，等待它的重复任务直接使用它的输出
+        if (deduplicator != null) {
+            deduplicator.complete(result).forEach(this::processResult);
+        }
     }
 
     private List<DecompileJob> prepareDecompileJobs() throws IOException {
         File inputFile = new File(config.getInputPath());
+        // 单个JAR或class文件没有变化时不需要任何任务
+        if (!inputFile.isDirectory() && inputFile.exists() && !FileUtil.needsDecompile(manifest, inputFile)) {
+            return List.of();
+        }
 
         // 如果是目录
         if (inputFile.isDirectory()) {
-            return FileUtil.processDirectory(inputFile, config.getOutputPath(), taskManager);
+            return FileUtil.processDirectory(inputFile, config, taskManager, manifest, libraries);
         }
         // 如果是 JAR
         else if (JarUtils.isJarFile(inputFile)) {
-            return FileUtil.processJarFile(inputFile, config.getOutputPath());
+            long start = System.nanoTime();
+            try {
+                return register(inputFile, FileUtil.processJarFile(inputFile, config, libraries));
+            } finally {
+                metrics.addPhaseTime(DecompileMetrics.Phase.EXTRACT, System.nanoTime() - start);
+            }
         }
         // 如果是单个 class 文件
         else if (inputFile.getName().toLowerCase().endsWith(".class")) {
-            return FileUtil.processClassFile(inputFile, config.getOutputPath());
+            long start = System.nanoTime();
+            try {
+                return register(inputFile, FileUtil.processClassFile(inputFile, config));
+            } finally {
+                metrics.addPhaseTime(DecompileMetrics.Phase.WALK, System.nanoTime() - start);
+            }
         } else {
             throw new IllegalArgumentException("输入必须是.class文件、.jar文件或目录");
         }
     }
 
+    private List<DecompileJob> register(File inputFile, List<DecompileJob> jobs) {
+        for (DecompileJob job : jobs) {
+            FileUtil.register(manifest, inputFile, job);
+        }
+        return jobs;
+    }
+
     /**
      * 打印反编译统计信息
      */
     private void printStats() {
-        int total = successCount.get() + failureCount.get();
+        int total = metrics.getSuccessCount() + metrics.getFailureCount();
         logger.info("反编译已完成");
         logger.info("文件总数：{}", total);
-        logger.info("已成功反编译：{}", successCount.get());
-        logger.info("失败：{}", failureCount.get());
-
+        logger.info("已成功反编译：{}", metrics.getSuccessCount());
+        logger.info("失败：{}", metrics.getFailureCount());
+        if (config.getJobTimeoutMillis() > 0) {
+            logger.info("其中超时：{}", metrics.getTimeoutCount());
+        }
+        if (workerPool != null) {
+            logger.info("工作进程重启次数：{}", workerPool.getRestartCount());
+        }
+        if (memoryBudget != null) {
+            logger.info("内存预算：{} MB，估算占用峰值 {} MB，{} 个任务等待过内存，累计等待 {} ms",
+                    memoryBudget.getBudgetBytes() / (1024 * 1024), memoryBudget.getPeakBytes() / (1024 * 1024),
+                    memoryBudget.getWaitCount(), memoryBudget.getWaitMillis());
+        }
+        ConcurrencyController concurrency = taskManager.getConcurrency();
+        if (concurrency != null) {
+            logger.info("自适应并发：最终 {}，范围 {}-{}，调整 {} 次", concurrency.getLimit(),
+                    concurrency.getMinLimit(), concurrency.getMaxLimit(), concurrency.getAdjustmentCount());
+        }
+        if (journal != null && journal.getReplayedCount() > 0) {
+            logger.info("从检查点恢复：{}", journal.getReplayedCount());
+        }
+        if (resultCache != null) {
+            logger.info("缓存命中：{}，未命中：{}", resultCache.getHitCount(), resultCache.getMissCount());
+        }
+        if (libraries != null) {
+            logger.info("已知第三方库：{} 个归档未反编译（{} 个class），其中 {} 个使用了源码JAR",
+                    libraries.getSkippedArchiveCount() + libraries.getServedArchiveCount(),
+                    libraries.getSkippedClassCount(), libraries.getServedArchiveCount());
+        }
+        if (deduplicator != null) {
+            long duplicates = metrics.getDuplicateClassCount();
+            logger.info("去重：跳过 {} 个重复的class（占 {}%，{} KB），节省反编译时间（按代表 class 实际耗时，各线程累计）{} ms，硬链接 {} 个文件，复制 {} 个文件",
+                    duplicates, total == 0 ? 0 : Math.round(duplicates * 100.0 / total),
+                    metrics.getDuplicateBytes() / 1024, metrics.getDuplicateSavedMillis(),
+                    deduplicator.getLinkedFileCount(), deduplicator.getCopiedFileCount());
+        }
+        logger.info("阶段耗时（各线程累计）：遍历 {} ms，读取JAR {} ms，反编译 {} ms，写文件 {} ms",
+                metrics.getWalkMillis(), metrics.getExtractMillis(), metrics.getDecompileMillis(), metrics.getWriteMillis());
+        logger.info("单个class耗时：P50 {} ms，P95 {} ms，最大 {} ms",
+                String.format("%.1f", metrics.getClassLatencyP50Millis()),
+                String.format("%.1f", metrics.getClassLatencyP95Millis()),
+                String.format("%.1f", metrics.getClassLatencyMaxMillis()));
+        logger.info("读取 {} KB，写出 {} KB，最大队列深度 {}，线程利用率 {}%",
+                metrics.getBytesRead() / 1024, metrics.getBytesWritten() / 1024,
+                metrics.getMaxQueueDepth(), Math.round(metrics.getUtilization() * 100));
     }
 }
\ No newline at end of file
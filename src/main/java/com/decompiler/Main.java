@@ -1,12 +1,192 @@
 package com.decompiler;
 
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.config.GroupingMode;
+import com.decompiler.config.OptionsBuilder;
+import com.decompiler.server.DecompileServer;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Locale;
+import java.util.Map;
+
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
-    // TODO: CIL 解析
-    public static void main(String[] args) {
 
+    public static void main(String[] args) throws Exception {
+        Options options = createOptions();
+        CommandLine cmd;
+        DecompilerConfig config;
+        int port;
+        try {
+            cmd = new DefaultParser().parse(options, args);
+            if (cmd.hasOption("help")) {
+                printHelp(options);
+                return;
+            }
+            if (!cmd.hasOption("daemon") && (!cmd.hasOption("input") || !cmd.hasOption("output"))) {
+                throw new ParseException("需要指定 --input 和 --output，或者使用 --daemon 启动守护进程");
+            }
+            config = buildConfig(cmd);
+            port = intValue(cmd, "port", DecompileServer.DEFAULT_PORT, 1, 65535);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            printHelp(options);
+            System.exit(2);
+            return;
+        }
+
+        Map<String, Object> vineflowerOptions = new OptionsBuilder().build();
+        if (cmd.hasOption("daemon")) {
+            runDaemon(config, vineflowerOptions, port);
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        new Decompiler(config, vineflowerOptions).execute();
+        logger.info("总耗时: {} 秒", (System.currentTimeMillis() - startTime) / 1000.0);
+    }
+
+    /**
+     * 启动守护进程，直到收到停止请求或者进程被终止
+     */
+    private static void runDaemon(DecompilerConfig config, Map<String, Object> vineflowerOptions, int port)
+            throws Exception {
+        DecompileServer server = new DecompileServer(config, vineflowerOptions, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "daemon-shutdown"));
+        server.start();
+        server.awaitStop();
+        logger.info("反编译守护进程已停止");
+    }
+
+    private static DecompilerConfig buildConfig(CommandLine cmd) throws ParseException {
+        DecompilerConfig.Builder builder = new DecompilerConfig.Builder()
+                .inputPath(cmd.getOptionValue("input"))
+                .outputPath(cmd.getOptionValue("output"))
+                .threadCount(intValue(cmd, "threads", 0, 0, Integer.MAX_VALUE))
+                .deleteClassFiles(cmd.hasOption("delete-class-files"))
+                .inMemory(cmd.hasOption("in-memory"))
+                .streaming(cmd.hasOption("stream"))
+                .incremental(cmd.hasOption("incremental"))
+                .deduplicate(cmd.hasOption("dedup"))
+                .cacheDir(cmd.getOptionValue("cache-dir"))
+                .libraryIndex(cmd.getOptionValue("library-index"))
+                .librarySourcesDir(cmd.getOptionValue("library-sources"))
+                .outputArchive(cmd.getOptionValue("archive"))
+                .classpathIndex(cmd.getOptionValue("classpath-index"))
+                .resume(cmd.hasOption("resume"))
+                .adaptiveConcurrency(cmd.hasOption("adaptive"))
+                .memoryBudgetMb(intValue(cmd, "memory-budget", 0, 0, Integer.MAX_VALUE))
+                .outOfProcess(cmd.hasOption("workers"))
+                .metricsFile(cmd.getOptionValue("metrics-file"))
+                .jmxEnabled(cmd.hasOption("jmx"));
+        if (cmd.hasOption("io-threads")) {
+            builder.ioConcurrency(intValue(cmd, "io-threads", 0, 1, Integer.MAX_VALUE));
+        }
+        if (cmd.hasOption("worker-heap")) {
+            builder.workerHeapMb(intValue(cmd, "worker-heap", 0, 1, Integer.MAX_VALUE));
+        }
+        if (cmd.hasOption("queue-capacity")) {
+            builder.queueCapacity(intValue(cmd, "queue-capacity", 0, 1, Integer.MAX_VALUE));
+        }
+        if (cmd.hasOption("cache-max-size")) {
+            builder.cacheMaxSize(longValue(cmd, "cache-max-size", 1, Long.MAX_VALUE / (1024 * 1024)) * 1024 * 1024);
+        }
+        if (cmd.hasOption("group")) {
+            builder.groupingMode(groupingMode(cmd.getOptionValue("group")));
+        }
+        if (cmd.hasOption("timeout")) {
+            builder.jobTimeoutMillis(longValue(cmd, "timeout", 0, Long.MAX_VALUE));
+        }
+        if (cmd.hasOption("include")) {
+            builder.include(cmd.getOptionValues("include"));
+        }
+        if (cmd.hasOption("exclude")) {
+            builder.exclude(cmd.getOptionValues("exclude"));
+        }
+        return builder.build();
+    }
+
+    /**
+     * 读取整数选项，没有指定时返回 defaultValue，不是整数或者超出 [min, max] 时抛出 ParseException
+     */
+    private static int intValue(CommandLine cmd, String name, int defaultValue, int min, int max)
+            throws ParseException {
+        return cmd.hasOption(name) ? (int) longValue(cmd, name, min, max) : defaultValue;
+    }
+
+    private static long longValue(CommandLine cmd, String name, long min, long max) throws ParseException {
+        String value = cmd.getOptionValue(name);
+        long parsed;
+        try {
+            parsed = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ParseException("--" + name + " 需要是整数: " + value);
+        }
+        if (parsed < min || parsed > max) {
+            throw new ParseException(max == Long.MAX_VALUE || max == Integer.MAX_VALUE
+                    ? "--" + name + " 不能小于 " + min + ": " + value
+                    : "--" + name + " 需要在 " + min + " 到 " + max + " 之间: " + value);
+        }
+        return parsed;
+    }
+
+    private static GroupingMode groupingMode(String value) throws ParseException {
+        try {
+            return GroupingMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("--group 只能是 NONE、ARCHIVE 或 PACKAGE: " + value);
+        }
+    }
+
+    private static Options createOptions() {
+        Options options = new Options();
+        options.addOption(valueOption("i", "input", "路径", "输入的class文件、JAR或目录"));
+        options.addOption(valueOption("o", "output", "目录", "输出目录"));
+        options.addOption(valueOption("t", "threads", "数量", "线程数，默认为CPU核数"));
+        options.addOption(null, "delete-class-files", false, "反编译成功后删除class文件");
+        options.addOption(null, "in-memory", false, "直接从JAR中读取class，不解压");
+        options.addOption(valueOption(null, "group", "方式", "分组方式：NONE、ARCHIVE、PACKAGE"));
+        options.addOption(null, "stream", false, "边发现边反编译");
+        options.addOption(null, "incremental", false, "只反编译有变化的输入");
+        options.addOption(null, "dedup", false, "内容相同的class只反编译一次");
+        options.addOption(valueOption(null, "cache-dir", "目录", "结果缓存目录"));
+        options.addOption(valueOption(null, "cache-max-size", "MB", "结果缓存的最大大小，超出后淘汰最久未使用的条目，默认 1024"));
+        options.addOption(valueOption(null, "queue-capacity", "数量", "流式模式下各阶段之间队列的容量，默认 1024"));
+        options.addOption(valueOption(null, "timeout", "毫秒", "单个任务的反编译期限"));
+        options.addOption(null, "workers", false, "在子进程中反编译，每个线程对应一个工作进程，进程崩溃只影响正在处理的class");
+        options.addOption(valueOption(null, "worker-heap", "MB", "每个工作进程的最大堆内存，默认 1024"));
+        options.addOption(valueOption(null, "metrics-file", "文件", "运行结束后把指标以JSON格式写到该文件"));
+        options.addOption(null, "jmx", false, "运行期间把指标注册为 JMX MBean");
+        options.addOption(valueOption(null, "library-index", "文件", "已知第三方库的索引文件"));
+        options.addOption(valueOption(null, "library-sources", "目录", "第三方库源码JAR所在的目录"));
+        options.addOption(Option.builder().longOpt("include").hasArgs().valueSeparator(',').argName("模式")
+                .desc("只反编译类名匹配的class，多个模式用逗号分隔").build());
+        options.addOption(Option.builder().longOpt("exclude").hasArgs().valueSeparator(',').argName("模式")
+                .desc("不反编译类名匹配的class，多个模式用逗号分隔").build());
+        options.addOption(valueOption(null, "archive", "文件", "把源码写入该 sources JAR/ZIP"));
+        options.addOption(valueOption(null, "classpath-index", "文件", "类路径索引文件"));
+        options.addOption(null, "resume", false, "从上次中断的位置继续，只反编译失败和没有完成的class");
+        options.addOption(null, "adaptive", false, "运行时根据吞吐量、CPU和内存调整同时执行的任务数，线程数作为上限");
+        options.addOption(valueOption(null, "memory-budget", "MB", "同时反编译的class估算占用的堆内存上限"));
+        options.addOption(valueOption(null, "io-threads", "数量", "同时执行的解压、复制和写出任务数，默认 32"));
+        options.addOption(null, "daemon", false, "启动守护进程，在本机回环地址上接收反编译请求");
+        options.addOption(valueOption(null, "port", "端口", "守护进程监听的端口，默认 " + DecompileServer.DEFAULT_PORT));
+        options.addOption("h", "help", false, "显示帮助");
+        return options;
+    }
+
+    private static Option valueOption(String shortName, String longName, String argName, String description) {
+        return Option.builder(shortName).longOpt(longName).hasArg().argName(argName).desc(description).build();
+    }
+
+    private static void printHelp(Options options) {
+        new HelpFormatter().printHelp("java -jar JavaDecompiler.jar", options);
     }
-}
\ No newline at end of file
+}
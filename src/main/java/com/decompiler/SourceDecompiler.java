@@ -0,0 +1,325 @@
+package com.decompiler;
+
+import com.decompiler.config.OptionsBuilder;
+import com.decompiler.config.VineflowerOptions;
+import com.decompiler.exception.DecompileException;
+import com.decompiler.task.ConcurrencyController;
+import com.decompiler.util.ClassBytesSource;
+import com.decompiler.util.ClassFileScanner;
+import com.decompiler.util.ClasspathIndex;
+import com.decompiler.util.StringResultSaver;
+import com.decompiler.util.VineDecompiler;
+import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
+import org.jetbrains.java.decompiler.main.extern.IContextSource;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在内存中反编译单个class并直接返回源码，不读写任何文件，用于代码浏览等需要立即得到一个class源码的场景
+ *
+ * 创建时先反编译几次自身的class，完成 Vineflower 的类加载和 JIT 预热，第一次调用不会比后续调用慢很多。
+ * 同时进行的反编译数量不超过池的大小，每个位置重复使用自己的保存器和日志记录器；
+ * 每个上下文内部的线程数与池的大小相乘不超过CPU核数，避免同时创建大量线程。
+ * 结果按class内容（包括一起反编译的内部类）缓存，同一个class同时被多次请求时只反编译一次。
+ * 可以指定类路径索引等库输入，用于解析父类、接口和泛型签名。线程安全
+ */
+public class SourceDecompiler {
+    private static final Logger logger = LoggerFactory.getLogger(SourceDecompiler.class);
+
+    private static final int WARM_UP_ROUNDS = 3;
+
+    private final Map<String, Object> options;
+    private final List<IContextSource> libraries;
+    private final int poolSize;
+    private final BlockingQueue<Slot> slots;
+    private final int cacheSize;
+    private final Map<String, String> cache;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+
+    private SourceDecompiler(Builder builder) {
+        this.options = Map.copyOf(builder.options);
+        this.libraries = List.copyOf(builder.libraries);
+        // 公平队列，等待的调用按到达顺序得到位置
+        this.poolSize = builder.poolSize;
+        this.slots = new ArrayBlockingQueue<>(builder.poolSize, true);
+        for (int i = 0; i < builder.poolSize; i++) {
+            slots.add(new Slot());
+        }
+        this.cacheSize = builder.cacheSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * 反编译一个class，返回它的源码
+     *
+     * @param classBytes class文件内容
+     */
+    public String decompile(byte[] classBytes) throws DecompileException {
+        return decompile(classBytes, List.of());
+    }
+
+    /**
+     * 反编译一个class，返回它的源码
+     *
+     * @param classBytes class文件内容
+     * @param innerClasses 与它一起反编译的内部类，它们的源码合并在外部类的源码中；其他class的源码不返回
+     */
+    public String decompile(byte[] classBytes, Collection<byte[]> innerClasses) throws DecompileException {
+        String className = ClassFileScanner.readClassName(classBytes);
+        if (className == null) {
+            throw new DecompileException("不是有效的class文件");
+        }
+
+        String key = cacheKey(classBytes, innerClasses);
+        String cached = getCached(key);
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            return cached;
+        }
+
+        // 同一个class已经在反编译时等待它的结果
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            hitCount.incrementAndGet();
+            return await(running, className);
+        }
+
+        missCount.incrementAndGet();
+        try {
+            String source = decompileNow(className, classBytes, innerClasses);
+            putCached(key, source);
+            future.complete(source);
+            return source;
+        } catch (DecompileException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 从缓存或其他调用得到结果的次数
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 实际反编译的次数
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private String decompileNow(String className, byte[] classBytes, Collection<byte[]> innerClasses)
+            throws DecompileException {
+        Slot slot;
+        try {
+            slot = slots.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DecompileException("等待反编译时被中断: " + className);
+        }
+
+        try {
+            // 未指定时 Vineflower 在每个上下文中使用CPU核数个线程，池中的位置同时使用会成倍超出
+            Map<String, Object> contextOptions = new HashMap<>(options);
+            contextOptions.put(VineflowerOptions.THR,
+                    String.valueOf(ConcurrencyController.innerThreads(1 + innerClasses.size(), poolSize)));
+            VineDecompiler decompiler = new VineDecompiler(slot.saver, contextOptions, slot.logger);
+            for (IContextSource library : libraries) {
+                decompiler.addLibrary(library);
+            }
+            decompiler.addSource(new ClassBytesSource(className, classBytes));
+            for (byte[] innerClass : innerClasses) {
+                String innerName = ClassFileScanner.readClassName(innerClass);
+                if (innerName != null) {
+                    decompiler.addSource(new ClassBytesSource(innerName, innerClass));
+                }
+            }
+            decompiler.decompileContext();
+
+            String source = slot.saver.getSource(className);
+            if (source == null) {
+                throw new DecompileException("未生成源码: " + className);
+            }
+            return source;
+        } catch (RuntimeException e) {
+            throw new DecompileException("反编译失败: " + className, e);
+        } finally {
+            slot.saver.clear();
+            slots.add(slot);
+        }
+    }
+
+    private static String await(CompletableFuture<String> future, String className) throws DecompileException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DecompileException("等待反编译时被中断: " + className);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DecompileException) {
+                throw (DecompileException) e.getCause();
+            }
+            throw new DecompileException("反编译失败: " + className, e.getCause());
+        }
+    }
+
+    private String getCached(String key) {
+        if (cacheSize == 0) {
+            return null;
+        }
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    /**
+     * 加入缓存，超出数量时淘汰最久未使用的源码
+     */
+    private void putCached(String key, String source) {
+        if (cacheSize == 0) {
+            return;
+        }
+        synchronized (cache) {
+            cache.put(key, source);
+            if (cache.size() > cacheSize) {
+                cache.remove(cache.keySet().iterator().next());
+            }
+        }
+    }
+
+    private static String cacheKey(byte[] classBytes, Collection<byte[]> innerClasses) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+        digest.update(classBytes);
+        for (byte[] innerClass : innerClasses) {
+            // 长度作为分隔，避免不同的拆分方式得到相同的摘要
+            digest.update(new byte[]{(byte) (innerClass.length >>> 24), (byte) (innerClass.length >>> 16),
+                    (byte) (innerClass.length >>> 8), (byte) innerClass.length});
+            digest.update(innerClass);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 反编译自身的class几次，结果不进入缓存
+     */
+    private void warmUp() {
+        long start = System.currentTimeMillis();
+        try (InputStream in = SourceDecompiler.class.getResourceAsStream("SourceDecompiler.class")) {
+            if (in == null) {
+                return;
+            }
+            byte[] classBytes = in.readAllBytes();
+            String className = ClassFileScanner.readClassName(classBytes);
+            for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+                decompileNow(className, classBytes, List.of());
+            }
+            logger.info("反编译器预热完成，耗时 {} ms", System.currentTimeMillis() - start);
+        } catch (IOException | DecompileException e) {
+            logger.warn("反编译器预热失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 池中的一个位置，同一时间只被一次反编译使用
+     */
+    private static class Slot {
+        final StringResultSaver saver = new StringResultSaver();
+        final IFernflowerLogger logger = new PrintStreamLogger(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    public static class Builder {
+        private Map<String, Object> options = new OptionsBuilder().build();
+        private int poolSize = Runtime.getRuntime().availableProcessors();
+        private int cacheSize = 1024;
+        private final List<IContextSource> libraries = new ArrayList<>();
+        private boolean warmUp = true;
+
+        /**
+         * Vineflower 选项，默认为 OptionsBuilder 的默认选项
+         */
+        public Builder options(Map<String, Object> options) {
+            this.options = options;
+            return this;
+        }
+
+        /**
+         * 同时进行的反编译数量，默认为CPU核数
+         */
+        public Builder poolSize(int poolSize) {
+            this.poolSize = poolSize <= 0 ? Runtime.getRuntime().availableProcessors() : poolSize;
+            return this;
+        }
+
+        /**
+         * 最多缓存的源码数量，0表示不缓存
+         */
+        public Builder cacheSize(int cacheSize) {
+            this.cacheSize = Math.max(cacheSize, 0);
+            return this;
+        }
+
+        /**
+         * 把类路径索引作为库输入，用于解析父类、接口和泛型签名
+         */
+        public Builder classpath(ClasspathIndex classpath) {
+            return library(classpath.asLibrary());
+        }
+
+        /**
+         * 添加库输入，需要是按需读取的 IContextSource，否则每次反编译都会完整读取一遍
+         */
+        public Builder library(IContextSource library) {
+            this.libraries.add(library);
+            return this;
+        }
+
+        /**
+         * 创建时是否预热，默认预热
+         */
+        public Builder warmUp(boolean warmUp) {
+            this.warmUp = warmUp;
+            return this;
+        }
+
+        public SourceDecompiler build() {
+            SourceDecompiler decompiler = new SourceDecompiler(this);
+            if (warmUp) {
+                decompiler.warmUp();
+            }
+            return decompiler;
+        }
+    }
+}
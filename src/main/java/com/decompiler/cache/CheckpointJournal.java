@@ -0,0 +1,302 @@
+package com.decompiler.cache;
+
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.model.DecompileJob;
+import com.decompiler.task.DecompileResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 输出目录中的检查点日志，记录每个任务的反编译结果，运行中途退出（内存溢出、进程被终止、Ctrl-C）后可以从断点继续
+ *
+ * 结果先写到内存缓冲区，累计到 64 KB 或者距离上次写出超过 1 秒时作为一批追加到文件末尾，每批带有长度和 CRC32 校验；
+ * 进程在写出过程中退出时最后一批不完整，读取时丢弃，退出时最多丢失还在缓冲区中的结果，它们在恢复时重新反编译。
+ *
+ * 恢复时只有成功、并且输出文件都还存在的任务直接使用记录的结果，失败和没有记录的任务重新反编译。
+ * 反编译配置与日志中记录的不同时不恢复，重新开始记录
+ */
+public class CheckpointJournal implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(CheckpointJournal.class);
+
+    public static final String FILE_NAME = ".decompile-journal";
+    private static final int MAGIC = 0x4A444A01;
+    private static final int FLUSH_BYTES = 64 * 1024;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Path outputDir;
+    private final FileChannel channel;
+    // 从日志中读出的成功任务及其输出文件，恢复后重新反编译的任务从中移除
+    private final Map<String, List<String>> completed;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(FLUSH_BYTES + 4096);
+    private final DataOutputStream bufferOut = new DataOutputStream(buffer);
+    private long lastFlush = System.nanoTime();
+    private int replayedCount;
+    private boolean failed;
+
+    private CheckpointJournal(Path outputDir, FileChannel channel, Map<String, List<String>> completed) {
+        this.outputDir = outputDir;
+        this.channel = channel;
+        this.completed = completed;
+    }
+
+    /**
+     * 打开输出目录中的检查点日志
+     * 配置了 resume 且日志的配置与本次相同时读取其中的结果并在末尾继续追加，否则清空日志重新记录
+     */
+    public static CheckpointJournal open(File outputDir, DecompilerConfig config, Map<String, Object> options)
+            throws IOException {
+        Path dir = outputDir.toPath().toAbsolutePath().normalize();
+        Files.createDirectories(dir);
+        Path file = dir.resolve(FILE_NAME);
+        String fingerprint = "input=" + new File(config.getInputPath()).getAbsolutePath() + ";"
+                + OutputManifest.fingerprint(config, options);
+
+        Map<String, List<String>> completed = new HashMap<>();
+        long validLength = -1;
+        if (config.isResume() && Files.isRegularFile(file)) {
+            validLength = read(file, fingerprint, completed);
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (validLength < 0) {
+                completed.clear();
+                channel.truncate(0);
+                ByteArrayOutputStream header = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(header);
+                out.writeInt(MAGIC);
+                out.writeUTF(fingerprint);
+                writeFully(channel, ByteBuffer.wrap(header.toByteArray()));
+            } else {
+                // 去掉末尾不完整的一批，从这里继续追加
+                channel.truncate(validLength);
+                channel.position(validLength);
+                logger.info("读取检查点日志: {} 个已完成的任务", completed.size());
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new CheckpointJournal(dir, channel, completed);
+    }
+
+    /**
+     * 如果一组任务都已经在上次运行中成功并且输出文件都还存在，返回记录的结果，否则返回 null，这组任务需要重新反编译
+     */
+    public synchronized List<DecompileResult> replay(List<DecompileJob> jobs) {
+        if (completed.isEmpty()) {
+            return null;
+        }
+
+        List<DecompileResult> results = new ArrayList<>(jobs.size());
+        for (DecompileJob job : jobs) {
+            List<File> outputFiles = existingOutputs(completed.get(keyOf(job)));
+            if (outputFiles == null) {
+                // 重新反编译后会记录新的结果
+                for (DecompileJob pending : jobs) {
+                    completed.remove(keyOf(pending));
+                }
+                return null;
+            }
+            results.add(new DecompileResult(job, true, null, new File(job.getTargetPath()).getAbsolutePath(),
+                    outputFiles));
+        }
+        replayedCount += results.size();
+        return results;
+    }
+
+    /**
+     * 记录一个任务的结果，从日志恢复的结果不重复记录；写入失败时只记录日志，之后不再写入
+     */
+    public synchronized void record(DecompileResult result) {
+        if (failed) {
+            return;
+        }
+        String key = keyOf(result.getJob());
+        if (result.isSuccess() && completed.containsKey(key)) {
+            return;
+        }
+
+        try {
+            bufferOut.writeUTF(key);
+            bufferOut.writeByte(result.getStatus().ordinal());
+            List<File> outputFiles = result.isSuccess() ? result.getOutputFiles() : List.of();
+            bufferOut.writeInt(outputFiles.size());
+            for (File outputFile : outputFiles) {
+                bufferOut.writeUTF(outputDir.relativize(outputFile.toPath().toAbsolutePath().normalize()).toString());
+            }
+            if (buffer.size() >= FLUSH_BYTES || System.nanoTime() - lastFlush >= FLUSH_INTERVAL_NANOS) {
+                flush();
+            }
+        } catch (IOException e) {
+            failed = true;
+            logger.warn("写入检查点日志失败，不再记录: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 从日志中恢复的任务数
+     */
+    public synchronized int getReplayedCount() {
+        return replayedCount;
+    }
+
+    /**
+     * 写出缓冲区中的结果并关闭日志
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (!failed) {
+                flush();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        lastFlush = System.nanoTime();
+        if (buffer.size() == 0) {
+            return;
+        }
+
+        byte[] payload = buffer.toByteArray();
+        buffer.reset();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        writeFully(channel, frame);
+    }
+
+    private List<File> existingOutputs(List<String> outputs) {
+        if (outputs == null || outputs.isEmpty()) {
+            return null;
+        }
+        List<File> files = new ArrayList<>(outputs.size());
+        for (String output : outputs) {
+            Path path = outputDir.resolve(output).normalize();
+            if (!Files.isRegularFile(path)) {
+                return null;
+            }
+            files.add(path.toFile());
+        }
+        return files;
+    }
+
+    /**
+     * 任务在多次运行之间不变的标识：源文件路径，归档条目再加上条目名称
+     */
+    private static String keyOf(DecompileJob job) {
+        String path = job.getSourceFile().getAbsolutePath();
+        return job.isArchiveEntry() ? path + DecompileJob.NESTED_SEPARATOR + job.getEntryName() : path;
+    }
+
+    /**
+     * 读取日志中的结果，返回有效部分的长度；格式错误或者配置不同时返回 -1
+     */
+    private static long read(Path file, String fingerprint, Map<String, List<String>> completed) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            logger.warn("读取检查点日志失败，重新开始: {}", e.getMessage());
+            return -1;
+        }
+
+        ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
+        DataInputStream in = new DataInputStream(stream);
+        try {
+            if (in.readInt() != MAGIC) {
+                logger.warn("检查点日志格式错误，重新开始");
+                return -1;
+            }
+            if (!fingerprint.equals(in.readUTF())) {
+                logger.info("输入或反编译配置已变化，不使用检查点日志");
+                return -1;
+            }
+        } catch (IOException e) {
+            logger.warn("检查点日志格式错误，重新开始");
+            return -1;
+        }
+
+        long validLength = bytes.length - stream.available();
+        while (true) {
+            int length;
+            int checksum;
+            byte[] payload;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                if (length < 0 || length > stream.available()) {
+                    break;
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+            } catch (IOException e) {
+                break;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            try {
+                readRecords(payload, completed);
+            } catch (IOException e) {
+                break;
+            }
+            validLength += 8 + length;
+        }
+
+        if (validLength < bytes.length) {
+            logger.warn("检查点日志末尾有 {} 字节不完整，已丢弃", bytes.length - validLength);
+        }
+        return validLength;
+    }
+
+    private static void readRecords(byte[] payload, Map<String, List<String>> completed) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        while (in.available() > 0) {
+            String key = in.readUTF();
+            int status = in.readByte();
+            int outputCount = in.readInt();
+            List<String> outputs = new ArrayList<>(outputCount);
+            for (int i = 0; i < outputCount; i++) {
+                outputs.add(in.readUTF());
+            }
+            if (status == DecompileResult.Status.SUCCESS.ordinal()) {
+                completed.put(key, outputs);
+            } else {
+                completed.remove(key);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
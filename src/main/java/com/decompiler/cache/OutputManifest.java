@@ -0,0 +1,348 @@
+package com.decompiler.cache;
+
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.config.VineflowerOptions;
+import com.decompiler.model.DecompileJob;
+import com.decompiler.task.DecompileResult;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 输出目录中记录上次运行结果的清单，用于增量反编译
+ * 每个输入（单独的class文件或整个JAR）记录路径、大小、修改时间、内容的 SHA-256 以及它产生的输出文件
+ *
+ * 再次运行时先检查输入的大小和修改时间，都没有变化且输出完整时直接沿用上次的结果，不复制、不解压也不反编译；
+ * 只有修改时间变化时再比较内容哈希。有变化的输入先删除上次的输出再重新反编译，已经不存在的输入的输出在保存清单时删除
+ */
+public class OutputManifest {
+    private static final Logger logger = LoggerFactory.getLogger(OutputManifest.class);
+
+    public static final String FILE_NAME = ".decompile-manifest";
+    private static final int MAGIC = 0x4A444D01;
+
+    private final Path outputDir;
+    private final String fingerprint;
+    private final Map<String, Entry> previousEntries;
+    private final Map<String, Entry> currentEntries = new ConcurrentHashMap<>();
+    private final Map<DecompileJob, Entry> jobEntries = new ConcurrentHashMap<>();
+    private final AtomicInteger unchangedCount = new AtomicInteger(0);
+    private final AtomicInteger changedCount = new AtomicInteger(0);
+
+    private OutputManifest(Path outputDir, String fingerprint, Map<String, Entry> previousEntries) {
+        this.outputDir = outputDir;
+        this.fingerprint = fingerprint;
+        this.previousEntries = previousEntries;
+    }
+
+    /**
+     * 读取输出目录中的清单，清单不存在、格式错误或者上次运行的配置不同时视为全部输入都有变化
+     */
+    public static OutputManifest load(File outputDir, DecompilerConfig config, Map<String, Object> options) {
+        Path dir = outputDir.toPath().toAbsolutePath().normalize();
+        String fingerprint = fingerprint(config, options);
+        Path file = dir.resolve(FILE_NAME);
+        if (!Files.isRegularFile(file)) {
+            return new OutputManifest(dir, fingerprint, Map.of());
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("清单格式错误");
+            }
+            if (!fingerprint.equals(in.readUTF())) {
+                logger.info("反编译配置已变化，重新反编译全部输入");
+                return new OutputManifest(dir, fingerprint, Map.of());
+            }
+
+            int count = in.readInt();
+            Map<String, Entry> entries = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                Entry entry = Entry.read(in);
+                entries.put(entry.path, entry);
+            }
+            logger.info("读取增量清单: {} 个输入", entries.size());
+            return new OutputManifest(dir, fingerprint, entries);
+        } catch (IOException e) {
+            logger.warn("读取增量清单失败，重新反编译全部输入: {}", e.getMessage());
+            return new OutputManifest(dir, fingerprint, Map.of());
+        }
+    }
+
+    /**
+     * 检查输入是否需要反编译
+     * 返回 false 表示输入没有变化且上次的输出完整，沿用上次的结果；
+     * 返回 true 时删除该输入上次的输出，之后通过 addJob 登记它的任务
+     */
+    public boolean needsDecompile(File input) throws IOException {
+        Path path = input.toPath().toAbsolutePath().normalize();
+        String key = path.toString();
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().toMillis();
+
+        Entry previous = previousEntries.get(key);
+        if (previous != null && previous.complete && previous.size == size && outputsExist(previous)) {
+            byte[] hash = previous.modified == modified ? previous.hash : hash(path);
+            if (Arrays.equals(previous.hash, hash)) {
+                currentEntries.put(key, previous.withModified(modified));
+                unchangedCount.incrementAndGet();
+                return false;
+            }
+        }
+
+        if (previous != null) {
+            deleteOutputs(previous);
+        }
+        currentEntries.put(key, new Entry(key, size, modified, hash(path)));
+        changedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 登记输入产生的任务，任务全部成功后该输入才算完整
+     */
+    public void addJob(File input, DecompileJob job) {
+        Entry entry = currentEntries.get(input.toPath().toAbsolutePath().normalize().toString());
+        if (entry == null) {
+            return;
+        }
+        entry.remaining.incrementAndGet();
+        jobEntries.put(job, entry);
+    }
+
+    /**
+     * 记录不经过反编译直接为输入生成的输出文件，如已知第三方库的源码
+     */
+    public void addOutputs(File input, Collection<File> outputFiles) {
+        Entry entry = currentEntries.get(input.toPath().toAbsolutePath().normalize().toString());
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            for (File outputFile : outputFiles) {
+                entry.outputs.add(relativize(outputFile));
+            }
+        }
+    }
+
+    /**
+     * 记录任务的结果和输出文件，解压或复制出来的class文件也作为输出记录
+     */
+    public void recordResult(DecompileResult result) {
+        DecompileJob job = result.getJob();
+        Entry entry = jobEntries.remove(job);
+        if (entry == null) {
+            return;
+        }
+
+        synchronized (entry) {
+            for (File outputFile : result.getOutputFiles()) {
+                entry.outputs.add(relativize(outputFile));
+            }
+            File sourceFile = job.getSourceFile();
+            if (!job.isArchiveEntry() && sourceFile.toPath().toAbsolutePath().normalize().startsWith(outputDir)
+                    && sourceFile.exists()) {
+                entry.outputs.add(relativize(sourceFile));
+            }
+            if (result.isSuccess()) {
+                entry.remaining.decrementAndGet();
+            } else {
+                entry.failed = true;
+            }
+        }
+    }
+
+    /**
+     * 删除已经不存在的输入上次产生的输出，然后写出本次的清单
+     * 没有全部成功的输入标记为不完整，下次运行时重新反编译
+     */
+    public void save() throws IOException {
+        int removed = 0;
+        for (Entry previous : previousEntries.values()) {
+            if (!currentEntries.containsKey(previous.path)) {
+                deleteOutputs(previous);
+                removed++;
+            }
+        }
+
+        Files.createDirectories(outputDir);
+        Path tempFile = Files.createTempFile(outputDir, FILE_NAME, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(fingerprint);
+                out.writeInt(currentEntries.size());
+                for (Entry entry : currentEntries.values()) {
+                    synchronized (entry) {
+                        entry.complete = !entry.failed && entry.remaining.get() == 0;
+                        entry.write(out);
+                    }
+                }
+            }
+            Files.move(tempFile, outputDir.resolve(FILE_NAME),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+
+        logger.info("增量清单：未变化 {} 个输入，重新反编译 {} 个，删除了 {} 个已不存在的输入的输出",
+                unchangedCount.get(), changedCount.get(), removed);
+    }
+
+    public int getUnchangedCount() {
+        return unchangedCount.get();
+    }
+
+    public int getChangedCount() {
+        return changedCount.get();
+    }
+
+    private boolean outputsExist(Entry entry) {
+        for (String output : entry.outputs) {
+            if (!Files.exists(outputDir.resolve(output))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 删除输入上次的输出，以及因此变空的目录
+     */
+    private void deleteOutputs(Entry entry) {
+        for (String output : entry.outputs) {
+            Path file = outputDir.resolve(output);
+            FileUtils.deleteQuietly(file.toFile());
+
+            Path dir = file.getParent();
+            while (dir != null && dir.startsWith(outputDir) && !dir.equals(outputDir) && dir.toFile().delete()) {
+                dir = dir.getParent();
+            }
+        }
+    }
+
+    private String relativize(File file) {
+        return outputDir.relativize(file.toPath().toAbsolutePath().normalize()).toString();
+    }
+
+    private static byte[] hash(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * 影响输出内容的配置，与上次运行不同时上次的输出都不能沿用
+     */
+    static String fingerprint(DecompilerConfig config, Map<String, Object> options) {
+        StringBuilder fingerprint = new StringBuilder();
+        fingerprint.append("inMemory=").append(config.isInMemory())
+                .append(";grouping=").append(config.getGroupingMode())
+                .append(";includes=").append(config.getIncludes())
+                .append(";excludes=").append(config.getExcludes())
+                .append(";classpath=").append(config.getClasspathIndex() != null);
+        for (Map.Entry<String, Object> option : new TreeMap<>(options).entrySet()) {
+            // 线程数不影响反编译结果
+            if (!VineflowerOptions.THR.equals(option.getKey())) {
+                fingerprint.append(';').append(option.getKey()).append('=').append(option.getValue());
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * 一个输入的记录
+     */
+    private static class Entry {
+        final String path;
+        final long size;
+        final long modified;
+        final byte[] hash;
+        // 分组模式下多个任务可能对应同一个输出文件
+        final Set<String> outputs;
+        boolean complete;
+        // 以下只在本次运行中使用
+        final AtomicInteger remaining = new AtomicInteger(0);
+        boolean failed;
+
+        Entry(String path, long size, long modified, byte[] hash) {
+            this(path, size, modified, hash, new LinkedHashSet<>(), false);
+        }
+
+        Entry(String path, long size, long modified, byte[] hash, Set<String> outputs, boolean complete) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.outputs = outputs;
+            this.complete = complete;
+        }
+
+        Entry withModified(long newModified) {
+            return new Entry(path, size, newModified, hash, outputs, true);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(path);
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.write(hash);
+            out.writeBoolean(complete);
+            out.writeInt(outputs.size());
+            for (String output : outputs) {
+                out.writeUTF(output);
+            }
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            String path = in.readUTF();
+            long size = in.readLong();
+            long modified = in.readLong();
+            byte[] hash = new byte[32];
+            in.readFully(hash);
+            boolean complete = in.readBoolean();
+            int outputCount = in.readInt();
+            Set<String> outputs = new LinkedHashSet<>(outputCount * 2);
+            for (int i = 0; i < outputCount; i++) {
+                outputs.add(in.readUTF());
+            }
+            return new Entry(path, size, modified, hash, outputs, complete);
+        }
+    }
+}
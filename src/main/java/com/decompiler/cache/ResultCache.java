@@ -0,0 +1,259 @@
+package com.decompiler.cache;
+
+import com.decompiler.config.VineflowerOptions;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 持久化的反编译结果缓存
+ * 以 class 字节和 Vineflower 选项的 SHA-256 作为键，保存该 class 生成的全部 .java 文件
+ *
+ * 条目先写入临时文件再原子重命名，多个进程共享同一缓存目录时读到的总是完整条目；
+ * 命中时更新条目的修改时间，超过容量上限时按修改时间淘汰最久未使用的条目，淘汰过程通过文件锁互斥
+ */
+public class ResultCache {
+    private static final Logger logger = LoggerFactory.getLogger(ResultCache.class);
+
+    private static final int ENTRY_MAGIC = 0x4A444301;
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String LOCK_FILE = ".lock";
+
+    private final Path cacheDir;
+    private final long maxSize;
+    private final byte[] optionsHash;
+    private final AtomicLong currentSize = new AtomicLong(0);
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+    private final AtomicInteger hitCount = new AtomicInteger(0);
+    private final AtomicInteger missCount = new AtomicInteger(0);
+
+    /**
+     * @param cacheDir 缓存目录
+     * @param maxSize 缓存占用的最大字节数
+     * @param options Vineflower 选项，选项不同的结果互不复用
+     */
+    public ResultCache(File cacheDir, long maxSize, Map<String, Object> options) throws IOException {
+        this(cacheDir, maxSize, options, false);
+    }
+
+    /**
+     * @param withClasspath 是否使用类路径索引作为库输入；结果与是否能解析到其他类有关，两种结果互不复用
+     */
+    public ResultCache(File cacheDir, long maxSize, Map<String, Object> options, boolean withClasspath)
+            throws IOException {
+        this.cacheDir = cacheDir.toPath();
+        this.maxSize = maxSize;
+        this.optionsHash = hashOptions(options, withClasspath);
+
+        Files.createDirectories(this.cacheDir);
+        try (Stream<Path> entries = Files.walk(this.cacheDir)) {
+            currentSize.set(entries.filter(path -> path.toString().endsWith(ENTRY_SUFFIX))
+                    .mapToLong(path -> path.toFile().length())
+                    .sum());
+        }
+        logger.info("结果缓存目录: {}，当前大小: {} KB", cacheDir.getAbsolutePath(), currentSize.get() / 1024);
+    }
+
+    /**
+     * 计算 class 字节对应的缓存键
+     */
+    public String keyOf(byte[] classBytes) {
+        MessageDigest digest = newDigest();
+        digest.update(optionsHash);
+        digest.update(classBytes);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 命中时把缓存的 .java 文件写到输出目录并返回这些文件，未命中返回 null
+     */
+    public List<File> restore(String key, File outputDir) {
+        Path entryPath = entryPath(key);
+        if (!Files.isRegularFile(entryPath)) {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(entryPath))) {
+            if (in.readInt() != ENTRY_MAGIC) {
+                throw new IOException("缓存条目格式错误: " + entryPath);
+            }
+
+            List<File> restored = new ArrayList<>();
+            int fileCount = in.readInt();
+            // 输出目录在反编译时才创建，命中缓存时还不存在
+            Files.createDirectories(outputDir.toPath());
+            for (int i = 0; i < fileCount; i++) {
+                String fileName = in.readUTF();
+                byte[] content = new byte[in.readInt()];
+                in.readFully(content);
+
+                File outputFile = new File(outputDir, fileName);
+                Files.write(outputFile.toPath(), content);
+                restored.add(outputFile);
+            }
+
+            // 更新修改时间，淘汰时按修改时间判断最近是否使用过
+            entryPath.toFile().setLastModified(System.currentTimeMillis());
+            hitCount.incrementAndGet();
+            return restored;
+        } catch (IOException e) {
+            // 条目可能正被其他进程淘汰，按未命中处理
+            logger.debug("读取缓存条目失败: {} - {}", entryPath, e.getMessage());
+            missCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * 保存一个 class 生成的全部 .java 文件
+     */
+    public void store(String key, List<File> outputFiles) {
+        Path entryPath = entryPath(key);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(entryPath.getParent());
+            tempFile = Files.createTempFile(entryPath.getParent(), key, ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tempFile))) {
+                out.writeInt(ENTRY_MAGIC);
+                out.writeInt(outputFiles.size());
+                for (File outputFile : outputFiles) {
+                    byte[] content = Files.readAllBytes(outputFile.toPath());
+                    out.writeUTF(outputFile.getName());
+                    out.writeInt(content.length);
+                    out.write(content);
+                }
+            }
+
+            long entrySize = Files.size(tempFile);
+            Files.move(tempFile, entryPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            tempFile = null;
+
+            if (currentSize.addAndGet(entrySize) > maxSize) {
+                evict();
+            }
+        } catch (IOException e) {
+            logger.warn("写入缓存条目失败: {} - {}", key, e.getMessage());
+        } finally {
+            if (tempFile != null) {
+                FileUtils.deleteQuietly(tempFile.toFile());
+            }
+        }
+    }
+
+    /**
+     * 淘汰最久未使用的条目，直到缓存大小降到上限的 90%
+     * 同一时间只有一个线程、一个进程在淘汰，其余调用直接返回
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try (FileChannel lockChannel = FileChannel.open(cacheDir.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = lockChannel.tryLock()) {
+            if (lock == null) {
+                return;
+            }
+
+            List<File> entries;
+            try (Stream<Path> paths = Files.walk(cacheDir)) {
+                entries = new ArrayList<>(paths.filter(path -> path.toString().endsWith(ENTRY_SUFFIX))
+                        .map(Path::toFile)
+                        .toList());
+            }
+
+            // 先记录修改时间再排序，排序过程中其他进程可能正在更新修改时间
+            Map<File, Long> lastModified = new HashMap<>();
+            for (File entry : entries) {
+                lastModified.put(entry, entry.lastModified());
+            }
+            entries.sort(Comparator.comparingLong(lastModified::get));
+
+            long totalSize = entries.stream().mapToLong(File::length).sum();
+            long targetSize = maxSize / 10 * 9;
+
+            int evicted = 0;
+            for (File entry : entries) {
+                if (totalSize <= targetSize) {
+                    break;
+                }
+                long length = entry.length();
+                if (entry.delete()) {
+                    totalSize -= length;
+                    evicted++;
+                }
+            }
+
+            currentSize.set(totalSize);
+            logger.info("结果缓存淘汰了 {} 个条目，当前大小: {} KB", evicted, totalSize / 1024);
+        } catch (IOException e) {
+            logger.warn("淘汰缓存条目失败: {}", e.getMessage());
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    public int getHitCount() {
+        return hitCount.get();
+    }
+
+    public int getMissCount() {
+        return missCount.get();
+    }
+
+    private Path entryPath(String key) {
+        // 按键的前两位分目录，避免单个目录下文件过多
+        return cacheDir.resolve(key.substring(0, 2)).resolve(key + ENTRY_SUFFIX);
+    }
+
+    private static byte[] hashOptions(Map<String, Object> options, boolean withClasspath) {
+        MessageDigest digest = newDigest();
+        if (withClasspath) {
+            digest.update("classpath\n".getBytes(StandardCharsets.UTF_8));
+        }
+        for (Map.Entry<String, Object> option : new TreeMap<>(options).entrySet()) {
+            // 线程数不影响反编译结果
+            if (VineflowerOptions.THR.equals(option.getKey())) {
+                continue;
+            }
+            digest.update((option.getKey() + "=" + option.getValue() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.decompiler.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 按类名过滤待反编译的class，在遍历目录和读取JAR中央目录时使用，被过滤掉的class不读取、不解压也不复制
+ *
+ * 类名用点分隔，如 com.ourcorp.Foo$Bar；模式默认是通配符，以 regex: 开头时是正则表达式（完整匹配类名）：
+ * <ul>
+ *     <li>{@code **} 匹配任意字符，{@code *} 匹配不含点的任意字符，{@code ?} 匹配一个非点字符</li>
+ *     <li>通配符中的 / 等同于点，如 META-INF/versions/** 与 META-INF.versions.** 相同</li>
+ * </ul>
+ * 目录中的class文件不知道包的根目录，JAR中也有 WEB-INF/classes、BOOT-INF/classes 之类的前缀，
+ * 因此模式按路径的每个后缀匹配：com.ourcorp.** 也匹配 WEB-INF/classes/com/ourcorp/Foo.class
+ *
+ * 没有包含模式时包含所有class；排除模式优先于包含模式
+ */
+public class ClassFilter {
+    public static final ClassFilter ACCEPT_ALL = new ClassFilter(List.of(), List.of());
+
+    private static final String REGEX_PREFIX = "regex:";
+    private static final String GLOB_PREFIX = "glob:";
+    private static final String REGEX_META_CHARS = "\\.[]{}()+-^$|";
+
+    private final List<Pattern> includes;
+    private final List<Pattern> excludes;
+
+    private ClassFilter(List<Pattern> includes, List<Pattern> excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * 编译包含和排除模式，模式错误时抛出 IllegalArgumentException
+     */
+    public static ClassFilter of(List<String> includes, List<String> excludes) {
+        if (includes.isEmpty() && excludes.isEmpty()) {
+            return ACCEPT_ALL;
+        }
+        return new ClassFilter(compile(includes), compile(excludes));
+    }
+
+    /**
+     * 是否不过滤任何class
+     */
+    public boolean isAcceptAll() {
+        return includes.isEmpty() && excludes.isEmpty();
+    }
+
+    /**
+     * 按路径判断class是否需要反编译，路径可以是归档中的条目名称或者相对输入目录的文件路径
+     */
+    public boolean accepts(String path) {
+        if (isAcceptAll()) {
+            return true;
+        }
+        String className = toClassName(path);
+        return (includes.isEmpty() || matchesAnySuffix(includes, className))
+                && !matchesAnySuffix(excludes, className);
+    }
+
+    private static boolean matchesAnySuffix(List<Pattern> patterns, String className) {
+        int start = 0;
+        while (true) {
+            String suffix = className.substring(start);
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(suffix).matches()) {
+                    return true;
+                }
+            }
+            int dot = className.indexOf('.', start);
+            if (dot < 0) {
+                return false;
+            }
+            start = dot + 1;
+        }
+    }
+
+    /**
+     * 去掉 .class 扩展名，把路径分隔符换成点
+     */
+    private static String toClassName(String path) {
+        String name = path.replace('\\', '/');
+        if (name.regionMatches(true, name.length() - 6, ".class", 0, 6)) {
+            name = name.substring(0, name.length() - 6);
+        }
+        return name.replace('/', '.');
+    }
+
+    private static List<Pattern> compile(List<String> patterns) {
+        List<Pattern> compiled = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            if (pattern.startsWith(REGEX_PREFIX)) {
+                compiled.add(Pattern.compile(pattern.substring(REGEX_PREFIX.length())));
+            } else if (pattern.startsWith(GLOB_PREFIX)) {
+                compiled.add(Pattern.compile(globToRegex(pattern.substring(GLOB_PREFIX.length()))));
+            } else {
+                compiled.add(Pattern.compile(globToRegex(pattern)));
+            }
+        }
+        return compiled;
+    }
+
+    private static String globToRegex(String glob) {
+        String normalized = glob.replace('/', '.');
+        if (normalized.endsWith(".class")) {
+            normalized = normalized.substring(0, normalized.length() - 6);
+        }
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("类名过滤模式不能为空");
+        }
+
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (c == '*') {
+                if (i + 1 < normalized.length() && normalized.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append("[^.]*");
+                }
+            } else if (c == '?') {
+                regex.append("[^.]");
+            } else {
+                if (REGEX_META_CHARS.indexOf(c) >= 0) {
+                    regex.append('\\');
+                }
+                regex.append(c);
+            }
+        }
+        return regex.toString();
+    }
+}
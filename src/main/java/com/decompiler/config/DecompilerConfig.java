@@ -1,16 +1,69 @@
 package com.decompiler.config;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class DecompilerConfig {
     private final String inputPath;
     private final String outputPath;
     private final int threadCount;
     private final boolean deleteClassFiles;
+    private final boolean inMemory;
+    private final GroupingMode groupingMode;
+    private final boolean streaming;
+    private final int queueCapacity;
+    private final String cacheDir;
+    private final long cacheMaxSize;
+    private final long jobTimeoutMillis;
+    private final boolean outOfProcess;
+    private final int workerHeapMb;
+    private final String metricsFile;
+    private final boolean jmxEnabled;
+    private final boolean incremental;
+    private final boolean deduplicate;
+    private final String libraryIndex;
+    private final String librarySourcesDir;
+    private final List<String> includes;
+    private final List<String> excludes;
+    private final ClassFilter classFilter;
+    private final String outputArchive;
+    private final String classpathIndex;
+    private final boolean resume;
+    private final boolean adaptiveConcurrency;
+    private final int memoryBudgetMb;
+    private final int ioConcurrency;
 
     private DecompilerConfig(Builder builder) {
         this.inputPath = builder.inputPath;
         this.outputPath = builder.outputPath;
         this.threadCount = builder.threadCount;
         this.deleteClassFiles = builder.deleteClassFiles;
+        // 写入源码归档时不在输出目录下解压或复制class文件
+        this.inMemory = builder.inMemory || builder.outputArchive != null;
+        this.groupingMode = builder.groupingMode;
+        this.streaming = builder.streaming;
+        this.queueCapacity = builder.queueCapacity;
+        this.cacheDir = builder.cacheDir;
+        this.cacheMaxSize = builder.cacheMaxSize;
+        this.jobTimeoutMillis = builder.jobTimeoutMillis;
+        this.outOfProcess = builder.outOfProcess;
+        this.workerHeapMb = builder.workerHeapMb;
+        this.metricsFile = builder.metricsFile;
+        this.jmxEnabled = builder.jmxEnabled;
+        this.incremental = builder.incremental;
+        this.deduplicate = builder.deduplicate;
+        this.libraryIndex = builder.libraryIndex;
+        this.librarySourcesDir = builder.librarySourcesDir;
+        this.includes = List.copyOf(builder.includes);
+        this.excludes = List.copyOf(builder.excludes);
+        this.classFilter = ClassFilter.of(includes, excludes);
+        this.outputArchive = builder.outputArchive;
+        this.classpathIndex = builder.classpathIndex;
+        this.resume = builder.resume;
+        this.adaptiveConcurrency = builder.adaptiveConcurrency;
+        this.memoryBudgetMb = builder.memoryBudgetMb;
+        this.ioConcurrency = builder.ioConcurrency;
     }
 
     public String getInputPath() {
@@ -29,11 +82,169 @@ public class DecompilerConfig {
         return deleteClassFiles;
     }
 
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    public GroupingMode getGroupingMode() {
+        return groupingMode;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public String getCacheDir() {
+        return cacheDir;
+    }
+
+    public long getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public long getJobTimeoutMillis() {
+        return jobTimeoutMillis;
+    }
+
+    public boolean isOutOfProcess() {
+        return outOfProcess;
+    }
+
+    public int getWorkerHeapMb() {
+        return workerHeapMb;
+    }
+
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    public String getLibraryIndex() {
+        return libraryIndex;
+    }
+
+    public String getLibrarySourcesDir() {
+        return librarySourcesDir;
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * 由包含和排除模式编译出的类名过滤器
+     */
+    public ClassFilter getClassFilter() {
+        return classFilter;
+    }
+
+    public String getOutputArchive() {
+        return outputArchive;
+    }
+
+    public String getClasspathIndex() {
+        return classpathIndex;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    public int getMemoryBudgetMb() {
+        return memoryBudgetMb;
+    }
+
+    public int getIoConcurrency() {
+        return ioConcurrency;
+    }
+
     public static class Builder {
         private String inputPath;
         private String outputPath;
         private int threadCount = Runtime.getRuntime().availableProcessors();
         private boolean deleteClassFiles = false; // 默认不删除class文件
+        private boolean inMemory = false; // 默认先把JAR解压到输出目录
+        private GroupingMode groupingMode = GroupingMode.NONE; // 默认每个class单独反编译
+        private boolean streaming = false; // 默认先收集全部任务再开始反编译
+        private int queueCapacity = 1024;
+        private String cacheDir; // 默认不使用结果缓存
+        private long cacheMaxSize = 1024L * 1024 * 1024;
+        private long jobTimeoutMillis = 0; // 默认不限制单个任务的反编译时间
+        private boolean outOfProcess = false; // 默认在当前进程中反编译
+        private int workerHeapMb = 1024;
+        private String metricsFile; // 默认不写出指标文件
+        private boolean jmxEnabled = false;
+        private boolean incremental = false; // 默认每次都重新反编译全部输入
+        private boolean deduplicate = false;
+        private String libraryIndex; // 默认不识别第三方库
+        private String librarySourcesDir;
+        private final List<String> includes = new ArrayList<>(); // 默认反编译所有class
+        private final List<String> excludes = new ArrayList<>();
+        private String outputArchive; // 默认输出到目录
+        private String classpathIndex; // 默认每个上下文只有待反编译的class
+        private boolean resume = false; // 默认不读取上次运行的检查点日志
+        private boolean adaptiveConcurrency = false; // 默认所有线程同时执行任务
+        private int memoryBudgetMb = 0; // 默认不按内存限制同时反编译的class
+        private int ioConcurrency = 32;
+
+        public Builder() {
+        }
+
+        /**
+         * 以已有的配置为模板，如守护进程为每个请求替换输入和输出路径
+         */
+        public Builder(DecompilerConfig config) {
+            this.inputPath = config.inputPath;
+            this.outputPath = config.outputPath;
+            this.threadCount = config.threadCount;
+            this.deleteClassFiles = config.deleteClassFiles;
+            this.inMemory = config.inMemory;
+            this.groupingMode = config.groupingMode;
+            this.streaming = config.streaming;
+            this.queueCapacity = config.queueCapacity;
+            this.cacheDir = config.cacheDir;
+            this.cacheMaxSize = config.cacheMaxSize;
+            this.jobTimeoutMillis = config.jobTimeoutMillis;
+            this.outOfProcess = config.outOfProcess;
+            this.workerHeapMb = config.workerHeapMb;
+            this.metricsFile = config.metricsFile;
+            this.jmxEnabled = config.jmxEnabled;
+            this.incremental = config.incremental;
+            this.deduplicate = config.deduplicate;
+            this.libraryIndex = config.libraryIndex;
+            this.librarySourcesDir = config.librarySourcesDir;
+            this.includes.addAll(config.includes);
+            this.excludes.addAll(config.excludes);
+            this.outputArchive = config.outputArchive;
+            this.classpathIndex = config.classpathIndex;
+            this.resume = config.resume;
+            this.adaptiveConcurrency = config.adaptiveConcurrency;
+            this.memoryBudgetMb = config.memoryBudgetMb;
+            this.ioConcurrency = config.ioConcurrency;
+        }
 
         public Builder inputPath(String inputPath) {
             this.inputPath = inputPath;
@@ -56,6 +267,202 @@ public class DecompilerConfig {
             return this;
         }
 
+        /**
+         * 内存模式：直接从JAR中读取class字节交给Vineflower，不解压、不复制class文件，只写出.java文件
+         */
+        public Builder inMemory(boolean inMemory) {
+            this.inMemory = inMemory;
+            return this;
+        }
+
+        /**
+         * 分组方式：同一组的class在一个Vineflower上下文中反编译，可以共享类结构并正确关联内部类
+         */
+        public Builder groupingMode(GroupingMode groupingMode) {
+            this.groupingMode = groupingMode == null ? GroupingMode.NONE : groupingMode;
+            return this;
+        }
+
+        /**
+         * 流式模式：遍历、读取JAR和反编译同时进行，发现一个class就可以开始反编译
+         */
+        public Builder streaming(boolean streaming) {
+            this.streaming = streaming;
+            return this;
+        }
+
+        /**
+         * 流式模式下各阶段之间队列的容量，队列满时上游阶段阻塞等待
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity <= 0 ? 1024 : queueCapacity;
+            return this;
+        }
+
+        /**
+         * 结果缓存目录，class内容和反编译选项都没有变化时直接使用上次的反编译结果
+         * 多个进程可以共享同一个缓存目录；分组模式下组内的class互相影响，不使用缓存
+         */
+        public Builder cacheDir(String cacheDir) {
+            this.cacheDir = cacheDir;
+            return this;
+        }
+
+        /**
+         * 结果缓存的最大字节数，超出后淘汰最久未使用的条目
+         */
+        public Builder cacheMaxSize(long cacheMaxSize) {
+            this.cacheMaxSize = cacheMaxSize <= 0 ? 1024L * 1024 * 1024 : cacheMaxSize;
+            return this;
+        }
+
+        /**
+         * 单个任务的反编译期限，单位毫秒，0表示不限制
+         * 超时的class会使用简化的选项重试一次，仍然超时则报告为超时；分组模式下整组超时后改为逐个反编译
+         */
+        public Builder jobTimeoutMillis(long jobTimeoutMillis) {
+            this.jobTimeoutMillis = Math.max(jobTimeoutMillis, 0);
+            return this;
+        }
+
+        /**
+         * 在子进程中反编译，每个线程对应一个长期运行的工作进程
+         * 工作进程内存溢出或崩溃时只影响正在处理的class，进程会被重新启动
+         */
+        public Builder outOfProcess(boolean outOfProcess) {
+            this.outOfProcess = outOfProcess;
+            return this;
+        }
+
+        /**
+         * 每个工作进程的最大堆内存，单位MB
+         */
+        public Builder workerHeapMb(int workerHeapMb) {
+            this.workerHeapMb = workerHeapMb <= 0 ? 1024 : workerHeapMb;
+            return this;
+        }
+
+        /**
+         * 运行结束后把各阶段耗时、class耗时分布、读写字节数等指标以JSON格式写到该文件
+         */
+        public Builder metricsFile(String metricsFile) {
+            this.metricsFile = metricsFile;
+            return this;
+        }
+
+        /**
+         * 运行期间把指标注册为 JMX MBean（com.decompiler:type=DecompileMetrics），可以用 jconsole 等工具实时查看
+         */
+        public Builder jmxEnabled(boolean jmxEnabled) {
+            this.jmxEnabled = jmxEnabled;
+            return this;
+        }
+
+        /**
+         * 增量反编译：输出目录中保存本次运行的清单，下次运行时只处理有变化的class文件和JAR，
+         * 并删除已经不存在的输入上次产生的输出
+         */
+        public Builder incremental(boolean incremental) {
+            this.incremental = incremental;
+            return this;
+        }
+
+        /**
+         * 去重：内容相同的class只反编译一次，重复位置的输出优先使用硬链接，不支持时复制
+         * 使用硬链接时修改其中一个输出文件会同时改变其他位置的同一文件
+         */
+        public Builder deduplicate(boolean deduplicate) {
+            this.deduplicate = deduplicate;
+            return this;
+        }
+
+        /**
+         * 已知第三方库的索引文件，匹配的JAR（包括嵌套的JAR）不反编译，格式见 LibraryIndex
+         */
+        public Builder libraryIndex(String libraryIndex) {
+            this.libraryIndex = libraryIndex;
+            return this;
+        }
+
+        /**
+         * 第三方库源码JAR所在的目录，匹配的JAR有对应的源码JAR时直接输出其中的源码，没有时跳过
+         */
+        public Builder librarySourcesDir(String librarySourcesDir) {
+            this.librarySourcesDir = librarySourcesDir;
+            return this;
+        }
+
+        /**
+         * 只反编译类名匹配的class，可以多次调用，模式语法见 ClassFilter，如 com.ourcorp.** 或 regex:com\.ourcorp\..*
+         */
+        public Builder include(String... patterns) {
+            this.includes.addAll(Arrays.asList(patterns));
+            return this;
+        }
+
+        /**
+         * 不反编译类名匹配的class，优先于包含模式，如 META-INF/versions/**、module-info、**$$Lambda*
+         */
+        public Builder exclude(String... patterns) {
+            this.excludes.addAll(Arrays.asList(patterns));
+            return this;
+        }
+
+        /**
+         * 把反编译出的源码写到一个 sources JAR/ZIP 中，不在输出目录下创建目录和文件，条目路径与输出到目录时一致
+         * 总是使用内存模式；结果缓存、去重、增量反编译和工作进程都依赖输出目录中的文件，写入归档时不使用
+         */
+        public Builder outputArchive(String outputArchive) {
+            this.outputArchive = outputArchive;
+            return this;
+        }
+
+        /**
+         * 类路径索引文件：先为输入中的所有类建立索引并保存到该文件，反编译时作为库输入，可以解析父类、接口和泛型签名
+         * 再次运行时只重新扫描有变化的输入；索引文件不存在时自动创建
+         */
+        public Builder classpathIndex(String classpathIndex) {
+            this.classpathIndex = classpathIndex;
+            return this;
+        }
+
+        /**
+         * 从检查点继续：每次运行都会把任务结果分批记录到输出目录的检查点日志中，开启后读取上次的日志，
+         * 已经成功且输出文件还在的任务直接使用上次的结果，只反编译失败和没有完成的任务；输入或配置变化时重新开始
+         */
+        public Builder resume(boolean resume) {
+            this.resume = resume;
+            return this;
+        }
+
+        /**
+         * 自适应并发：根据吞吐量、CPU使用率、GC耗时和堆内存占用在运行时调整同时执行的任务数，
+         * 线程数作为上限，从CPU核数开始；读写较慢、CPU用不满时可以把线程数设得比CPU核数大
+         */
+        public Builder adaptiveConcurrency(boolean adaptiveConcurrency) {
+            this.adaptiveConcurrency = adaptiveConcurrency;
+            return this;
+        }
+
+        /**
+         * 反编译可以使用的堆内存（MB），0表示不限制：按class大小、方法数量和字节码长度估算每个任务的堆内存，
+         * 同时反编译的任务合计不超过预算，大class依次反编译，小class在剩余的内存中同时进行。
+         * 建议设为最大堆内存的一半左右，为缓存、队列等其他占用留出空间；使用工作进程时不生效
+         */
+        public Builder memoryBudgetMb(int memoryBudgetMb) {
+            this.memoryBudgetMb = Math.max(memoryBudgetMb, 0);
+            return this;
+        }
+
+        /**
+         * 同时执行的I/O任务数上限：解压JAR、复制class文件、读取JAR目录和写出源码在单独的执行器中进行，
+         * 不占用反编译线程；JDK 21 及以上使用虚拟线程。本地磁盘上较小的值就够了，网络文件系统可以设大一些
+         */
+        public Builder ioConcurrency(int ioConcurrency) {
+            this.ioConcurrency = Math.max(ioConcurrency, 1);
+            return this;
+        }
+
         public DecompilerConfig build() {
             return new DecompilerConfig(this);
         }
@@ -0,0 +1,19 @@
+package com.decompiler.config;
+
+/**
+ * 反编译任务的分组方式，同一组的class放在同一个Vineflower上下文中一起反编译
+ */
+public enum GroupingMode {
+    /**
+     * 每个class单独创建一个上下文
+     */
+    NONE,
+    /**
+     * 同一个JAR中的class放在一组，散落的class文件按所在目录分组
+     */
+    ARCHIVE,
+    /**
+     * 按包分组，即输出目录相同的class放在一组
+     */
+    PACKAGE
+}
@@ -119,6 +119,7 @@ public class OptionsBuilder {
 
     /**
      * 设置线程数
+     * 批量反编译时每个上下文的线程数按外部并发度和上下文中的class数量重新计算，这里的设置只对直接使用这些选项的调用方有效
      */
     public OptionsBuilder withThreads(int threadCount) {
         if (threadCount > 0) {
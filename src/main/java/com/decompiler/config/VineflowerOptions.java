@@ -33,6 +33,20 @@ public class VineflowerOptions {
     public static final String THR = "thr";      // 线程数
     public static final String IND = "ind";      // 缩进字符串
 
+    /**
+     * 反编译超时后重试使用的选项：在原选项基础上关闭泛型、模式匹配、switch表达式等额外的分析
+     */
+    public static Map<String, Object> fallbackOptions(Map<String, Object> options) {
+        Map<String, Object> fallback = new HashMap<>(options);
+        fallback.put(DGS, "0");
+        fallback.put(PAM, "0");
+        fallback.put(SWE, "0");
+        fallback.put(UDV, "0");
+        fallback.put(UMP, "0");
+        fallback.put(RER, "0");
+        return fallback;
+    }
+
     // 加载默认选项
     public static Map<String, Object> loadDefaultOptions() {
         Map<String, Object> options = new HashMap<>();
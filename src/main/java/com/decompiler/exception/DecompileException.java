@@ -9,4 +9,8 @@ public class DecompileException extends Exception {
         super(message);
     }
 
+    public DecompileException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
 }
\ No newline at end of file
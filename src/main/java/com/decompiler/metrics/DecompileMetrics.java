@@ -0,0 +1,434 @@
+package com.decompiler.metrics;
+
+import com.decompiler.task.DecompileResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一次反编译运行的指标：各阶段耗时、每个class的耗时分布、读写字节数、任务队列深度和工作线程利用率
+ * 所有记录方法都可以由多个线程同时调用，运行过程中可以随时读取，也可以通过 JMX 查看
+ *
+ * 阶段耗时是各线程耗时之和，多个线程同时执行同一阶段时会超过实际经过的时间；
+ * 流式模式下各阶段同时进行，遍历和读取JAR的耗时包含等待下游队列的时间；
+ * 使用工作进程时反编译和写文件在子进程中完成，子进程随每组结果返回这两个阶段的耗时和读写字节数，由主进程累加
+ */
+public class DecompileMetrics implements DecompileMetricsMBean {
+    private static final Logger logger = LoggerFactory.getLogger(DecompileMetrics.class);
+
+    private static final String OBJECT_NAME = "com.decompiler:type=DecompileMetrics";
+
+    /**
+     * 计时的阶段
+     */
+    public enum Phase {
+        /** 遍历输入，找出JAR和class文件，包括复制输入目录中的class文件 */
+        WALK,
+        /** 读取JAR：解压条目，内存模式下读取中央目录 */
+        EXTRACT,
+        /** Vineflower 反编译，不包括写文件 */
+        DECOMPILE,
+        /** 写出Java文件 */
+        WRITE
+    }
+
+    private final int threadCount;
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final LatencyHistogram classLatency = new LatencyHistogram();
+    private final LatencyHistogram taskLatency = new LatencyHistogram();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder duplicateClasses = new LongAdder();
+    private final LongAdder duplicateBytes = new LongAdder();
+    private final LongAdder duplicateSavedNanos = new LongAdder();
+    private final AtomicInteger successCount = new AtomicInteger(0);
+    private final AtomicInteger failureCount = new AtomicInteger(0);
+    private final AtomicInteger timeoutCount = new AtomicInteger(0);
+    private final AtomicInteger pendingTasks = new AtomicInteger(0);
+    private final AtomicInteger activeTasks = new AtomicInteger(0);
+    private final AtomicInteger maxQueueDepth = new AtomicInteger(0);
+    private final AtomicInteger maxActiveTasks = new AtomicInteger(0);
+    private final Map<String, Collection<?>> queues = new ConcurrentHashMap<>();
+    private final LongAdder busyNanos = new LongAdder();
+    private final AtomicLong firstTaskNanos = new AtomicLong(0);
+    private ObjectName registeredName;
+
+    /**
+     * @param threadCount 反编译线程数，用于计算利用率
+     */
+    public DecompileMetrics(int threadCount) {
+        this.threadCount = Math.max(threadCount, 1);
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    public void addPhaseTime(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(Math.max(nanos, 0));
+    }
+
+    /**
+     * 记录单个class从开始反编译到得到结果的耗时，包括读取缓存、超时重试和写文件
+     */
+    public void recordClassLatency(long nanos) {
+        classLatency.record(nanos);
+    }
+
+    public void addBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    public void addBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    /**
+     * 记录去重时跳过的重复class，它们的输出直接从第一次出现的class复制
+     */
+    public void addDuplicates(int classes, long bytes) {
+        duplicateClasses.add(classes);
+        duplicateBytes.add(bytes);
+    }
+
+    /**
+     * 记录一个重复class使用代表class的输出时节省的时间，即代表class实际的反编译耗时
+     */
+    public void addDuplicateSavedNanos(long nanos) {
+        duplicateSavedNanos.add(nanos);
+    }
+
+    public void recordResult(DecompileResult result) {
+        if (result.isSuccess()) {
+            successCount.incrementAndGet();
+        } else {
+            failureCount.incrementAndGet();
+            if (result.getStatus() == DecompileResult.Status.TIMEOUT) {
+                timeoutCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 登记一个任务队列，队列深度包括其中等待的元素
+     */
+    public void registerQueue(String name, Collection<?> queue) {
+        queues.put(name, queue);
+    }
+
+    public void unregisterQueue(String name) {
+        queues.remove(name);
+    }
+
+    /**
+     * 任务已提交到线程池，等待执行
+     */
+    public void taskSubmitted() {
+        pendingTasks.incrementAndGet();
+        updateMaxQueueDepth();
+    }
+
+    /**
+     * 任务开始执行，返回开始时间，执行结束后传给 taskFinished
+     *
+     * @param submitted 任务是否经过 taskSubmitted 登记
+     */
+    public long taskStarted(boolean submitted) {
+        if (submitted) {
+            pendingTasks.decrementAndGet();
+        }
+        maxActiveTasks.accumulateAndGet(activeTasks.incrementAndGet(), Math::max);
+        updateMaxQueueDepth();
+        long now = System.nanoTime();
+        firstTaskNanos.compareAndSet(0, now);
+        return now;
+    }
+
+    public void taskFinished(long startedNanos) {
+        long elapsed = System.nanoTime() - startedNanos;
+        activeTasks.decrementAndGet();
+        busyNanos.add(elapsed);
+        taskLatency.record(elapsed);
+    }
+
+    private void updateMaxQueueDepth() {
+        maxQueueDepth.accumulateAndGet(getQueueDepth(), Math::max);
+    }
+
+    /**
+     * 运行结束，之后经过时间和利用率不再变化
+     */
+    public void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    private long now() {
+        long end = endNanos;
+        return end != 0 ? end : System.nanoTime();
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return (now() - startNanos) / 1_000_000;
+    }
+
+    @Override
+    public int getSuccessCount() {
+        return successCount.get();
+    }
+
+    @Override
+    public int getFailureCount() {
+        return failureCount.get();
+    }
+
+    @Override
+    public int getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    @Override
+    public int getActiveTasks() {
+        return activeTasks.get();
+    }
+
+    /**
+     * 同时执行的任务数的最大值，正常情况下不超过线程数
+     */
+    @Override
+    public int getMaxActiveTasks() {
+        return maxActiveTasks.get();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        int depth = Math.max(pendingTasks.get(), 0);
+        for (Collection<?> queue : queues.values()) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    @Override
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * 从第一个任务开始执行起，工作线程处于忙碌状态的时间占比
+     */
+    @Override
+    public double getUtilization() {
+        long first = firstTaskNanos.get();
+        if (first == 0) {
+            return 0;
+        }
+        long window = now() - first;
+        return window <= 0 ? 0 : Math.min(1.0, (double) busyNanos.sum() / ((double) window * threadCount));
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getDuplicateClassCount() {
+        return duplicateClasses.sum();
+    }
+
+    @Override
+    public long getDuplicateBytes() {
+        return duplicateBytes.sum();
+    }
+
+    /**
+     * 去重节省的反编译时间（各线程累计），按每个重复class对应的代表class实际的反编译耗时累加
+     */
+    @Override
+    public long getDuplicateSavedMillis() {
+        return duplicateSavedNanos.sum() / 1_000_000;
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    public long getPhaseMillis(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum() / 1_000_000;
+    }
+
+    @Override
+    public long getWalkMillis() {
+        return getPhaseMillis(Phase.WALK);
+    }
+
+    @Override
+    public long getExtractMillis() {
+        return getPhaseMillis(Phase.EXTRACT);
+    }
+
+    @Override
+    public long getDecompileMillis() {
+        return getPhaseMillis(Phase.DECOMPILE);
+    }
+
+    @Override
+    public long getWriteMillis() {
+        return getPhaseMillis(Phase.WRITE);
+    }
+
+    @Override
+    public double getClassLatencyP50Millis() {
+        return classLatency.getPercentileMillis(0.5);
+    }
+
+    @Override
+    public double getClassLatencyP95Millis() {
+        return classLatency.getPercentileMillis(0.95);
+    }
+
+    @Override
+    public double getClassLatencyP99Millis() {
+        return classLatency.getPercentileMillis(0.99);
+    }
+
+    @Override
+    public double getClassLatencyMaxMillis() {
+        return classLatency.getMaxMillis();
+    }
+
+    /**
+     * 每个class的耗时分布
+     */
+    public LatencyHistogram getClassLatency() {
+        return classLatency;
+    }
+
+    /**
+     * 线程池中每个任务的耗时分布，分组模式下一个任务是一组class
+     */
+    public LatencyHistogram getTaskLatency() {
+        return taskLatency;
+    }
+
+    /**
+     * 注册到平台 MBeanServer，注册失败只记录警告
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            registeredName = name;
+            logger.info("已注册 JMX MBean: {}", OBJECT_NAME);
+        } catch (JMException e) {
+            logger.warn("注册 JMX MBean 失败: {}", e.getMessage());
+        }
+    }
+
+    public void unregisterMBean() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            logger.warn("注销 JMX MBean 失败: {}", e.getMessage());
+        }
+        registeredName = null;
+    }
+
+    /**
+     * 把全部指标以JSON格式写到文件中
+     */
+    public void writeSummary(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        Files.writeString(file.toPath(), toJson(), StandardCharsets.UTF_8);
+        logger.info("指标已写入: {}", file.getAbsolutePath());
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\n");
+        json.append("  \"elapsedMillis\": ").append(getElapsedMillis()).append(",\n");
+        json.append("  \"threadCount\": ").append(threadCount).append(",\n");
+        json.append("  \"results\": {\"success\": ").append(getSuccessCount())
+                .append(", \"failure\": ").append(getFailureCount())
+                .append(", \"timeout\": ").append(getTimeoutCount()).append("},\n");
+
+        json.append("  \"phaseMillis\": {");
+        Phase[] phases = Phase.values();
+        for (int i = 0; i < phases.length; i++) {
+            json.append(i == 0 ? "" : ", ")
+                    .append('"').append(phases[i].name().toLowerCase(Locale.ROOT)).append("\": ")
+                    .append(getPhaseMillis(phases[i]));
+        }
+        json.append("},\n");
+
+        json.append("  \"bytesRead\": ").append(getBytesRead()).append(",\n");
+        json.append("  \"bytesWritten\": ").append(getBytesWritten()).append(",\n");
+        json.append("  \"duplicates\": {\"classes\": ").append(getDuplicateClassCount())
+                .append(", \"bytes\": ").append(getDuplicateBytes())
+                .append(", \"savedMillis\": ").append(getDuplicateSavedMillis()).append("},\n");
+        json.append("  \"maxQueueDepth\": ").append(getMaxQueueDepth()).append(",\n");
+        json.append("  \"maxActiveTasks\": ").append(getMaxActiveTasks()).append(",\n");
+        json.append("  \"utilization\": ").append(format(getUtilization())).append(",\n");
+        json.append("  \"classLatency\": ");
+        appendHistogram(json, classLatency);
+        json.append(",\n");
+        json.append("  \"taskLatency\": ");
+        appendHistogram(json, taskLatency);
+        json.append("\n}\n");
+        return json.toString();
+    }
+
+    private static void appendHistogram(StringBuilder json, LatencyHistogram histogram) {
+        json.append("{\"count\": ").append(histogram.getCount())
+                .append(", \"meanMillis\": ").append(format(histogram.getMeanMillis()))
+                .append(", \"p50Millis\": ").append(format(histogram.getPercentileMillis(0.5)))
+                .append(", \"p95Millis\": ").append(format(histogram.getPercentileMillis(0.95)))
+                .append(", \"p99Millis\": ").append(format(histogram.getPercentileMillis(0.99)))
+                .append(", \"maxMillis\": ").append(format(histogram.getMaxMillis()))
+                .append(", \"buckets\": [");
+        boolean first = true;
+        for (Map.Entry<Double, Long> bucket : histogram.getBuckets().entrySet()) {
+            json.append(first ? "" : ", ")
+                    .append("{\"leMillis\": ").append(format(bucket.getKey()))
+                    .append(", \"count\": ").append(bucket.getValue()).append('}');
+            first = false;
+        }
+        json.append("]}");
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,51 @@
+package com.decompiler.metrics;
+
+/**
+ * 通过 JMX 查看反编译进度和各项指标，时间单位均为毫秒
+ */
+public interface DecompileMetricsMBean {
+
+    long getElapsedMillis();
+
+    int getSuccessCount();
+
+    int getFailureCount();
+
+    int getTimeoutCount();
+
+    int getActiveTasks();
+
+    int getMaxActiveTasks();
+
+    int getQueueDepth();
+
+    int getMaxQueueDepth();
+
+    double getUtilization();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getDuplicateClassCount();
+
+    long getDuplicateBytes();
+
+    long getDuplicateSavedMillis();
+
+    long getWalkMillis();
+
+    long getExtractMillis();
+
+    long getDecompileMillis();
+
+    long getWriteMillis();
+
+    double getClassLatencyP50Millis();
+
+    double getClassLatencyP95Millis();
+
+    double getClassLatencyP99Millis();
+
+    double getClassLatencyMaxMillis();
+}
@@ -0,0 +1,110 @@
+package com.decompiler.model;
+
+/**
+ * 反编译之前从class字节中读出的基本信息：真实类名、所在的外部类、访问标志、方法数量和字节码长度
+ * 由 {@link com.decompiler.util.ClassFileScanner} 扫描得到，不解析字节码
+ */
+public class ClassInfo {
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_SYNTHETIC = 0x1000;
+    private static final int ACC_MODULE = 0x8000;
+
+    private final String name;
+    private final String outerName;
+    private final String topLevelName;
+    private final int accessFlags;
+    private final int classSize;
+    private final int methodCount;
+    private final long codeLength;
+    private final long maxCodeLength;
+
+    /**
+     * @param name 内部名称，如 com/example/Foo$Bar
+     * @param outerName 直接外部类的内部名称，顶层类为 null
+     * @param topLevelName 所在顶层类的内部名称，顶层类为自身
+     * @param classSize class字节数
+     * @param codeLength 所有方法字节码长度之和
+     * @param maxCodeLength 最长的一个方法的字节码长度
+     */
+    public ClassInfo(String name, String outerName, String topLevelName, int accessFlags, int classSize,
+                     int methodCount, long codeLength, long maxCodeLength) {
+        this.name = name;
+        this.outerName = outerName;
+        this.topLevelName = topLevelName;
+        this.accessFlags = accessFlags;
+        this.classSize = classSize;
+        this.methodCount = methodCount;
+        this.codeLength = codeLength;
+        this.maxCodeLength = maxCodeLength;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOuterName() {
+        return outerName;
+    }
+
+    /**
+     * 所在顶层类的内部名称，Vineflower 把内部类和匿名类合并到这个类的Java文件中
+     */
+    public String getTopLevelName() {
+        return topLevelName;
+    }
+
+    /**
+     * 内部类、局部类或匿名类
+     */
+    public boolean isInner() {
+        return !name.equals(topLevelName);
+    }
+
+    /**
+     * 编译器生成的class，源码中没有对应的声明
+     */
+    public boolean isSynthetic() {
+        return (accessFlags & ACC_SYNTHETIC) != 0;
+    }
+
+    public boolean isInterface() {
+        return (accessFlags & ACC_INTERFACE) != 0;
+    }
+
+    /**
+     * module-info.class
+     */
+    public boolean isModule() {
+        return (accessFlags & ACC_MODULE) != 0;
+    }
+
+    public int getAccessFlags() {
+        return accessFlags;
+    }
+
+    public int getClassSize() {
+        return classSize;
+    }
+
+    public int getMethodCount() {
+        return methodCount;
+    }
+
+    public long getCodeLength() {
+        return codeLength;
+    }
+
+    public long getMaxCodeLength() {
+        return maxCodeLength;
+    }
+
+    @Override
+    public String toString() {
+        return "ClassInfo{" +
+                "name='" + name + '\'' +
+                ", topLevelName='" + topLevelName + '\'' +
+                ", methodCount=" + methodCount +
+                ", codeLength=" + codeLength +
+                '}';
+    }
+}
@@ -0,0 +1,66 @@
+package com.decompiler.model;
+
+import com.decompiler.config.GroupingMode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 表示一组在同一个反编译上下文中处理的任务
+ */
+public class DecompileBatch {
+    private final String key;
+    private final List<DecompileJob> jobs = new ArrayList<>();
+    private long totalSize;
+
+    public DecompileBatch(String key) {
+        this.key = key;
+    }
+
+    /**
+     * 按分组方式把任务分组
+     * 按JAR分组时归档条目和解压出的class文件按所属的JAR分组，散落的class文件按输出目录分组
+     * 嵌套归档中的条目按所在的嵌套归档分组，一个包含大量依赖的fat JAR可以分散到所有线程上
+     */
+    public static List<DecompileBatch> group(List<DecompileJob> jobs, GroupingMode mode) {
+        Map<String, DecompileBatch> batches = new LinkedHashMap<>();
+        for (DecompileJob job : jobs) {
+            String key = mode == GroupingMode.ARCHIVE && job.hasArchive()
+                    ? job.getArchivePath()
+                    : job.getTargetPath();
+            batches.computeIfAbsent(key, DecompileBatch::new).addJob(job);
+        }
+        return new ArrayList<>(batches.values());
+    }
+
+    public void addJob(DecompileJob job) {
+        jobs.add(job);
+        totalSize += job.getSize();
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public List<DecompileJob> getJobs() {
+        return jobs;
+    }
+
+    /**
+     * 组内所有class的字节码总大小，用于在线程间均衡分配
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    @Override
+    public String toString() {
+        return "DecompileBatch{" +
+                "key='" + key + '\'' +
+                ", jobs=" + jobs.size() +
+                ", totalSize=" + totalSize +
+                '}';
+    }
+}
@@ -6,20 +6,139 @@ import java.io.File;
  * 表示单个反编译任务
  */
 public class DecompileJob {
+    /**
+     * 嵌套归档条目名称中的分隔符，如 WEB-INF/lib/foo.jar!/com/example/Foo.class
+     */
+    public static final String NESTED_SEPARATOR = "!/";
+
     private final File sourceFile;
+    private final String entryName;
+    private final long entrySize;
     private final String targetPath;
     private final String relativePath;
+    // 解压模式下解压出这个class文件的JAR，其他任务为 null
+    private final File extractedFrom;
+    // 第一次读取class字节时扫描得到，之后估算开销、内存和检查输出时直接使用
+    private volatile ClassInfo classInfo;
+    // 去重计算指纹时读入的class字节，反编译时直接使用，得到结果后释放
+    private volatile byte[] loadedBytes;
 
     public DecompileJob(File sourceFile, String targetPath, String relativePath) {
+        this(sourceFile, null, -1, targetPath, relativePath, null);
+    }
+
+    /**
+     * 创建一个从JAR中解压出的class文件的任务，按JAR分组时与同一个JAR中的其他class分在一组
+     *
+     * @param extractedFrom 解压出这个class文件的JAR
+     */
+    public DecompileJob(File sourceFile, String targetPath, String relativePath, File extractedFrom) {
+        this(sourceFile, null, -1, targetPath, relativePath, extractedFrom);
+    }
+
+    /**
+     * 创建一个直接从归档中读取 class 的任务
+     *
+     * @param sourceFile 所在的归档文件，entryName 为空时就是 class 文件本身
+     * @param entryName 归档内的条目名称，如 com/example/Foo.class；嵌套归档中的条目用 !/ 连接各层路径，
+     *                  如 WEB-INF/lib/foo.jar!/com/example/Foo.class
+     * @param entrySize 条目解压后的大小
+     */
+    public DecompileJob(File sourceFile, String entryName, long entrySize, String targetPath, String relativePath) {
+        this(sourceFile, entryName, entrySize, targetPath, relativePath, null);
+    }
+
+    private DecompileJob(File sourceFile, String entryName, long entrySize, String targetPath, String relativePath,
+                         File extractedFrom) {
         this.sourceFile = sourceFile;
+        this.entryName = entryName;
+        this.entrySize = entrySize;
         this.targetPath = targetPath;
         this.relativePath = relativePath;
+        this.extractedFrom = extractedFrom;
     }
 
     public File getSourceFile() {
         return sourceFile;
     }
 
+    public String getEntryName() {
+        return entryName;
+    }
+
+    public boolean isArchiveEntry() {
+        return entryName != null;
+    }
+
+    /**
+     * 解压出这个class文件的JAR，不是解压出的class文件时为 null
+     */
+    public File getExtractedFrom() {
+        return extractedFrom;
+    }
+
+    /**
+     * 是否知道自己所属的JAR：直接读取归档的条目，或者从JAR中解压出的class文件
+     */
+    public boolean hasArchive() {
+        return isArchiveEntry() || extractedFrom != null;
+    }
+
+    /**
+     * 条目直接所在的归档，嵌套归档中的条目为 外层归档路径!/嵌套归档路径，解压出的class文件为解压它的JAR
+     * 同一个嵌套归档中的条目按JAR分组时分在同一组，不同的嵌套归档各自成组
+     */
+    public String getArchivePath() {
+        if (extractedFrom != null) {
+            return extractedFrom.getAbsolutePath();
+        }
+        String path = sourceFile.getAbsolutePath();
+        int separator = isArchiveEntry() ? entryName.lastIndexOf(NESTED_SEPARATOR) : -1;
+        return separator < 0 ? path : path + NESTED_SEPARATOR + entryName.substring(0, separator);
+    }
+
+    /**
+     * class 文件名，如 Foo.class
+     */
+    public String getClassFileName() {
+        return isArchiveEntry()
+                ? entryName.substring(entryName.lastIndexOf('/') + 1)
+                : sourceFile.getName();
+    }
+
+    /**
+     * 交给Vineflower的类名，归档条目取条目路径，如 com/example/Foo，class文件取文件名
+     * 与真实类名不一致时Vineflower会在读取字节后自行修正，输出文件按这里的名称命名
+     */
+    public String getInternalName() {
+        String name = isArchiveEntry() ? getClassEntryName() : sourceFile.getName();
+        return name.toLowerCase().endsWith(".class") ? name.substring(0, name.length() - 6) : name;
+    }
+
+    /**
+     * 条目在直接所在的归档中的名称，嵌套归档中的条目去掉外层的路径
+     */
+    private String getClassEntryName() {
+        int separator = entryName.lastIndexOf(NESTED_SEPARATOR);
+        return separator < 0 ? entryName : entryName.substring(separator + NESTED_SEPARATOR.length());
+    }
+
+    /**
+     * class字节码的大小
+     */
+    public long getSize() {
+        return isArchiveEntry() ? entrySize : sourceFile.length();
+    }
+
+    /**
+     * 用于日志输出的名称，归档条目显示为 xxx.jar!/com/example/Foo.class
+     */
+    public String getDisplayName() {
+        return isArchiveEntry()
+                ? sourceFile.getName() + "!/" + entryName
+                : sourceFile.getName();
+    }
+
     public String getTargetPath() {
         return targetPath;
     }
@@ -28,12 +147,44 @@ public class DecompileJob {
         return relativePath;
     }
 
+    /**
+     * class字节的扫描结果，还没有读取过或者无法解析时为 null
+     */
+    public ClassInfo getClassInfo() {
+        return classInfo;
+    }
+
+    public void setClassInfo(ClassInfo classInfo) {
+        this.classInfo = classInfo;
+    }
+
+    /**
+     * 已经读入内存的class字节，没有时为 null
+     */
+    public byte[] getLoadedBytes() {
+        return loadedBytes;
+    }
+
+    public void setLoadedBytes(byte[] loadedBytes) {
+        this.loadedBytes = loadedBytes;
+    }
+
+    /**
+     * 释放已经读入内存的class字节，返回释放的字节数
+     */
+    public synchronized long releaseLoadedBytes() {
+        byte[] bytes = loadedBytes;
+        loadedBytes = null;
+        return bytes != null ? bytes.length : 0;
+    }
+
     @Override
     public String toString() {
         return "DecompileJob{" +
                 "sourceFile=" + sourceFile +
+                ", entryName='" + entryName + '\'' +
                 ", targetPath='" + targetPath + '\'' +
                 ", relativePath='" + relativePath + '\'' +
                 '}';
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,503 @@
+package com.decompiler.server;
+
+import com.decompiler.Decompiler;
+import com.decompiler.SourceDecompiler;
+import com.decompiler.cache.ResultCache;
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.exception.DecompileException;
+import com.decompiler.task.DecompileResult;
+import com.decompiler.task.FairScheduler;
+import com.decompiler.task.MemoryBudget;
+import com.decompiler.util.ClassFileScanner;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 常驻的反编译守护进程，只监听本机回环地址，避免每次调用都重新启动 JVM、加载 Vineflower 和预热 JIT
+ * <ul>
+ *     <li>POST /decompile?input=路径&amp;output=目录[&amp;archive=文件]：反编译 JAR、目录或 class 文件，每完成一个class返回一行结果</li>
+ *     <li>POST /class：请求体是class文件内容，在内存中反编译并返回源码，不经过共享线程池</li>
+ *     <li>GET /status：线程数、进行中的请求数、各客户端排队的任务数和 /class 的缓存命中情况</li>
+ *     <li>POST /shutdown：停止守护进程</li>
+ * </ul>
+ *
+ * 所有请求的反编译任务在同一个 {@link FairScheduler} 中执行，请求头 X-Client-Id 相同的请求作为同一个客户端轮流执行，
+ * 没有该请求头时每个连接作为一个客户端。每个请求的其他配置来自启动守护进程时的配置
+ *
+ * 请求可以读写守护进程用户能访问的任何路径，因此每次启动生成一个随机令牌，写入只有当前用户可读的令牌文件，
+ * 每个请求都要在 X-Daemon-Token 请求头中带上它。带 Origin 请求头或者 Host 不是回环地址的请求一律拒绝，
+ * 浏览器中的网页（包括通过 DNS 重绑定）无法调用
+ */
+public class DecompileServer {
+    private static final Logger logger = LoggerFactory.getLogger(DecompileServer.class);
+
+    public static final int DEFAULT_PORT = 8719;
+    private static final String CLIENT_HEADER = "X-Client-Id";
+    public static final String TOKEN_HEADER = "X-Daemon-Token";
+
+    private final DecompilerConfig template;
+    private final Map<String, Object> options;
+    private final int port;
+    private final FairScheduler scheduler;
+    private final AtomicInteger activeRequests = new AtomicInteger(0);
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final String token = newToken();
+    private Path tokenFile;
+    private ResultCache resultCache;
+    private MemoryBudget memoryBudget;
+    private SourceDecompiler sourceDecompiler;
+    private HttpServer httpServer;
+    private ExecutorService requestExecutor;
+
+    /**
+     * @param config 每个请求使用的配置，输入和输出路径由请求指定
+     * @param port 监听的端口，0 表示随机选择
+     */
+    public DecompileServer(DecompilerConfig config, Map<String, Object> options, int port) {
+        this.template = requestTemplate(config);
+        this.options = options;
+        this.port = port;
+        this.scheduler = new FairScheduler(template.getThreadCount());
+    }
+
+    /**
+     * 预热反编译器后开始监听
+     */
+    public void start() throws IOException {
+        if (template.getCacheDir() != null) {
+            resultCache = new ResultCache(new File(template.getCacheDir()), template.getCacheMaxSize(), options);
+        }
+        if (template.getMemoryBudgetMb() > 0) {
+            // 所有请求共用一个预算，同时运行的请求合计不超过
+            memoryBudget = new MemoryBudget(template.getMemoryBudgetMb() * 1024L * 1024);
+        }
+        // 创建时完成预热
+        sourceDecompiler = new SourceDecompiler.Builder()
+                .options(options)
+                .poolSize(template.getThreadCount())
+                .build();
+
+        AtomicInteger threadId = new AtomicInteger(0);
+        requestExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "daemon-request-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        tokenFile = writeTokenFile(httpServer.getAddress().getPort());
+        httpServer.createContext("/decompile", handler("POST", this::handleDecompile));
+        httpServer.createContext("/class", handler("POST", this::handleClass));
+        httpServer.createContext("/status", handler("GET", this::handleStatus));
+        httpServer.createContext("/shutdown", handler("POST", this::handleShutdown));
+        httpServer.setExecutor(requestExecutor);
+        httpServer.start();
+        logger.info("反编译守护进程已启动: http://{}:{}，{} 个反编译线程，令牌文件: {}",
+                InetAddress.getLoopbackAddress().getHostAddress(), getPort(), scheduler.getThreadCount(), tokenFile);
+    }
+
+    /**
+     * 本次启动的令牌文件，内容是请求头 X-Daemon-Token 需要的值；启动之前为 null
+     */
+    public Path getTokenFile() {
+        return tokenFile;
+    }
+
+    /**
+     * 令牌文件的位置：用户目录下的 .java-decompiler/daemon-端口.token
+     */
+    public static Path tokenFile(int port) {
+        return Path.of(System.getProperty("user.home"), ".java-decompiler", "daemon-" + port + ".token");
+    }
+
+    /**
+     * 实际监听的端口
+     */
+    public int getPort() {
+        return httpServer != null ? httpServer.getAddress().getPort() : port;
+    }
+
+    /**
+     * 阻塞直到收到停止请求或者调用了 stop
+     */
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * 停止监听，等待进行中的请求结束，最多等待10秒；已经停止时不做任何事
+     */
+    public synchronized void stop() {
+        if (stopped.getCount() == 0) {
+            return;
+        }
+        if (httpServer != null) {
+            httpServer.stop(10);
+        }
+        if (requestExecutor != null) {
+            requestExecutor.shutdown();
+        }
+        if (tokenFile != null) {
+            try {
+                Files.deleteIfExists(tokenFile);
+            } catch (IOException e) {
+                logger.warn("删除令牌文件失败: {}", tokenFile, e);
+            }
+        }
+        scheduler.close();
+        stopped.countDown();
+    }
+
+    /**
+     * 多个请求同时运行，不支持只适合单次运行的功能
+     */
+    private static DecompilerConfig requestTemplate(DecompilerConfig config) {
+        DecompilerConfig.Builder builder = new DecompilerConfig.Builder(config);
+        if (config.isStreaming()) {
+            logger.warn("守护进程不使用流式模式，流式处理的线程会一直占用共享的线程池");
+            builder.streaming(false);
+        }
+        if (config.isOutOfProcess()) {
+            logger.warn("守护进程在当前进程中反编译，工作进程每个请求都要重新启动");
+            builder.outOfProcess(false);
+        }
+        if (config.isAdaptiveConcurrency()) {
+            logger.warn("守护进程的线程池由所有请求共享，不调整单个请求的并发度");
+            builder.adaptiveConcurrency(false);
+        }
+        if (config.isJmxEnabled() || config.getMetricsFile() != null) {
+            logger.warn("守护进程不注册 JMX 指标，也不写出指标文件，同时运行的请求会互相覆盖");
+            builder.jmxEnabled(false).metricsFile(null);
+        }
+        if (config.getOutputArchive() != null || config.getClasspathIndex() != null) {
+            logger.warn("守护进程忽略配置中的源码归档和类路径索引，它们对应单个输入，由请求指定归档");
+            builder.outputArchive(null).classpathIndex(null);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 反编译 JAR、目录或 class 文件，每得到一个class的结果就写出一行，以制表符分隔：
+     * OK 名称 输出文件...；FAIL 名称 状态 错误信息；最后一行为 DONE 成功数 失败数 耗时毫秒，出错时为 ERROR 错误信息
+     */
+    private void handleDecompile(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange);
+        String input = query.get("input");
+        String output = query.get("output");
+        if (input == null || output == null) {
+            sendText(exchange, 400, "需要 input 和 output 参数");
+            return;
+        }
+        if (!new File(input).exists()) {
+            sendText(exchange, 400, "输入不存在: " + input);
+            return;
+        }
+
+        DecompilerConfig config = new DecompilerConfig.Builder(template)
+                .inputPath(input)
+                .outputPath(output)
+                .outputArchive(query.get("archive"))
+                .build();
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        ResultWriter writer = new ResultWriter(exchange.getResponseBody());
+        long start = System.currentTimeMillis();
+        try {
+            Decompiler decompiler = run(config, clientName(exchange), writer::write);
+            writer.writeLine("DONE\t" + decompiler.getMetrics().getSuccessCount()
+                    + "\t" + decompiler.getMetrics().getFailureCount()
+                    + "\t" + (System.currentTimeMillis() - start));
+        } catch (Exception e) {
+            logger.error("反编译请求失败: {}", input, e);
+            writer.writeLine("ERROR\t" + oneLine(e.toString()));
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * 反编译请求体中的class，返回源码
+     */
+    private void handleClass(HttpExchange exchange) throws IOException {
+        byte[] classBytes;
+        try (InputStream in = exchange.getRequestBody()) {
+            classBytes = in.readAllBytes();
+        }
+        if (ClassFileScanner.readClassName(classBytes) == null) {
+            sendText(exchange, 400, "请求体不是有效的class文件");
+            return;
+        }
+
+        String source;
+        try {
+            source = sourceDecompiler.decompile(classBytes);
+        } catch (DecompileException e) {
+            sendText(exchange, 422, oneLine(e.getMessage()));
+            return;
+        }
+        byte[] body = source.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/x-java-source; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"threads\": ").append(scheduler.getThreadCount())
+                .append(", \"activeRequests\": ").append(activeRequests.get())
+                .append(", \"queuedTasks\": {");
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : scheduler.getQueuedTasks().entrySet()) {
+            json.append(i++ == 0 ? "" : ", ")
+                    .append('"').append(entry.getKey().replace("\\", "\\\\").replace("\"", "\\\"")).append("\": ")
+                    .append(entry.getValue());
+        }
+        json.append("}, \"classCache\": {\"hits\": ").append(sourceDecompiler.getHitCount())
+                .append(", \"misses\": ").append(sourceDecompiler.getMissCount()).append("}}\n");
+
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void handleShutdown(HttpExchange exchange) throws IOException {
+        sendText(exchange, 200, "正在停止");
+        logger.info("收到停止请求");
+        // 在请求线程之外停止，HttpServer.stop 会等待当前请求结束
+        Thread stopper = new Thread(this::stop, "daemon-stop");
+        stopper.setDaemon(true);
+        stopper.start();
+    }
+
+    /**
+     * 在共享线程池中为客户端执行一次反编译
+     */
+    private Decompiler run(DecompilerConfig config, String client,
+                           Consumer<DecompileResult> listener) throws IOException {
+        activeRequests.incrementAndGet();
+        try {
+            Decompiler decompiler = new Decompiler(config, options, scheduler.forClient(client));
+            decompiler.setResultCache(resultCache);
+            decompiler.setMemoryBudget(memoryBudget);
+            decompiler.setResultListener(listener);
+            decompiler.execute();
+            return decompiler;
+        } finally {
+            activeRequests.decrementAndGet();
+        }
+    }
+
+    private static String clientName(HttpExchange exchange) {
+        String client = exchange.getRequestHeaders().getFirst(CLIENT_HEADER);
+        if (client != null && !client.isBlank()) {
+            return client.trim();
+        }
+        InetSocketAddress remote = exchange.getRemoteAddress();
+        return remote.getAddress().getHostAddress() + ":" + remote.getPort();
+    }
+
+    private static Map<String, String> parseQuery(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String oneLine(String text) {
+        return text == null ? "" : text.replace('\n', ' ').replace('\r', ' ').replace('\t', ' ');
+    }
+
+    /**
+     * 生成令牌文件，只有当前用户可以读写；同一端口上次启动留下的文件被覆盖
+     */
+    private Path writeTokenFile(int boundPort) throws IOException {
+        Path file = tokenFile(boundPort);
+        Path dir = file.getParent();
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        if (posix) {
+            Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            Files.deleteIfExists(file);
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createDirectories(dir);
+            Files.deleteIfExists(file);
+            Files.createFile(file);
+            File plain = file.toFile();
+            plain.setReadable(false, false);
+            plain.setReadable(true, true);
+            plain.setWritable(false, false);
+            plain.setWritable(true, true);
+        }
+        Files.writeString(file, token + "\n", StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    /**
+     * 拒绝来自浏览器的请求和没有带上正确令牌的请求，返回是否可以继续处理
+     */
+    private boolean authorize(HttpExchange exchange) throws IOException {
+        Headers headers = exchange.getRequestHeaders();
+        if (headers.containsKey("Origin") || !isLoopbackHost(headers.getFirst("Host"))) {
+            sendText(exchange, 403, "只接受本机非浏览器客户端的请求");
+            return false;
+        }
+        String presented = headers.getFirst(TOKEN_HEADER);
+        if (presented == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                presented.trim().getBytes(StandardCharsets.UTF_8))) {
+            sendText(exchange, 401, "需要在 " + TOKEN_HEADER + " 请求头中提供令牌文件中的令牌");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Host 请求头是否指向回环地址，没有 Host 请求头的 HTTP/1.0 客户端不是浏览器，允许
+     */
+    private static boolean isLoopbackHost(String host) {
+        if (host == null) {
+            return true;
+        }
+        String name = host.trim().toLowerCase();
+        if (name.startsWith("[")) {
+            int end = name.indexOf(']');
+            name = end > 0 ? name.substring(1, end) : name;
+        } else if (name.indexOf(':') >= 0) {
+            name = name.substring(0, name.indexOf(':'));
+        }
+        return name.equals("localhost") || name.equals("::1") || name.matches("127(\\.\\d{1,3}){3}");
+    }
+
+    /**
+     * 检查来源、令牌和请求方法，处理过程中的异常返回 500
+     */
+    private HttpHandler handler(String method, HttpHandler delegate) {
+        return exchange -> {
+            try (exchange) {
+                if (!authorize(exchange)) {
+                    return;
+                }
+                if (!method.equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    sendText(exchange, 405, "只支持 " + method);
+                    return;
+                }
+                delegate.handle(exchange);
+            } catch (Exception e) {
+                logger.error("处理请求失败: {}", exchange.getRequestURI(), e);
+                try {
+                    sendText(exchange, 500, oneLine(e.toString()));
+                } catch (IOException | IllegalStateException ignored) {
+                    // 响应头已经发出
+                }
+            }
+        };
+    }
+
+    /**
+     * 逐行写出反编译结果，客户端断开后不再写出，反编译继续进行
+     */
+    private static class ResultWriter {
+        private final Writer out;
+        private boolean disconnected;
+
+        ResultWriter(OutputStream out) {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+
+        void write(DecompileResult result) {
+            StringBuilder line = new StringBuilder();
+            if (result.isSuccess()) {
+                line.append("OK\t").append(oneLine(result.getJob().getDisplayName()));
+                for (File file : result.getOutputFiles()) {
+                    line.append('\t').append(file.getPath());
+                }
+            } else {
+                line.append("FAIL\t").append(oneLine(result.getJob().getDisplayName()))
+                        .append('\t').append(result.getStatus())
+                        .append('\t').append(oneLine(result.getErrorMessage()));
+            }
+            writeLine(line.toString());
+        }
+
+        void writeLine(String line) {
+            if (disconnected) {
+                return;
+            }
+            try {
+                out.write(line);
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                disconnected = true;
+                logger.warn("客户端已断开，继续反编译但不再返回结果: {}", e.getMessage());
+            }
+        }
+
+        void close() {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // 客户端已断开
+            }
+        }
+    }
+}
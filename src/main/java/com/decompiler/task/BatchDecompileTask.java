@@ -0,0 +1,231 @@
+package com.decompiler.task;
+
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.metrics.DecompileMetrics;
+import com.decompiler.model.ClassInfo;
+import com.decompiler.model.DecompileBatch;
+import com.decompiler.model.DecompileJob;
+import com.decompiler.util.ArchiveReader;
+import com.decompiler.util.ClassBytesSource;
+import com.decompiler.util.ClassFileScanner;
+import com.decompiler.util.VineDecompiler;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.decompiler.CancelationManager;
+import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 在同一个Vineflower上下文中反编译一组class
+ * 组内的类结构只建立一次，同组的外部类和内部类可以互相关联，内部类会合并到外部类的源码中
+ */
+public class BatchDecompileTask implements Callable<List<DecompileResult>> {
+    private static final Logger logger = LoggerFactory.getLogger(BatchDecompileTask.class);
+
+    /**
+     * 整组期限最多按这么多个class累计
+     * Vineflower 先反编译完上下文中的所有class再依次写出，无法在整组运行过程中为每个class单独计时
+     */
+    private static final int MAX_BATCH_TIMEOUT_JOBS = 10;
+
+    private final DecompileBatch batch;
+    private final DecompilerConfig config;
+    private final Map<String, Object> options;
+    private final ArchiveReader archiveReader;
+    private final TimeoutGuard timeoutGuard;
+    private final DecompileMetrics metrics;
+    private final TaskContext context;
+    private final TaskContext fallbackContext;
+
+    /**
+     * 组内的class互相影响，不使用上下文中的结果缓存
+     */
+    public BatchDecompileTask(DecompileBatch batch, TaskContext context) {
+        this.batch = batch;
+        this.config = context.getConfig();
+        this.options = context.getOptions();
+        this.archiveReader = context.getArchiveReader();
+        this.timeoutGuard = context.getTimeoutGuard();
+        this.metrics = context.getMetrics();
+        this.context = context;
+        this.fallbackContext = context.withoutCache();
+    }
+
+    @Override
+    public List<DecompileResult> call() {
+        MemoryBudget memoryBudget = context.getMemoryBudget();
+        long reserved = 0;
+        try {
+            if (memoryBudget != null) {
+                reserved = memoryBudget.acquire(estimateHeapBytes());
+            }
+            if (timeoutGuard == null) {
+                return decompileBatch();
+            }
+
+            // 整组的期限按组内class数量累计，但不超过 MAX_BATCH_TIMEOUT_JOBS 个class的期限，
+            // 一个卡住的class最多拖住整组这么久，之后逐个反编译，每个class按自己的期限处理
+            long timeoutMillis = config.getJobTimeoutMillis() * Math.min(batch.getJobs().size(), MAX_BATCH_TIMEOUT_JOBS);
+            try {
+                return timeoutGuard.run(this::decompileBatch, timeoutMillis);
+            } catch (TimeoutException e) {
+                logger.warn("整组反编译超时，改为逐个反编译: {}", batch.getKey());
+            } catch (Exception e) {
+                logger.error("反编译失败: " + batch.getKey(), e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            List<DecompileResult> results = new ArrayList<>(batch.getJobs().size());
+            for (DecompileJob job : batch.getJobs()) {
+                results.add(new DecompileResult(job, false, "等待内存预算时被中断", null));
+            }
+            return results;
+        } finally {
+            // 逐个反编译时每个class重新申请
+            if (reserved > 0) {
+                memoryBudget.release(reserved);
+            }
+        }
+
+        // 逐个反编译，找出导致超时的class，其余class仍然可以正常输出
+        List<DecompileResult> results = new ArrayList<>(batch.getJobs().size());
+        for (DecompileJob job : batch.getJobs()) {
+            results.add(new DecompileTask(job, fallbackContext).call());
+        }
+        return results;
+    }
+
+    /**
+     * 整组的堆内存按组内每个class单独反编译时的估算值累加，组内的class同时保存在一个上下文中
+     */
+    private long estimateHeapBytes() {
+        long total = 0;
+        for (DecompileJob job : batch.getJobs()) {
+            try {
+                byte[] classBytes = archiveReader.readClassBytes(job);
+                total += ClassFileScanner.estimateHeapBytes(ClassFileScanner.scan(job, classBytes), classBytes.length);
+            } catch (Exception e) {
+                // 反编译时会再次读取并报告错误
+            }
+        }
+        return total;
+    }
+
+    private List<DecompileResult> decompileBatch() {
+        List<DecompileResult> results = new ArrayList<>(batch.getJobs().size());
+        List<DecompileJob> loadedJobs = new ArrayList<>();
+
+        try {
+            // 每个class的输出目录由 ClassBytesSource 以绝对路径给出
+            File outputDir = new File(config.getOutputPath());
+            boolean toDirectory = context.getArchiveWriter() == null;
+
+            PrintStreamLogger decompilerLogger = new PrintStreamLogger(new PrintStream(OutputStream.nullOutputStream()));
+            VineDecompiler decompiler = context.createDecompiler(outputDir, options, decompilerLogger,
+                    batch.getJobs().size());
+            DecompilerContext decompilerContext = TimeoutGuard.bindContext();
+
+            Set<String> createdDirs = new HashSet<>();
+            for (DecompileJob job : batch.getJobs()) {
+                try {
+                    File targetDir = new File(job.getTargetPath()).getAbsoluteFile();
+                    if (toDirectory && createdDirs.add(targetDir.getPath())) {
+                        FileUtils.forceMkdir(targetDir);
+                    }
+                    byte[] bytes = archiveReader.readClassBytes(job);
+                    metrics.addBytesRead(bytes.length);
+                    ClassInfo info = ClassFileScanner.scan(job, bytes);
+                    decompiler.addSource(new ClassBytesSource(sourceName(job, info), bytes, targetDir.getPath()));
+                    loadedJobs.add(job);
+                } catch (Exception e) {
+                    logger.warn("读取class失败: {} - {}", job.getDisplayName(), e.getMessage());
+                    results.add(new DecompileResult(job, false, e.getMessage(), null));
+                }
+            }
+
+            logger.info("正在反编译: {} ({} 个class)", batch.getKey(), loadedJobs.size());
+            long start = System.nanoTime();
+            long elapsed;
+            try {
+                decompiler.decompileContext();
+            } finally {
+                TimeoutGuard.unbindContext(decompilerContext);
+                elapsed = System.nanoTime() - start;
+                DecompileTask.recordDecompileMetrics(metrics, decompiler, elapsed);
+            }
+            logger.info("反编译完成: {}", batch.getKey());
+
+            // 整组的耗时按字节数分摊到每个class
+            long loadedSize = Math.max(loadedJobs.stream().mapToLong(DecompileJob::getSize).sum(), 1);
+            Set<File> savedFiles = new HashSet<>(decompiler.getSavedFiles());
+            for (DecompileJob job : loadedJobs) {
+                DecompileResult result = checkOutput(job, savedFiles);
+                result.setDecompileNanos(Math.round((double) elapsed * Math.max(job.getSize(), 0) / loadedSize));
+                results.add(result);
+            }
+        } catch (CancelationManager.CanceledException e) {
+            // 超过期限，由 call 改为逐个反编译
+            throw e;
+        } catch (Exception e) {
+            logger.error("反编译失败: " + batch.getKey(), e);
+            for (DecompileJob job : loadedJobs) {
+                results.add(new DecompileResult(job, false, e.getMessage(), null));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * 根据保存器记录的文件检查任务对应的Java文件是否已生成
+     * 内部类和匿名类通常被合并到外部类中，此时外部类的Java文件已生成即视为成功；
+     * 外部类按class字节中记录的顶层类确定，无法解析的class按文件名中第一个 $ 之前的部分推断
+     */
+    /**
+     * 交给 Vineflower 的类名。class文件只知道文件名，按JAR分组时不同包中的同名class在同一个上下文中会互相覆盖，
+     * 加上扫描得到的包名；输出文件仍按文件名命名
+     */
+    private static String sourceName(DecompileJob job, ClassInfo info) {
+        String name = job.getInternalName();
+        if (job.isArchiveEntry() || info == null) {
+            return name;
+        }
+        int separator = info.getName().lastIndexOf('/');
+        return separator < 0 ? name : info.getName().substring(0, separator + 1) + name;
+    }
+
+    private DecompileResult checkOutput(DecompileJob job, Set<File> savedFiles) {
+        String name = job.getClassFileName();
+        String baseName = name.substring(0, name.length() - 6);
+        Path targetDir = Path.of(job.getTargetPath()).toAbsolutePath().normalize();
+
+        File javaFile = targetDir.resolve(baseName + ".java").toFile();
+        ClassInfo info = job.getClassInfo();
+        if (!savedFiles.contains(javaFile) && info != null && info.isInner()) {
+            String topLevelName = info.getTopLevelName();
+            javaFile = targetDir.resolve(topLevelName.substring(topLevelName.lastIndexOf('/') + 1) + ".java").toFile();
+        } else if (!savedFiles.contains(javaFile) && info == null && baseName.indexOf('$') > 0) {
+            javaFile = targetDir.resolve(baseName.substring(0, baseName.indexOf('$')) + ".java").toFile();
+        }
+
+        if (savedFiles.contains(javaFile)) {
+            DecompileTask.deleteClassFileIfConfigured(config, job);
+            return new DecompileResult(job, true, null, job.getTargetPath(), List.of(javaFile));
+        }
+
+        return new DecompileResult(job, false, "未生成Java文件", job.getTargetPath());
+    }
+}
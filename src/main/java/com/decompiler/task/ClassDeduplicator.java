@@ -0,0 +1,347 @@
+package com.decompiler.task;
+
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.metrics.DecompileMetrics;
+import com.decompiler.model.ClassInfo;
+import com.decompiler.model.DecompileBatch;
+import com.decompiler.model.DecompileJob;
+import com.decompiler.util.ArchiveReader;
+import com.decompiler.util.ClassFileScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 反编译前按class字节去重
+ * 以源文件为单位计算指纹：顶层类和它的内部类、匿名类（按 {@link ClassInfo} 中的顶层类归在一起）的class文件名和字节的 SHA-256，
+ * 指纹相同的源文件只反编译第一次出现的那一份（代表），其余的从所在的组中去掉，在代表完成后把输出文件硬链接（不支持时复制）到自己的输出目录
+ *
+ * 典型的场景是同一个依赖被打包进多个WAR，或者同时出现在JAR、WEB-INF/classes 和散落的class文件中。
+ * 按JAR或包分组时组内的每个源文件单独去重，组内其余的源文件照常在同一个上下文中反编译；
+ * 一个源文件的所有class需要输出到同一个目录才参与去重
+ *
+ * 计算指纹时读入的class字节保存在任务中（合计不超过 MAX_LOADED_BYTES），反编译时不再读取；
+ * 重复的任务登记时释放，其余任务在得到结果时释放
+ */
+public class ClassDeduplicator {
+    private static final Logger logger = LoggerFactory.getLogger(ClassDeduplicator.class);
+
+    /**
+     * 计算指纹后保存在任务中、等待反编译的class字节合计的上限，超出后的class在反编译时重新读取
+     */
+    private static final long MAX_LOADED_BYTES = 256L * 1024 * 1024;
+
+    private final DecompilerConfig config;
+    private final ArchiveReader archiveReader;
+    private final DecompileMetrics metrics;
+    private final boolean keepBytes;
+    private final AtomicLong loadedBytes = new AtomicLong(0);
+    // 指纹 -> 代表源文件中按class文件名索引的任务
+    private final Map<String, Map<String, Slot>> representatives = new ConcurrentHashMap<>();
+    // 代表源文件中的任务 -> 该任务的结果以及等待它的重复任务
+    private final Map<DecompileJob, Slot> slots = new ConcurrentHashMap<>();
+    private final AtomicInteger linkedFiles = new AtomicInteger(0);
+    private final AtomicInteger copiedFiles = new AtomicInteger(0);
+
+    /**
+     * @param keepBytes 是否把计算指纹时读入的class字节留给反编译使用；在工作进程中反编译时主进程用不到它们
+     */
+    public ClassDeduplicator(DecompilerConfig config, ArchiveReader archiveReader, DecompileMetrics metrics,
+                             boolean keepBytes) {
+        this.config = config;
+        this.archiveReader = archiveReader;
+        this.metrics = metrics;
+        this.keepBytes = keepBytes;
+    }
+
+    /**
+     * 把组内的任务按源文件分开并计算每个源文件的指纹
+     * 读取class字节时顺便扫描 {@link ClassInfo} 并保存到任务中，字节在上限内同样保存到任务中；可以在多个线程中同时调用
+     */
+    public List<SourceUnit> fingerprint(DecompileBatch batch) {
+        Map<String, SourceUnit> units = new LinkedHashMap<>();
+        for (DecompileJob job : batch.getJobs()) {
+            Path root = Paths.get(job.getTargetPath()).toAbsolutePath().normalize();
+            String hash = null;
+            String topLevel = job.getInternalName();
+            try {
+                byte[] classBytes = archiveReader.readClassBytes(job);
+                hash = hash(classBytes);
+                keep(job, classBytes);
+                ClassInfo info = ClassFileScanner.scan(job, classBytes);
+                if (info != null) {
+                    topLevel = info.getTopLevelName();
+                }
+            } catch (IOException e) {
+                logger.debug("计算去重指纹失败: {} - {}", job.getDisplayName(), e.getMessage());
+            }
+
+            // 同一个目录下的同一个顶层类，顶层类只取简单名，与输出文件的命名一致
+            String unitKey = root + "/" + topLevel.substring(topLevel.lastIndexOf('/') + 1);
+            SourceUnit unit = units.computeIfAbsent(unitKey, key -> new SourceUnit(root));
+            unit.jobs.add(job);
+            if (hash == null) {
+                unit.readFailed = true;
+            } else {
+                unit.members.add(new String[]{job.getClassFileName(), hash});
+            }
+        }
+
+        for (SourceUnit unit : units.values()) {
+            if (unit.readFailed) {
+                continue;
+            }
+            unit.members.sort(Comparator.comparing(member -> member[0]));
+            StringBuilder fingerprint = new StringBuilder();
+            for (String[] member : unit.members) {
+                fingerprint.append(member[0]).append('=').append(member[1]).append(';');
+            }
+            unit.fingerprint = hash(fingerprint.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return new ArrayList<>(units.values());
+    }
+
+    /**
+     * 登记组内的源文件，去掉与之前的源文件重复的任务
+     * 返回仍需反编译的组（全部重复时为 null）和已经可以填充的重复任务的结果，其余重复任务在代表任务完成时由 {@link #complete} 返回
+     */
+    public Deduplicated deduplicate(DecompileBatch batch, List<SourceUnit> units) {
+        Set<DecompileJob> duplicateJobs = new HashSet<>();
+        List<DecompileResult> results = new ArrayList<>();
+        for (SourceUnit unit : units) {
+            if (unit.fingerprint == null) {
+                continue;
+            }
+
+            // 代表在放入索引之前就登记好所有任务，重复的源文件看到的总是完整的代表
+            Map<String, Slot> candidate = new HashMap<>();
+            for (DecompileJob job : unit.jobs) {
+                candidate.put(job.getClassFileName(), new Slot(job, unit.root));
+            }
+            Map<String, Slot> representative = representatives.putIfAbsent(unit.fingerprint, candidate);
+            if (representative == null) {
+                for (Slot slot : candidate.values()) {
+                    slots.put(slot.job, slot);
+                }
+                continue;
+            }
+
+            metrics.addDuplicates(unit.jobs.size(), unit.jobs.stream().mapToLong(DecompileJob::getSize).sum());
+            for (DecompileJob job : unit.jobs) {
+                duplicateJobs.add(job);
+                release(job);
+                Slot slot = representative.get(job.getClassFileName());
+                DecompileResult finished;
+                synchronized (slot) {
+                    finished = slot.result;
+                    if (finished == null) {
+                        slot.waiting.add(new Duplicate(job, unit.root));
+                        continue;
+                    }
+                }
+                results.add(fill(slot.root, finished, job, unit.root));
+            }
+        }
+
+        if (duplicateJobs.isEmpty()) {
+            return new Deduplicated(batch, results);
+        }
+        DecompileBatch remaining = new DecompileBatch(batch.getKey());
+        for (DecompileJob job : batch.getJobs()) {
+            if (!duplicateJobs.contains(job)) {
+                remaining.addJob(job);
+            }
+        }
+        return new Deduplicated(remaining.getJobs().isEmpty() ? null : remaining, results);
+    }
+
+    /**
+     * 代表任务完成后填充等待它的重复任务，返回这些任务的结果；不是代表任务时返回空列表
+     */
+    public List<DecompileResult> complete(DecompileResult result) {
+        release(result.getJob());
+        Slot slot = slots.get(result.getJob());
+        if (slot == null) {
+            return List.of();
+        }
+
+        List<Duplicate> waiting;
+        synchronized (slot) {
+            slot.result = result;
+            waiting = new ArrayList<>(slot.waiting);
+            slot.waiting.clear();
+        }
+
+        List<DecompileResult> results = new ArrayList<>(waiting.size());
+        for (Duplicate duplicate : waiting) {
+            results.add(fill(slot.root, result, duplicate.job, duplicate.root));
+        }
+        return results;
+    }
+
+    public int getLinkedFileCount() {
+        return linkedFiles.get();
+    }
+
+    public int getCopiedFileCount() {
+        return copiedFiles.get();
+    }
+
+    /**
+     * 按代表任务的结果生成重复任务的结果，输出文件按相对代表输出目录的路径放到重复任务的输出目录下
+     * 代表实际的反编译耗时计入去重节省的时间
+     */
+    private DecompileResult fill(Path representativeRoot, DecompileResult finished, DecompileJob job, Path root) {
+        metrics.addDuplicateSavedNanos(finished.getDecompileNanos());
+        if (!finished.isSuccess()) {
+            return new DecompileResult(job, finished.getStatus(), finished.getErrorMessage(), job.getTargetPath(), List.of());
+        }
+
+        List<File> outputFiles = new ArrayList<>(finished.getOutputFiles().size());
+        try {
+            for (File source : finished.getOutputFiles()) {
+                Path relative = representativeRoot.relativize(source.toPath().toAbsolutePath().normalize());
+                Path target = root.resolve(relative).normalize();
+                if (!target.startsWith(root)) {
+                    throw new IOException("输出文件不在代表的输出目录中: " + source);
+                }
+                linkOrCopy(source.toPath(), target);
+                outputFiles.add(target.toFile());
+            }
+        } catch (IOException e) {
+            logger.warn("填充重复class的输出失败: {} - {}", job.getDisplayName(), e.getMessage());
+            return new DecompileResult(job, false, "填充重复class的输出失败: " + e.getMessage(), job.getTargetPath());
+        }
+
+        DecompileTask.deleteClassFileIfConfigured(config, job);
+        return new DecompileResult(job, true, null, job.getTargetPath(), outputFiles);
+    }
+
+    private void linkOrCopy(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            try {
+                Files.createLink(target, source);
+            } catch (FileAlreadyExistsException e) {
+                Files.delete(target);
+                Files.createLink(target, source);
+            }
+            linkedFiles.incrementAndGet();
+        } catch (IOException | UnsupportedOperationException e) {
+            // 跨文件系统或者文件系统不支持硬链接
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+            copiedFiles.incrementAndGet();
+        }
+    }
+
+    private void keep(DecompileJob job, byte[] classBytes) {
+        if (!keepBytes || job.getLoadedBytes() != null) {
+            return;
+        }
+        if (loadedBytes.addAndGet(classBytes.length) > MAX_LOADED_BYTES) {
+            loadedBytes.addAndGet(-classBytes.length);
+            return;
+        }
+        job.setLoadedBytes(classBytes);
+    }
+
+    private void release(DecompileJob job) {
+        loadedBytes.addAndGet(-job.releaseLoadedBytes());
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 组内的一个源文件：顶层类及其内部类的任务，输出到同一个目录
+     */
+    public static class SourceUnit {
+        private final Path root;
+        private final List<DecompileJob> jobs = new ArrayList<>();
+        // class文件名和字节的哈希
+        private final List<String[]> members = new ArrayList<>();
+        private boolean readFailed;
+        // 读取失败时为 null，不参与去重
+        private String fingerprint;
+
+        SourceUnit(Path root) {
+            this.root = root;
+        }
+    }
+
+    /**
+     * 去重的结果：仍需反编译的组，以及已经可以填充的重复任务的结果
+     */
+    public static class Deduplicated {
+        private final DecompileBatch batch;
+        private final List<DecompileResult> results;
+
+        Deduplicated(DecompileBatch batch, List<DecompileResult> results) {
+            this.batch = batch;
+            this.results = results;
+        }
+
+        /**
+         * 去掉重复任务后的组，全部重复时为 null
+         */
+        public DecompileBatch getBatch() {
+            return batch;
+        }
+
+        public List<DecompileResult> getResults() {
+            return results;
+        }
+    }
+
+    /**
+     * 代表源文件中的一个任务
+     */
+    private static class Slot {
+        final DecompileJob job;
+        final Path root;
+        final List<Duplicate> waiting = new ArrayList<>();
+        DecompileResult result;
+
+        Slot(DecompileJob job, Path root) {
+            this.job = job;
+            this.root = root;
+        }
+    }
+
+    private static class Duplicate {
+        final DecompileJob job;
+        final Path root;
+
+        Duplicate(DecompileJob job, Path root) {
+            this.job = job;
+            this.root = root;
+        }
+    }
+}
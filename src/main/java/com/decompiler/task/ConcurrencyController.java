@@ -0,0 +1,247 @@
+package com.decompiler.task;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 运行时调整同时执行的反编译任务数，线程池的线程数是上限，超出当前并发度的线程在开始任务前等待
+ *
+ * 每秒采样一次吞吐量（读取的class字节数）、进程CPU使用率、GC耗时占比和上次GC后的堆内存占用：
+ * GC 占比过高或者堆内存不足时按比例降低并发度；CPU 没有用满、并发位置在采样周期内被用满过时逐个增加，
+ * 增加后吞吐量下降则退回并暂停增加几个周期。反编译以 CPU 为主，读取和写出较慢的阶段CPU用不满，并发度会升高。
+ *
+ * 同时给出每个 Vineflower 上下文内部使用的线程数，外部并发度乘以内部线程数不超过CPU核数，避免两层线程池叠加
+ */
+public class ConcurrencyController implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyController.class);
+
+    private static final long SAMPLE_INTERVAL_MS = 1000;
+    private static final double GC_RATIO_LIMIT = 0.15;
+    private static final double HEAP_RATIO_LIMIT = 0.85;
+    private static final double CPU_SATURATED = 0.9;
+    private static final double THROUGHPUT_DROP = 0.9;
+    private static final int HOLD_SAMPLES = 5;
+
+    private final int maxConcurrency;
+    private final int processors = Runtime.getRuntime().availableProcessors();
+    private final LongSupplier progress;
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private int limit;
+    private int active;
+    // 采样周期内正在执行的任务数是否达到过并发度，没有达到时增加并发度没有意义
+    private boolean saturated;
+    private int minReached;
+    private int maxReached;
+    private int adjustmentCount;
+    private ScheduledExecutorService sampler;
+
+    // 以下只在采样线程中访问
+    private long lastSampleNanos;
+    private long lastProgress;
+    private long lastGcMillis;
+    private double lastThroughput;
+    private boolean lastIncreased;
+    private int holdSamples;
+
+    /**
+     * @param maxConcurrency 并发度上限，即线程池的线程数
+     * @param progress 累计完成的工作量，用于计算吞吐量，如已读取的class字节数
+     */
+    public ConcurrencyController(int maxConcurrency, LongSupplier progress) {
+        this.maxConcurrency = Math.max(maxConcurrency, 1);
+        this.progress = progress;
+        this.limit = Math.min(this.maxConcurrency, processors);
+        this.minReached = limit;
+        this.maxReached = limit;
+    }
+
+    /**
+     * 开始定时采样，重复调用无效
+     */
+    public synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "concurrency-controller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lastSampleNanos = System.nanoTime();
+        lastProgress = progress.getAsLong();
+        lastGcMillis = totalGcMillis();
+        sampler.scheduleAtFixedRate(this::sample, SAMPLE_INTERVAL_MS, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 开始一个任务前调用，正在执行的任务数达到当前并发度时等待
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (active >= limit) {
+            wait();
+        }
+        active++;
+        if (active >= limit) {
+            saturated = true;
+        }
+    }
+
+    /**
+     * 任务结束后调用，与 acquire 成对使用
+     */
+    public synchronized void release() {
+        active--;
+        notifyAll();
+    }
+
+    /**
+     * 包含 classCount 个class的上下文内部使用的线程数，与当前并发度相乘不超过CPU核数
+     */
+    public int innerThreads(int classCount) {
+        return innerThreads(classCount, getLimit());
+    }
+
+    /**
+     * 外部并发度为 concurrency 时，包含 classCount 个class的上下文内部使用的线程数
+     */
+    public static int innerThreads(int classCount, int concurrency) {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(concurrency, 1));
+        return Math.max(1, Math.min(threads, classCount));
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized int getMinLimit() {
+        return minReached;
+    }
+
+    public synchronized int getMaxLimit() {
+        return maxReached;
+    }
+
+    public synchronized int getAdjustmentCount() {
+        return adjustmentCount;
+    }
+
+    /**
+     * 停止采样，等待中的任务不受影响
+     */
+    @Override
+    public synchronized void close() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+        }
+    }
+
+    private void sample() {
+        try {
+            long now = System.nanoTime();
+            double seconds = (now - lastSampleNanos) / 1e9;
+            long currentProgress = progress.getAsLong();
+            long gcMillis = totalGcMillis();
+            double throughput = (currentProgress - lastProgress) / seconds;
+            double gcRatio = (gcMillis - lastGcMillis) / (seconds * 1000);
+            lastSampleNanos = now;
+            lastProgress = currentProgress;
+            lastGcMillis = gcMillis;
+
+            adjust(throughput, gcRatio, heapRatio(), processCpuLoad());
+            lastThroughput = throughput;
+        } catch (RuntimeException e) {
+            logger.debug("并发度采样失败", e);
+        }
+    }
+
+    private synchronized void adjust(double throughput, double gcRatio, double heapRatio, double cpuLoad) {
+        if (gcRatio > GC_RATIO_LIMIT || heapRatio > HEAP_RATIO_LIMIT) {
+            // 内存压力下同时反编译的class越多越容易内存溢出，快速降低
+            lastIncreased = false;
+            holdSamples = HOLD_SAMPLES;
+            setLimit(limit * 3 / 4, String.format("GC 占比 %.0f%%，堆内存占用 %.0f%%", gcRatio * 100, heapRatio * 100));
+            return;
+        }
+        if (lastIncreased && throughput < lastThroughput * THROUGHPUT_DROP) {
+            lastIncreased = false;
+            holdSamples = HOLD_SAMPLES;
+            setLimit(limit - 1, "增加并发度后吞吐量下降");
+            return;
+        }
+        lastIncreased = false;
+        boolean demand = saturated || active >= limit;
+        saturated = false;
+        if (holdSamples > 0) {
+            holdSamples--;
+            return;
+        }
+        // 并发位置用满，并且CPU还有余量时增加
+        if (demand && cpuLoad < CPU_SATURATED && limit < maxConcurrency) {
+            lastIncreased = true;
+            setLimit(limit + 1, String.format("CPU 使用率 %.0f%%", cpuLoad * 100));
+        }
+    }
+
+    private void setLimit(int newLimit, String reason) {
+        newLimit = Math.max(1, Math.min(newLimit, maxConcurrency));
+        if (newLimit == limit) {
+            return;
+        }
+        logger.debug("并发度 {} -> {}：{}", limit, newLimit, reason);
+        limit = newLimit;
+        adjustmentCount++;
+        minReached = Math.min(minReached, newLimit);
+        maxReached = Math.max(maxReached, newLimit);
+        notifyAll();
+    }
+
+    private long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gcBean : gcBeans) {
+            total += Math.max(gcBean.getCollectionTime(), 0);
+        }
+        return total;
+    }
+
+    /**
+     * 上次GC后仍在使用的堆内存占最大堆内存的比例，不包括还没有回收的垃圾
+     */
+    private static double heapRatio() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        if (heap.getMax() <= 0) {
+            return 0;
+        }
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage afterGc = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (afterGc != null) {
+                used += afterGc.getUsed();
+            }
+        }
+        return (double) used / heap.getMax();
+    }
+
+    /**
+     * 进程的CPU使用率（0到1），JVM 不提供时返回 -1
+     */
+    private double processCpuLoad() {
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuLoad();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,304 @@
+package com.decompiler.task;
+
+import com.decompiler.cache.OutputManifest;
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.config.GroupingMode;
+import com.decompiler.metrics.DecompileMetrics;
+import com.decompiler.model.DecompileBatch;
+import com.decompiler.model.DecompileJob;
+import com.decompiler.util.FileUtil;
+import com.decompiler.util.JarUtils;
+import com.decompiler.util.LibraryIndex;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 流式反编译流水线：遍历输入、读取JAR和反编译同时进行
+ * 各阶段之间通过有界队列连接，下游处理不过来时上游会阻塞等待，内存占用与任务总数无关
+ *
+ * 遍历线程 -> JAR队列 -> JAR读取线程 -> 任务队列 -> 反编译工作线程（TaskManager）
+ */
+public class DecompilePipeline {
+    private static final Logger logger = LoggerFactory.getLogger(DecompilePipeline.class);
+
+    private static final File END_OF_ARCHIVES = new File("");
+    private static final DecompileBatch END_OF_BATCHES = new DecompileBatch("");
+
+    private final DecompilerConfig config;
+    private final TaskManager taskManager;
+    private final DecompileMetrics metrics;
+    private final OutputManifest manifest;
+    private final LibraryIndex libraries;
+    private final Function<DecompileBatch, Callable<List<DecompileResult>>> taskFactory;
+    private final BlockingQueue<File> archiveQueue;
+    private final BlockingQueue<DecompileBatch> batchQueue;
+    private final int readerCount;
+    private final AtomicInteger discoveredJobs = new AtomicInteger(0);
+
+    /**
+     * @param manifest 增量清单，没有变化的输入不再生成任务；不使用增量反编译时为 null
+     * @param libraries 已知第三方库的索引，匹配的JAR不再生成任务；不使用时为 null
+     */
+    public DecompilePipeline(DecompilerConfig config, TaskManager taskManager, OutputManifest manifest,
+                             LibraryIndex libraries,
+                             Function<DecompileBatch, Callable<List<DecompileResult>>> taskFactory) {
+        this.config = config;
+        this.taskManager = taskManager;
+        this.metrics = taskManager.getMetrics();
+        this.manifest = manifest;
+        this.libraries = libraries;
+        this.taskFactory = taskFactory;
+        this.archiveQueue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.batchQueue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.readerCount = Math.max(1, config.getThreadCount() / 2);
+    }
+
+    /**
+     * 运行流水线直到所有任务完成，结果在完成时逐个交给 resultProcessor
+     */
+    public void run(Consumer<DecompileResult> resultProcessor) throws IOException {
+        File inputFile = new File(config.getInputPath());
+        if (!inputFile.exists()) {
+            throw new FileNotFoundException("文件不存在: " + inputFile.getAbsolutePath());
+        }
+        FileUtils.forceMkdir(new File(config.getOutputPath()));
+
+        // 流式模式下等待执行的任务都在任务队列中
+        metrics.registerQueue("batchQueue", batchQueue);
+        ExecutorService producers = Executors.newFixedThreadPool(readerCount + 1);
+        AtomicInteger activeReaders = new AtomicInteger(readerCount);
+        try {
+            producers.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    walk(inputFile);
+                } catch (Exception e) {
+                    logger.error("遍历输入失败: {}", inputFile.getAbsolutePath(), e);
+                } finally {
+                    metrics.addPhaseTime(DecompileMetrics.Phase.WALK, System.nanoTime() - start);
+                    for (int i = 0; i < readerCount; i++) {
+                        putQuietly(archiveQueue, END_OF_ARCHIVES);
+                    }
+                }
+                return null;
+            });
+
+            for (int i = 0; i < readerCount; i++) {
+                producers.submit(() -> {
+                    try {
+                        readArchives();
+                    } finally {
+                        // 最后一个退出的读取线程负责通知工作线程
+                        if (activeReaders.decrementAndGet() == 0) {
+                            putQuietly(batchQueue, END_OF_BATCHES);
+                        }
+                    }
+                    return null;
+                });
+            }
+
+            taskManager.processStream(batchQueue, END_OF_BATCHES, taskFactory, resultProcessor);
+        } finally {
+            metrics.unregisterQueue("batchQueue");
+            producers.shutdownNow();
+        }
+
+        logger.info("共发现 {} 个待反编译的文件", discoveredJobs.get());
+    }
+
+    /**
+     * 遍历输入：class文件直接生成任务，JAR文件交给读取线程
+     * 分组模式下同一目录的class文件在离开该目录时作为一组提交
+     */
+    private void walk(File inputFile) throws IOException, InterruptedException {
+        if (JarUtils.isJarFile(inputFile)) {
+            if (FileUtil.needsDecompile(manifest, inputFile)) {
+                archiveQueue.put(inputFile);
+            }
+            return;
+        }
+        if (!inputFile.isDirectory()) {
+            if (FileUtil.needsDecompile(manifest, inputFile)) {
+                List<DecompileJob> jobs = FileUtil.processClassFile(inputFile, config);
+                jobs.forEach(job -> FileUtil.register(manifest, inputFile, job));
+                emit(jobs);
+            }
+            return;
+        }
+
+        Path root = inputFile.toPath();
+        Deque<List<DecompileJob>> pendingDirs = new ArrayDeque<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                pendingDirs.push(new ArrayList<>());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                String fileName = path.getFileName().toString();
+                try {
+                    boolean isArchive = JarUtils.isArchiveName(fileName);
+                    boolean isClass = !isArchive && fileName.toLowerCase().endsWith(".class")
+                            && config.getClassFilter().accepts(root.relativize(path).toString());
+                    if ((!isArchive && !isClass) || !FileUtil.needsDecompile(manifest, path.toFile())) {
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    if (isArchive) {
+                        archiveQueue.put(path.toFile());
+                    } else {
+                        DecompileJob job = FileUtil.register(manifest, path.toFile(),
+                                FileUtil.createClassFileJob(root.toFile(), path.toFile(), config));
+                        if (config.getGroupingMode() == GroupingMode.NONE) {
+                            emit(List.of(job));
+                        } else {
+                            pendingDirs.peek().add(job);
+                        }
+                    }
+                } catch (IOException e) {
+                    logger.error("处理class文件失败: {}", path, e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return FileVisitResult.TERMINATE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                try {
+                    emit(pendingDirs.pop());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return FileVisitResult.TERMINATE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 从JAR队列中取出JAR，生成其中所有class的任务
+     * 内存模式下只读取中央目录；解压模式下每解压出一个class就立即生成任务
+     */
+    private void readArchives() throws InterruptedException {
+        while (true) {
+            File jarFile = archiveQueue.take();
+            if (jarFile == END_OF_ARCHIVES) {
+                return;
+            }
+
+            File extractDir = FileUtil.getExtractDir(jarFile, config);
+            long start = System.nanoTime();
+            try {
+                readArchive(jarFile, extractDir);
+            } catch (IOException e) {
+                logger.error("读取JAR文件失败: {}", jarFile.getName(), e);
+            } finally {
+                metrics.addPhaseTime(DecompileMetrics.Phase.EXTRACT, System.nanoTime() - start);
+            }
+
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * 为一个JAR生成任务，已知的第三方库已经跳过或者输出了源码，不生成任务
+     */
+    private void readArchive(File jarFile, File extractDir) throws IOException, InterruptedException {
+        if (FileUtil.isKnownLibrary(libraries, jarFile, extractDir)) {
+            return;
+        }
+        if (config.isInMemory()) {
+            List<DecompileJob> jobs = FileUtil.collectArchiveJobs(jarFile, extractDir, config.getClassFilter(), libraries);
+            jobs.forEach(job -> FileUtil.register(manifest, jarFile, job));
+            emit(jobs);
+        } else {
+            extractArchive(jarFile, extractDir);
+        }
+    }
+
+    /**
+     * 解压JAR并为解压出的class文件生成任务，嵌套归档不解压，其中的class条目直接从归档中读取
+     */
+    private void extractArchive(File jarFile, File extractDir) throws IOException, InterruptedException {
+        if (config.getGroupingMode() == GroupingMode.NONE) {
+            JarUtils.extractJar(jarFile, extractDir, classFile -> {
+                try {
+                    emit(List.of(FileUtil.register(manifest, jarFile,
+                            new DecompileJob(classFile, classFile.getParent(), null, jarFile))));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("流水线已中断", e);
+                }
+            }, config.getClassFilter());
+        } else {
+            List<DecompileJob> jobs = new ArrayList<>();
+            JarUtils.extractJar(jarFile, extractDir, classFile -> jobs.add(FileUtil.register(manifest, jarFile,
+                    new DecompileJob(classFile, classFile.getParent(), null, jarFile))), config.getClassFilter());
+            emit(jobs);
+        }
+
+        List<DecompileJob> nestedJobs = FileUtil.collectNestedArchiveJobs(jarFile, extractDir, config.getClassFilter(),
+                libraries);
+        nestedJobs.forEach(job -> FileUtil.register(manifest, jarFile, job));
+        emit(nestedJobs);
+    }
+
+    /**
+     * 把任务按分组方式放入任务队列，队列满时阻塞
+     */
+    private void emit(List<DecompileJob> jobs) throws InterruptedException {
+        if (jobs.isEmpty()) {
+            return;
+        }
+        discoveredJobs.addAndGet(jobs.size());
+
+        if (config.getGroupingMode() == GroupingMode.NONE) {
+            for (DecompileJob job : jobs) {
+                DecompileBatch batch = new DecompileBatch(job.getDisplayName());
+                batch.addJob(job);
+                batchQueue.put(batch);
+            }
+            return;
+        }
+
+        for (DecompileBatch batch : DecompileBatch.group(jobs, config.getGroupingMode())) {
+            batchQueue.put(batch);
+        }
+    }
+
+    private static <T> void putQuietly(BlockingQueue<T> queue, T item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
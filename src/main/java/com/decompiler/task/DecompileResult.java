@@ -2,17 +2,43 @@ package com.decompiler.task;
 
 import com.decompiler.model.DecompileJob;
 
+import java.io.File;
+import java.util.List;
+
 public class DecompileResult {
+    /**
+     * 反编译结果的状态
+     */
+    public enum Status {
+        SUCCESS,
+        FAILURE,
+        /**
+         * 超过了单个任务的反编译期限
+         */
+        TIMEOUT
+    }
+
     private final DecompileJob job;
-    private final boolean success;
+    private final Status status;
     private final String errorMessage;
     private final String outputPath;
+    private final List<File> outputFiles;
+    private long decompileNanos;
 
     public DecompileResult(DecompileJob job, boolean success, String errorMessage, String outputPath) {
+        this(job, success, errorMessage, outputPath, List.of());
+    }
+
+    public DecompileResult(DecompileJob job, boolean success, String errorMessage, String outputPath, List<File> outputFiles) {
+        this(job, success ? Status.SUCCESS : Status.FAILURE, errorMessage, outputPath, outputFiles);
+    }
+
+    public DecompileResult(DecompileJob job, Status status, String errorMessage, String outputPath, List<File> outputFiles) {
         this.job = job;
-        this.success = success;
+        this.status = status;
         this.errorMessage = errorMessage;
         this.outputPath = outputPath;
+        this.outputFiles = outputFiles;
     }
 
     public DecompileJob getJob() {
@@ -20,7 +46,11 @@ public class DecompileResult {
     }
 
     public boolean isSuccess() {
-        return success;
+        return status == Status.SUCCESS;
+    }
+
+    public Status getStatus() {
+        return status;
     }
 
     public String getErrorMessage() {
@@ -30,4 +60,22 @@ public class DecompileResult {
     public String getOutputPath() {
         return outputPath;
     }
-}
\ No newline at end of file
+
+    /**
+     * 该任务生成的Java文件
+     */
+    public List<File> getOutputFiles() {
+        return outputFiles;
+    }
+
+    /**
+     * 反编译这个class实际花费的时间，同一上下文中的多个class按字节数分摊；没有实际反编译（如命中缓存）时为0
+     */
+    public long getDecompileNanos() {
+        return decompileNanos;
+    }
+
+    public void setDecompileNanos(long decompileNanos) {
+        this.decompileNanos = decompileNanos;
+    }
+}
@@ -1,10 +1,17 @@
 package com.decompiler.task;
 
+import com.decompiler.cache.ResultCache;
 import com.decompiler.config.DecompilerConfig;
+import com.decompiler.config.VineflowerOptions;
 import com.decompiler.exception.DecompileException;
+import com.decompiler.metrics.DecompileMetrics;
 import com.decompiler.model.DecompileJob;
+import com.decompiler.util.ArchiveReader;
+import com.decompiler.util.ClassBytesSource;
+import com.decompiler.util.ClassFileScanner;
 import com.decompiler.util.VineDecompiler;
 import org.apache.commons.io.FileUtils;
+import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,8 +19,10 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
 
 public class DecompileTask implements Callable<DecompileResult> {
     private static final Logger logger = LoggerFactory.getLogger(DecompileTask.class);
@@ -21,154 +30,184 @@ public class DecompileTask implements Callable<DecompileResult> {
     private final DecompileJob job;
     private final DecompilerConfig config;
     private final Map<String, Object> options;
-
-    public DecompileTask(DecompileJob job, DecompilerConfig config, Map<String, Object> options) {
+    private final ArchiveReader archiveReader;
+    private final ResultCache resultCache;
+    private final TimeoutGuard timeoutGuard;
+    private final DecompileMetrics metrics;
+    private final TaskContext context;
+    // 申请内存预算时为估算占用读取的class字节，反编译时直接使用
+    private byte[] loadedBytes;
+    // 实际反编译花费的时间，包括超时后用简化选项重试的时间
+    private volatile long decompiledNanos;
+
+    public DecompileTask(DecompileJob job, TaskContext context) {
         this.job = job;
-        this.config = config;
-        this.options = options;
+        this.context = context;
+        this.config = context.getConfig();
+        this.options = context.getOptions();
+        this.archiveReader = context.getArchiveReader();
+        this.resultCache = context.getResultCache();
+        this.timeoutGuard = context.getTimeoutGuard();
+        this.metrics = context.getMetrics();
     }
 
     @Override
     public DecompileResult call() {
+        long start = System.nanoTime();
+        MemoryBudget memoryBudget = context.getMemoryBudget();
+        long reserved = 0;
         try {
-            File classFile = job.getSourceFile();
-            String outputDirPath = job.getTargetPath();
-
-            // 输出目录是job中指定的目标目录
-            File outputDir = new File(outputDirPath);
-            FileUtils.forceMkdir(outputDir);
-
-            logger.debug("反编译: {} 到 {}", classFile.getAbsolutePath(), outputDir.getAbsolutePath());
-
-            // 验证源文件存在且可读
-            if (!classFile.exists() || !classFile.canRead()) {
-                throw new DecompileException("源文件不存在或无法读取: " + classFile.getAbsolutePath());
+            if (memoryBudget != null) {
+                // 在期限之外等待，等待内存的时间不算作反编译时间
+                reserved = memoryBudget.acquire(estimateHeapBytes());
             }
-
-            // 获取class文件基础名称（用于后续验证）
-            String className = classFile.getName();
-            String baseName = className.toLowerCase().endsWith(".class")
-                    ? className.substring(0, className.length() - 6)
-                    : className;
-
-            // 特殊处理含有下划线和数字的文件名（可能是内部类或生成类，这里是 vineflower bug貌似，如果是这样的文件反编译结果就会这样： TextBuilder_3.class -> TextBuilder.java）
-            String baseNameWithoutNumber = baseName;
-            if (baseName.contains("_")) {
-                // 尝试去掉数字后缀，如 TextBuilder_3 -> TextBuilder
-                int lastUnderscoreIndex = baseName.lastIndexOf("_");
-                if (lastUnderscoreIndex > 0 && lastUnderscoreIndex < baseName.length() - 1) {
-                    String possibleNumber = baseName.substring(lastUnderscoreIndex + 1);
-                    if (possibleNumber.matches("\\d+")) {
-                        baseNameWithoutNumber = baseName.substring(0, lastUnderscoreIndex);
-                    }
-                }
+            DecompileResult result = decompileWithRetry();
+            result.setDecompileNanos(decompiledNanos);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new DecompileResult(job, false, "等待内存预算时被中断", null);
+        } finally {
+            if (reserved > 0) {
+                memoryBudget.release(reserved);
             }
+            metrics.recordClassLatency(System.nanoTime() - start);
+        }
+    }
 
-            // 记录反编译前目录中的Java文件
-            int javaFileCountBefore = countJavaFiles(outputDir);
-
-            // 创建一个不输出任何内容的日志记录器
-            PrintStreamLogger decompilerLogger = new PrintStreamLogger(new PrintStream(OutputStream.nullOutputStream()));
-
-            // 创建VineDecompiler实例并配置
-            VineDecompiler decompiler = new VineDecompiler(outputDir, options, decompilerLogger);
+    /**
+     * 估算反编译这个class需要的堆内存，读取失败时返回0，反编译时会再次读取并报告错误
+     */
+    private long estimateHeapBytes() {
+        try {
+            loadedBytes = archiveReader.readClassBytes(job);
+            return ClassFileScanner.estimateHeapBytes(ClassFileScanner.scan(job, loadedBytes), loadedBytes.length);
+        } catch (Exception e) {
+            return 0;
+        }
+    }
 
-            decompiler.addSource(classFile);
+    private DecompileResult decompileWithRetry() {
+        try {
+            if (timeoutGuard == null) {
+                return decompile(options, resultCache);
+            }
 
-            logger.info("正在反编译: {}", classFile.getName());
-            decompiler.decompileContext();
-            logger.info("反编译完成: {}", classFile.getName());
+            try {
+                return timeoutGuard.run(() -> decompile(options, resultCache), config.getJobTimeoutMillis());
+            } catch (TimeoutException e) {
+                logger.warn("反编译超时，使用简化的选项重试: {}", job.getDisplayName());
+            }
 
-            // 记录反编译后目录中的Java文件
-            int javaFileCountAfter = countJavaFiles(outputDir);
+            try {
+                // 简化选项的结果与缓存键对应的选项不一致，不写入缓存
+                return timeoutGuard.run(() -> decompile(VineflowerOptions.fallbackOptions(options), null),
+                        config.getJobTimeoutMillis());
+            } catch (TimeoutException e) {
+                logger.warn("反编译超时: {}", job.getDisplayName());
+                return new DecompileResult(job, DecompileResult.Status.TIMEOUT, "反编译超时", null, List.of());
+            }
+        } catch (Exception e) {
+            logger.error("反编译失败: " + job.getDisplayName(), e);
+            return new DecompileResult(job, false, e.getMessage(), null);
+        }
+    }
 
-            // 检查是否有新生成的Java文件
-            if (javaFileCountAfter > javaFileCountBefore) {
-                File[] newJavaFiles = findNewJavaFiles(outputDir, baseNameWithoutNumber);
+    /**
+     * 使用指定的选项反编译，结果缓存为 null 时不读写缓存
+     */
+    private DecompileResult decompile(Map<String, Object> decompileOptions, ResultCache cache) throws Exception {
+        File classFile = job.getSourceFile();
+        String outputDirPath = job.getTargetPath();
 
-                if (newJavaFiles.length > 0) {
-                    logger.info("Java文件已生成：{}", newJavaFiles[0].getAbsolutePath());
+        // 输出目录是job中指定的目标目录，写入源码归档时不创建
+        File outputDir = new File(outputDirPath);
 
-                    // 如果配置了删除class文件
-                    if (config.isDeleteClassFiles()) {
-                        FileUtils.deleteQuietly(classFile);
-                        logger.debug("已删除class文件: {}", classFile.getAbsolutePath());
-                    }
+        logger.debug("反编译: {} 到 {}", job.getDisplayName(), outputDir.getAbsolutePath());
 
-                    return new DecompileResult(job, true, null, outputDir.getAbsolutePath());
-                }
-            }
+        // 验证源文件存在且可读
+        if (!classFile.exists() || !classFile.canRead()) {
+            throw new DecompileException("源文件不存在或无法读取: " + classFile.getAbsolutePath());
+        }
 
-            // 直接检查可能的Java文件名
-            File[] possibleJavaFiles = {
-                    new File(outputDir, baseName + ".java"),                        // 完全匹配
-                    new File(outputDir, baseNameWithoutNumber + ".java"),           // 去掉数字后缀
-                    new File(outputDir, baseName.replace('$', '_') + ".java")       // 内部类替换
-            };
-
-            for (File javaFile : possibleJavaFiles) {
-                if (javaFile.exists() && javaFile.length() > 0) {
-                    logger.info("Java文件已生成：{}", javaFile.getAbsolutePath());
-
-                    // 如果配置了删除class文件
-                    if (config.isDeleteClassFiles()) {
-                        FileUtils.deleteQuietly(classFile);
-                        logger.debug("已删除class文件: {}", classFile.getAbsolutePath());
-                    }
-
-                    return new DecompileResult(job, true, null, outputDir.getAbsolutePath());
-                }
+        // 内存模式、归档条目或使用结果缓存时先读取class字节，缓存未命中时反编译直接使用这份字节
+        byte[] classBytes = loadedBytes != null ? loadedBytes : job.getLoadedBytes();
+        String cacheKey = null;
+        if (classBytes == null && (cache != null || config.isInMemory() || job.isArchiveEntry())) {
+            classBytes = archiveReader.readClassBytes(job);
+        }
+        if (cache != null) {
+            cacheKey = cache.keyOf(classBytes);
+
+            List<File> cachedFiles = cache.restore(cacheKey, outputDir);
+            if (cachedFiles != null) {
+                logger.info("命中缓存: {}", job.getDisplayName());
+                deleteClassFileIfConfigured(config, job);
+                return new DecompileResult(job, true, null, outputDir.getAbsolutePath(), cachedFiles);
             }
+        }
 
-            // 未找到生成的Java文件，降级策略：接受目录中任何新的 Java 文件
-            File[] allJavaFilesAfter = outputDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".java"));
-            if (allJavaFilesAfter != null && allJavaFilesAfter.length > javaFileCountBefore) {
-                // 找到了至少一个新的Java文件，认为反编译成功
-                logger.info("反编译后发现新的Java文件，假定成功");
-
-                // 如果配置了删除class文件
-                if (config.isDeleteClassFiles()) {
-                    FileUtils.deleteQuietly(classFile);
-                    logger.debug("已删除class文件: {}", classFile.getAbsolutePath());
-                }
+        // 创建一个不输出任何内容的日志记录器
+        PrintStreamLogger decompilerLogger = new PrintStreamLogger(new PrintStream(OutputStream.nullOutputStream()));
 
-                return new DecompileResult(job, true, null, outputDir.getAbsolutePath());
+        // 创建VineDecompiler实例并配置
+        VineDecompiler decompiler = context.createDecompiler(outputDir, decompileOptions, decompilerLogger, 1);
+        DecompilerContext decompilerContext = TimeoutGuard.bindContext();
+        long start = System.nanoTime();
+        try {
+            if (classBytes != null) {
+                decompiler.addSource(new ClassBytesSource(job.getInternalName(), classBytes));
+                metrics.addBytesRead(classBytes.length);
+            } else {
+                decompiler.addSource(classFile);
+                metrics.addBytesRead(classFile.length());
             }
 
-            // 找不到任何生成的Java文件
-            logger.warn("未找到预期的Java文件，class文件: {}, 输出目录: {}",
-                    classFile.getName(), outputDir.getAbsolutePath());
+            logger.info("正在反编译: {}", job.getDisplayName());
+            decompiler.decompileContext();
+            logger.info("反编译完成: {}", job.getDisplayName());
+        } finally {
+            TimeoutGuard.unbindContext(decompilerContext);
+            long elapsed = System.nanoTime() - start;
+            decompiledNanos += elapsed;
+            recordDecompileMetrics(metrics, decompiler, elapsed);
+        }
+
+        // 保存器记录了实际写出的文件，不需要再扫描输出目录
+        List<File> savedFiles = decompiler.getSavedFiles();
+        if (savedFiles.isEmpty()) {
+            logger.warn("未生成Java文件，class文件: {}, 输出目录: {}",
+                    job.getDisplayName(), outputDir.getAbsolutePath());
             return new DecompileResult(job, false, "未生成Java文件", outputDir.getAbsolutePath());
+        }
 
-        } catch (Exception e) {
-            logger.error("反编译失败: " + job.getSourceFile().getAbsolutePath(), e);
-            return new DecompileResult(job, false, e.getMessage(), null);
+        logger.info("Java文件已生成：{}", savedFiles.get(0).getAbsolutePath());
+        if (cacheKey != null) {
+            cache.store(cacheKey, savedFiles);
         }
+        deleteClassFileIfConfigured(config, job);
+        return new DecompileResult(job, true, null, outputDir.getAbsolutePath(), savedFiles);
     }
 
     /**
-     * 计算目录中Java文件的数量
+     * 记录一次 decompileContext 的耗时和写出的字节数，写文件的时间从反编译耗时中扣除
      */
-    private int countJavaFiles(File directory) {
-        File[] javaFiles = directory.listFiles((dir, name) -> name.toLowerCase().endsWith(".java"));
-        return javaFiles != null ? javaFiles.length : 0;
+    static void recordDecompileMetrics(DecompileMetrics metrics, VineDecompiler decompiler, long elapsedNanos) {
+        long writeNanos = decompiler.getWriteNanos();
+        metrics.addPhaseTime(DecompileMetrics.Phase.WRITE, writeNanos);
+        metrics.addPhaseTime(DecompileMetrics.Phase.DECOMPILE, elapsedNanos - writeNanos);
+        metrics.addBytesWritten(decompiler.getBytesWritten());
     }
 
     /**
-     * 查找与基础名称匹配的Java文件
+     * 如果配置了删除class文件则删除
+     * 内存模式下源文件是用户的原始输入而不是复制出来的文件，归档条目的源文件是归档本身，都不能删除
      */
-    private File[] findNewJavaFiles(File directory, String baseNamePattern) {
-        File[] files = directory.listFiles((dir, name) -> {
-            if (!name.toLowerCase().endsWith(".java")) {
-                return false;
-            }
-
-            String javaBaseName = name.substring(0, name.length() - 5);
-            return javaBaseName.equals(baseNamePattern) ||       // 完全匹配
-                    javaBaseName.startsWith(baseNamePattern) ||   // 前缀匹配
-                    javaBaseName.contains(baseNamePattern);       // 包含匹配
-        });
-
-        return files != null ? files : new File[0];
+    static void deleteClassFileIfConfigured(DecompilerConfig config, DecompileJob job) {
+        if (config.isDeleteClassFiles() && !config.isInMemory() && !job.isArchiveEntry()) {
+            File classFile = job.getSourceFile();
+            FileUtils.deleteQuietly(classFile);
+            logger.debug("已删除class文件: {}", classFile.getAbsolutePath());
+        }
     }
-}
\ No newline at end of file
+}
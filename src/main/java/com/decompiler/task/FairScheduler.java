@@ -0,0 +1,269 @@
+package com.decompiler.task;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 多个客户端共享的固定大小线程池，空闲线程在有任务的客户端之间轮流取任务，同一客户端的多个请求之间再轮流
+ * 一个客户端一次提交上万个任务时，其他客户端新提交的任务只需要等待每个客户端各执行一个任务，不会排在它的全部任务之后
+ *
+ * 通过 {@link #forClient(String)} 得到的 ExecutorService 只代表一次请求自己的任务：
+ * 关闭它只是不再接受新任务，等待终止时只等待它已经提交的任务，线程池本身继续为其他请求工作
+ */
+public class FairScheduler implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(FairScheduler.class);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition taskAvailable = lock.newCondition();
+    // 有待执行任务的客户端，按轮转顺序排列
+    private final Deque<Client> readyClients = new ArrayDeque<>();
+    private final Map<String, Client> clients = new HashMap<>();
+    private final Thread[] workers;
+    private boolean closed;
+
+    public FairScheduler(int threadCount) {
+        this.workers = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new Thread(this::runWorker, "fair-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * 为客户端的一次请求创建任务队列，用完后需要关闭
+     *
+     * @param clientName 客户端名称，名称相同的请求作为同一个客户端参与轮转
+     */
+    public ExecutorService forClient(String clientName) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new RejectedExecutionException("线程池已关闭");
+            }
+            Client client = clients.computeIfAbsent(clientName, Client::new);
+            client.requests++;
+            return new RequestExecutor(client);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getThreadCount() {
+        return workers.length;
+    }
+
+    /**
+     * 各客户端等待执行的任务数，只包含有进行中的请求的客户端
+     */
+    public Map<String, Integer> getQueuedTasks() {
+        lock.lock();
+        try {
+            Map<String, Integer> queued = new LinkedHashMap<>();
+            for (Client client : clients.values()) {
+                int count = 0;
+                for (RequestExecutor request : client.readyRequests) {
+                    count += request.queue.size();
+                }
+                queued.put(client.name, count);
+            }
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 停止所有线程，尚未执行的任务不再执行
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            taskAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            RequestExecutor request;
+            Runnable task;
+            lock.lock();
+            try {
+                while (readyClients.isEmpty() && !closed) {
+                    taskAvailable.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+                // 从队首客户端的队首请求取一个任务，还有任务的请求和客户端排到各自的队尾
+                Client client = readyClients.poll();
+                request = client.readyRequests.poll();
+                task = request.queue.poll();
+                if (!request.queue.isEmpty()) {
+                    client.readyRequests.add(request);
+                }
+                if (!client.readyRequests.isEmpty()) {
+                    readyClients.add(client);
+                }
+                request.running++;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                task.run();
+            } catch (Throwable e) {
+                logger.error("任务执行失败: {}", request.client.name, e);
+            } finally {
+                lock.lock();
+                try {
+                    request.running--;
+                    request.idle.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个客户端，在客户端的所有请求都结束后移除
+     */
+    private static class Client {
+        final String name;
+        final Deque<RequestExecutor> readyRequests = new ArrayDeque<>();
+        int requests;
+
+        Client(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * 一次请求的任务队列，以下字段都由 lock 保护
+     */
+    private class RequestExecutor extends AbstractExecutorService {
+        final Client client;
+        final Deque<Runnable> queue = new ArrayDeque<>();
+        final Condition idle = lock.newCondition();
+        int running;
+        boolean shutdown;
+
+        RequestExecutor(Client client) {
+            this.client = client;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            lock.lock();
+            try {
+                if (shutdown || closed) {
+                    throw new RejectedExecutionException("请求已结束: " + client.name);
+                }
+                if (queue.isEmpty()) {
+                    if (client.readyRequests.isEmpty()) {
+                        readyClients.add(client);
+                    }
+                    client.readyRequests.add(this);
+                }
+                queue.add(command);
+                taskAvailable.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            lock.lock();
+            try {
+                if (!shutdown) {
+                    shutdown = true;
+                    if (--client.requests == 0) {
+                        clients.remove(client.name);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            lock.lock();
+            try {
+                shutdown();
+                List<Runnable> pending = List.copyOf(queue);
+                if (!queue.isEmpty()) {
+                    queue.clear();
+                    client.readyRequests.remove(this);
+                    if (client.readyRequests.isEmpty()) {
+                        readyClients.remove(client);
+                    }
+                }
+                idle.signalAll();
+                return pending;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isShutdown() {
+            lock.lock();
+            try {
+                return shutdown;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isTerminated() {
+            lock.lock();
+            try {
+                return shutdown && queue.isEmpty() && running == 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            lock.lock();
+            try {
+                while (!(shutdown && queue.isEmpty() && running == 0)) {
+                    if (nanos <= 0 || closed) {
+                        return false;
+                    }
+                    nanos = idle.awaitNanos(nanos);
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.decompiler.task;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 按估算的堆内存占用限制同时反编译的任务：每个任务开始前申请自己的估算值，正在反编译的任务合计不超过预算
+ *
+ * 估算值超过预算的任务按预算计算，只能单独运行。最早等待的任务保留它需要的内存，后到的任务只有在不占用这部分时才能开始，
+ * 因此大任务依次运行、不会一直等待，小任务填满大任务剩下的内存。
+ * 可以由多次运行共享，如守护进程中所有请求使用同一个预算
+ */
+public class MemoryBudget {
+    private final long budgetBytes;
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private long usedBytes;
+    private long peakBytes;
+    private long waitCount;
+    private long waitNanos;
+
+    public MemoryBudget(long budgetBytes) {
+        this.budgetBytes = Math.max(budgetBytes, 1);
+    }
+
+    /**
+     * 申请 bytes 字节，预算不足时等待；返回实际占用的字节数，结束后传给 release
+     */
+    public synchronized long acquire(long bytes) throws InterruptedException {
+        long weight = Math.max(1, Math.min(bytes, budgetBytes));
+        if (canStart(null, weight)) {
+            start(weight);
+            return weight;
+        }
+
+        Waiter waiter = new Waiter(weight);
+        waiters.addLast(waiter);
+        long waitStart = System.nanoTime();
+        try {
+            while (!canStart(waiter, weight)) {
+                wait();
+            }
+        } finally {
+            waiters.remove(waiter);
+            // 等待队列的第一个任务变化后，其他任务能否开始也随之变化
+            notifyAll();
+        }
+        waitCount++;
+        waitNanos += System.nanoTime() - waitStart;
+        start(weight);
+        return weight;
+    }
+
+    /**
+     * 任务结束后归还 acquire 返回的字节数
+     */
+    public synchronized void release(long weight) {
+        usedBytes -= weight;
+        notifyAll();
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * 同时运行的任务估算占用之和的最大值
+     */
+    public synchronized long getPeakBytes() {
+        return peakBytes;
+    }
+
+    /**
+     * 因为预算不足等待过的任务数
+     */
+    public synchronized long getWaitCount() {
+        return waitCount;
+    }
+
+    public synchronized long getWaitMillis() {
+        return waitNanos / 1_000_000;
+    }
+
+    private boolean canStart(Waiter self, long weight) {
+        if (usedBytes + weight > budgetBytes) {
+            return false;
+        }
+        Waiter first = waiters.peekFirst();
+        return first == null || first == self || usedBytes + weight + first.weight <= budgetBytes;
+    }
+
+    private void start(long weight) {
+        usedBytes += weight;
+        peakBytes = Math.max(peakBytes, usedBytes);
+    }
+
+    private static class Waiter {
+        final long weight;
+
+        Waiter(long weight) {
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.decompiler.task;
+
+import com.decompiler.cache.ResultCache;
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.config.VineflowerOptions;
+import com.decompiler.metrics.DecompileMetrics;
+import com.decompiler.util.ArchiveReader;
+import com.decompiler.util.ClasspathIndex;
+import com.decompiler.util.IoExecutor;
+import com.decompiler.util.RecordingResultSaver;
+import com.decompiler.util.SourceArchiveWriter;
+import com.decompiler.util.VineDecompiler;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 一次运行中所有反编译任务共享的配置和服务
+ */
+public class TaskContext {
+    private final DecompilerConfig config;
+    private final Map<String, Object> options;
+    private final ArchiveReader archiveReader;
+    private final ResultCache resultCache;
+    private final TimeoutGuard timeoutGuard;
+    private final DecompileMetrics metrics;
+    private final SourceArchiveWriter archiveWriter;
+    private final ClasspathIndex classpath;
+    private final ConcurrencyController concurrency;
+    private final MemoryBudget memoryBudget;
+    private final IoExecutor ioExecutor;
+
+    /**
+     * @param resultCache 结果缓存，不使用时为 null
+     * @param timeoutGuard 限制反编译时间，不限制时为 null
+     */
+    public TaskContext(DecompilerConfig config, Map<String, Object> options, ArchiveReader archiveReader,
+                       ResultCache resultCache, TimeoutGuard timeoutGuard, DecompileMetrics metrics) {
+        this(config, options, archiveReader, resultCache, timeoutGuard, metrics, null, null);
+    }
+
+    /**
+     * @param archiveWriter 把结果写入源码归档，输出到目录时为 null
+     * @param classpath 作为库输入的类路径索引，不使用时为 null
+     */
+    public TaskContext(DecompilerConfig config, Map<String, Object> options, ArchiveReader archiveReader,
+                       ResultCache resultCache, TimeoutGuard timeoutGuard, DecompileMetrics metrics,
+                       SourceArchiveWriter archiveWriter, ClasspathIndex classpath) {
+        this(config, options, archiveReader, resultCache, timeoutGuard, metrics, archiveWriter, classpath, null, null,
+                null);
+    }
+
+    /**
+     * @param concurrency 调整外部并发度的控制器，用于计算上下文内部的线程数；为 null 时按配置的线程数计算
+     * @param memoryBudget 按估算的堆内存限制同时反编译的任务，不限制时为 null
+     * @param ioExecutor 并行写出同一上下文中多个class的源码，为 null 时在反编译线程中依次写出
+     */
+    public TaskContext(DecompilerConfig config, Map<String, Object> options, ArchiveReader archiveReader,
+                       ResultCache resultCache, TimeoutGuard timeoutGuard, DecompileMetrics metrics,
+                       SourceArchiveWriter archiveWriter, ClasspathIndex classpath,
+                       ConcurrencyController concurrency, MemoryBudget memoryBudget, IoExecutor ioExecutor) {
+        this.config = config;
+        this.options = options;
+        this.archiveReader = archiveReader;
+        this.resultCache = resultCache;
+        this.timeoutGuard = timeoutGuard;
+        this.metrics = metrics;
+        this.archiveWriter = archiveWriter;
+        this.classpath = classpath;
+        this.concurrency = concurrency;
+        this.memoryBudget = memoryBudget;
+        this.ioExecutor = ioExecutor;
+    }
+
+    public DecompilerConfig getConfig() {
+        return config;
+    }
+
+    public Map<String, Object> getOptions() {
+        return options;
+    }
+
+    public ArchiveReader getArchiveReader() {
+        return archiveReader;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public TimeoutGuard getTimeoutGuard() {
+        return timeoutGuard;
+    }
+
+    public DecompileMetrics getMetrics() {
+        return metrics;
+    }
+
+    public SourceArchiveWriter getArchiveWriter() {
+        return archiveWriter;
+    }
+
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * 创建输出到 outputDir 的反编译器；输出到目录时先创建该目录，写入源码归档时不访问文件系统
+     * 使用类路径索引时把它作为库输入加入上下文
+     *
+     * @param classCount 上下文中要反编译的class数量，Vineflower 在上下文内部按class并行，
+     *                   内部线程数不超过它，并且与外部并发度相乘不超过CPU核数；
+     *                   多于一个并且输出到目录时在I/O执行器中并行写出
+     */
+    public VineDecompiler createDecompiler(File outputDir, Map<String, Object> decompileOptions,
+                                           IFernflowerLogger logger, int classCount) throws IOException {
+        if (archiveWriter == null) {
+            FileUtils.forceMkdir(outputDir);
+        }
+        int innerThreads = concurrency != null ? concurrency.innerThreads(classCount)
+                : ConcurrencyController.innerThreads(classCount, config.getThreadCount());
+        Map<String, Object> contextOptions = new HashMap<>(decompileOptions);
+        contextOptions.put(VineflowerOptions.THR, String.valueOf(innerThreads));
+        RecordingResultSaver saver = classCount > 1 && archiveWriter == null && ioExecutor != null
+                ? new RecordingResultSaver(outputDir, ioExecutor)
+                : new RecordingResultSaver(outputDir, archiveWriter);
+        VineDecompiler decompiler = new VineDecompiler(saver, contextOptions, logger);
+        if (classpath != null) {
+            decompiler.addLibrary(classpath.asLibrary());
+        }
+        return decompiler;
+    }
+
+    /**
+     * 不读写结果缓存的副本，用于结果受组内其他class影响的场景
+     */
+    public TaskContext withoutCache() {
+        return new TaskContext(config, options, archiveReader, null, timeoutGuard, metrics, archiveWriter,
+                classpath, concurrency, memoryBudget, ioExecutor);
+    }
+}
@@ -1,25 +1,82 @@
 package com.decompiler.task;
 
+import com.decompiler.metrics.DecompileMetrics;
+import com.decompiler.model.DecompileBatch;
+import com.decompiler.util.IoExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
 
 public class TaskManager {
     private static final Logger logger = LoggerFactory.getLogger(TaskManager.class);
+    private static final long STREAM_PROGRESS_INTERVAL_MS = 10_000;
+
+    private final int threadCount;
     private final ExecutorService executorService;
+    private final DecompileMetrics metrics;
+    private final ConcurrencyController concurrency;
+    private final IoExecutor ioExecutor;
 
     public TaskManager(int threadCount) {
-        this.executorService = Executors.newFixedThreadPool(threadCount);
+        this(threadCount, new DecompileMetrics(threadCount), (ConcurrencyController) null, null);
+    }
+
+    /**
+     * @param metrics 记录任务队列深度、任务耗时和线程利用率
+     * @param concurrency 运行时调整同时执行的任务数，线程数是上限；为 null 时所有线程同时执行任务
+     * @param ioExecutor 执行 executeParallel 提交的I/O任务，由调用方关闭；为 null 时使用反编译的线程池
+     */
+    public TaskManager(int threadCount, DecompileMetrics metrics, ConcurrencyController concurrency,
+                       IoExecutor ioExecutor) {
+        this.threadCount = threadCount;
+        this.metrics = metrics;
+        this.concurrency = concurrency;
+        this.ioExecutor = ioExecutor;
+        // 工作窃取线程池，asyncMode 下每个线程按提交顺序（先进先出）执行任务
+        // Vineflower 在任务内部等待它自己的线程池时，默认会为阻塞的线程创建补偿线程，
+        // 同时执行的任务数可以远超线程数，这里限制线程总数，阻塞时不再补偿
+        this.executorService = new ForkJoinPool(threadCount,
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true,
+                threadCount, threadCount, 1, pool -> true, 60, TimeUnit.SECONDS);
     }
 
+    /**
+     * 使用外部提供的线程池，如守护进程中 {@link FairScheduler} 为一次请求创建的任务队列
+     * 任务结束时同样会关闭它，外部线程池需要保证关闭只影响本次提交的任务；
+     * 共享的线程池不适合 processStream，流式处理的取任务循环会一直占用线程，其他请求轮不到
+     *
+     * @param ioExecutor 执行 executeParallel 提交的I/O任务，由调用方关闭；为 null 时使用外部线程池
+     */
+    public TaskManager(int threadCount, DecompileMetrics metrics, ExecutorService executorService,
+                       IoExecutor ioExecutor) {
+        this.threadCount = threadCount;
+        this.metrics = metrics;
+        this.concurrency = null;
+        this.ioExecutor = ioExecutor;
+        this.executorService = executorService;
+    }
+
+    /**
+     * 执行反编译任务，按估算开销从大到小提交
+     * 开销大的class先开始，避免最后只剩一个线程在处理大class而其他线程空闲
+     *
+     * @param costEstimator 估算单个任务的反编译开销，在线程池中并行计算
+     */
     public <T> List<DecompileResult> processTasks(
             List<T> items,
-            Function<T, DecompileTask> taskFactory,
+            ToLongFunction<T> costEstimator,
+            Function<T, Callable<DecompileResult>> taskFactory,
             Consumer<DecompileResult> resultProcessor) {
 
         List<DecompileResult> results = new ArrayList<>();
@@ -28,17 +85,19 @@ public class TaskManager {
         int lastReportedPercentage = 0;
 
         try {
+            startConcurrencyControl();
+            List<T> ordered = orderByCost(items, costEstimator);
+
             // 创建所有任务
-            List<Future<DecompileResult>> futures = new ArrayList<>();
-            for (T item : items) {
-                DecompileTask task = taskFactory.apply(item);
-                futures.add(executorService.submit(task));
+            CompletionService<DecompileResult> completionService = new ExecutorCompletionService<>(executorService);
+            for (T item : ordered) {
+                completionService.submit(instrument(taskFactory.apply(item)));
             }
 
-            // 处理结果
-            for (Future<DecompileResult> future : futures) {
+            // 按完成顺序处理结果
+            for (int i = 0; i < ordered.size(); i++) {
                 try {
-                    DecompileResult result = future.get();
+                    DecompileResult result = completionService.take().get();
                     results.add(result);
 
                     // 处理结果
@@ -48,54 +107,308 @@ public class TaskManager {
 
                     // 更新和报告进度
                     completedTasks++;
-                    int percentage = (completedTasks * 100) / totalTasks;
-                    if (percentage >= lastReportedPercentage + 10 || completedTasks == totalTasks) {
-                        logger.info("Progress: {}% ({} of {} files)",
-                                percentage, completedTasks, totalTasks);
-                        lastReportedPercentage = percentage;
+                    lastReportedPercentage = reportProgress(completedTasks, totalTasks, lastReportedPercentage);
+
+                } catch (ExecutionException e) {
+                    logger.error("Task execution failed", e);
+                } catch (InterruptedException e) {
+                    logger.error("Task execution interrupted", e);
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            shutdown();
+        }
+
+        return results;
+    }
+
+    /**
+     * 并行估算每个任务的开销，返回按开销从大到小排序的任务列表
+     * 估算失败时保持原有顺序
+     */
+    private <T> List<T> orderByCost(List<T> items, ToLongFunction<T> costEstimator) {
+        long[] costs = new long[items.size()];
+        try {
+            // 在线程池中执行，并行流会使用同一个线程池
+            executorService.submit(() -> IntStream.range(0, costs.length).parallel()
+                    .forEach(i -> costs[i] = costEstimator.applyAsLong(items.get(i)))).get();
+        } catch (ExecutionException e) {
+            logger.warn("估算任务开销失败，按发现顺序执行", e);
+            return items;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return items;
+        }
+
+        Integer[] indexes = new Integer[costs.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, (a, b) -> Long.compare(costs[b], costs[a]));
+
+        List<T> ordered = new ArrayList<>(indexes.length);
+        for (Integer index : indexes) {
+            ordered.add(items.get(index));
+        }
+        return ordered;
+    }
+
+    /**
+     * 按组执行反编译任务，每组返回组内所有class的结果
+     * 组按字节码总大小从大到小提交，空闲线程总是先拿到剩余最大的组，避免最后只剩一个线程处理大组
+     */
+    public List<DecompileResult> processBatches(
+            List<DecompileBatch> batches,
+            Function<DecompileBatch, Callable<List<DecompileResult>>> taskFactory,
+            Consumer<DecompileResult> resultProcessor) {
+
+        List<DecompileResult> results = new ArrayList<>();
+        int totalTasks = batches.stream().mapToInt(batch -> batch.getJobs().size()).sum();
+        int completedTasks = 0;
+        int lastReportedPercentage = 0;
+
+        List<DecompileBatch> ordered = new ArrayList<>(batches);
+        ordered.sort(Comparator.comparingLong(DecompileBatch::getTotalSize).reversed());
+
+        try {
+            startConcurrencyControl();
+            CompletionService<List<DecompileResult>> completionService = new ExecutorCompletionService<>(executorService);
+            for (DecompileBatch batch : ordered) {
+                completionService.submit(instrument(taskFactory.apply(batch)));
+            }
+
+            // 按完成顺序处理结果
+            for (int i = 0; i < ordered.size(); i++) {
+                try {
+                    List<DecompileResult> batchResults = completionService.take().get();
+                    results.addAll(batchResults);
+
+                    for (DecompileResult result : batchResults) {
+                        if (resultProcessor != null) {
+                            resultProcessor.accept(result);
+                        }
                     }
 
-                } catch (InterruptedException | ExecutionException e) {
+                    completedTasks += batchResults.size();
+                    lastReportedPercentage = reportProgress(completedTasks, totalTasks, lastReportedPercentage);
+
+                } catch (ExecutionException e) {
                     logger.error("Task execution failed", e);
+                } catch (InterruptedException e) {
+                    logger.error("Task execution interrupted", e);
+                    Thread.currentThread().interrupt();
+                    break;
                 }
             }
         } finally {
-            executorService.shutdown();
+            shutdown();
+        }
+
+        return results;
+    }
+
+    /**
+     * 持续从队列中取出任务执行，直到取到结束标记，任务总数事先未知
+     * 每个线程运行一个取任务的循环，取到结束标记后放回队列通知其他线程，然后退出
+     */
+    public <T> int processStream(
+            BlockingQueue<T> queue,
+            T endMarker,
+            Function<T, Callable<List<DecompileResult>>> taskFactory,
+            Consumer<DecompileResult> resultProcessor) {
+
+        AtomicInteger completedTasks = new AtomicInteger(0);
+        AtomicLong lastReportTime = new AtomicLong(System.currentTimeMillis());
+        Object resultLock = new Object();
+
+        try {
+            startConcurrencyControl();
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                workers.add(executorService.submit(() -> {
+                    while (true) {
+                        // 超出当前并发度的线程在取任务前等待
+                        acquire();
+                        try {
+                            T item = queue.take();
+                            if (item == endMarker) {
+                                queue.put(endMarker);
+                                return null;
+                            }
+
+                            List<DecompileResult> results;
+                            long started = metrics.taskStarted(false);
+                            try {
+                                results = taskFactory.apply(item).call();
+                            } catch (Exception e) {
+                                logger.error("Task execution failed", e);
+                                continue;
+                            } finally {
+                                metrics.taskFinished(started);
+                            }
+
+                            // 结果处理器不要求线程安全，这里串行调用
+                            if (resultProcessor != null) {
+                                synchronized (resultLock) {
+                                    for (DecompileResult result : results) {
+                                        resultProcessor.accept(result);
+                                    }
+                                }
+                            }
+
+                            int completed = completedTasks.addAndGet(results.size());
+                            long now = System.currentTimeMillis();
+                            long last = lastReportTime.get();
+                            if (now - last >= STREAM_PROGRESS_INTERVAL_MS && lastReportTime.compareAndSet(last, now)) {
+                                logger.info("Progress: {} files completed", completed);
+                            }
+                        } finally {
+                            release();
+                        }
+                    }
+                }));
+            }
+
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    logger.error("Task execution failed", e);
+                } catch (InterruptedException e) {
+                    logger.error("Task execution interrupted", e);
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            shutdown();
+        }
+
+        logger.info("Progress: {} files completed", completedTasks.get());
+        return completedTasks.get();
+    }
+
+    /**
+     * 包装提交到线程池的任务，记录等待和执行状态
+     */
+    private <V> Callable<V> instrument(Callable<V> task) {
+        metrics.taskSubmitted();
+        return () -> {
+            // 等待并发位置的时间计入排队时间
+            acquire();
             try {
-                if (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
-                    executorService.shutdownNow();
+                long started = metrics.taskStarted(true);
+                try {
+                    return task.call();
+                } finally {
+                    metrics.taskFinished(started);
                 }
-            } catch (InterruptedException e) {
-                executorService.shutdownNow();
-                Thread.currentThread().interrupt();
+            } finally {
+                release();
             }
+        };
+    }
+
+    private void startConcurrencyControl() {
+        if (concurrency != null) {
+            concurrency.start();
         }
+    }
 
-        return results;
+    private void acquire() throws InterruptedException {
+        if (concurrency != null) {
+            concurrency.acquire();
+        }
+    }
+
+    private void release() {
+        if (concurrency != null) {
+            concurrency.release();
+        }
+    }
+
+    public DecompileMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 调整并发度的控制器，固定并发度时为 null
+     */
+    public ConcurrencyController getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * 每完成10%报告一次进度，返回最近一次报告的百分比
+     */
+    private int reportProgress(int completedTasks, int totalTasks, int lastReportedPercentage) {
+        int percentage = totalTasks == 0 ? 100 : (completedTasks * 100) / totalTasks;
+        if (percentage >= lastReportedPercentage + 10 || completedTasks == totalTasks) {
+            logger.info("Progress: {}% ({} of {} files)",
+                    percentage, completedTasks, totalTasks);
+            return percentage;
+        }
+        return lastReportedPercentage;
     }
-    public <T> void executeParallel(List<Callable<T>> tasks) {
+
+    /**
+     * 关闭线程池并等待已提交的任务结束
+     * 只调用 executeParallel 时线程池不会自动关闭，需要调用方在使用完毕后关闭
+     */
+    public void shutdown() {
+        if (concurrency != null) {
+            concurrency.close();
+        }
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+                executorService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 并行执行一组阻塞I/O的任务并等待全部结束，如解压JAR、复制class文件
+     * 有I/O执行器时在其中执行，不占用反编译的线程；返回按任务顺序排列的结果，失败的任务对应 null
+     */
+    public <T> List<T> executeParallel(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
         if (tasks.isEmpty()) {
-            return;
+            return results;
         }
 
         try {
             List<Future<T>> futures = new ArrayList<>();
             for (Callable<T> task : tasks) {
-                futures.add(executorService.submit(task));
+                futures.add(ioExecutor != null ? ioExecutor.submit(task) : executorService.submit(task));
             }
 
             // 等待所有任务完成
             for (Future<T> future : futures) {
                 try {
-                    future.get();
-                } catch (ExecutionException | InterruptedException e) {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    logger.error("任务执行失败", e);
+                    results.add(null);
+                } catch (InterruptedException e) {
                     logger.error("任务执行失败", e);
+                    Thread.currentThread().interrupt();
+                    results.add(null);
                 }
             }
 
             logger.info("完成了 {} 个并行任务", tasks.size());
         } catch (Exception e) {
             logger.error("并行任务执行过程中发生错误", e);
+            while (results.size() < tasks.size()) {
+                results.add(null);
+            }
         }
+        return results;
     }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package com.decompiler.task;
+
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.decompiler.CancelationManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 限制单个反编译任务的执行时间
+ *
+ * 任务在单独的线程中执行，调用线程最多等待到期限为止：
+ * 1. Vineflower 每开始反编译一个方法都会检查是否已取消，超过期限时在这里抛出取消异常，反编译随即结束
+ * 2. 卡在单个方法中的任务无法协作取消，调用线程放弃等待并中断它，后续任务由新线程执行，不会拖住整个批次
+ */
+public class TimeoutGuard implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(TimeoutGuard.class);
+
+    /**
+     * 期限到达后等待任务自行取消的时间
+     */
+    private static final long CANCEL_GRACE_MILLIS = 1000;
+
+    private static final Map<DecompilerContext, Long> contextDeadlines = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Long> currentDeadline = new ThreadLocal<>();
+
+    static {
+        // 取消检查器是全局的，Vineflower 的工作线程上都设置了当前的反编译上下文，以此找到对应任务的期限
+        CancelationManager.setCancelationChecker(TimeoutGuard::checkDeadline);
+    }
+
+    private final AtomicInteger threadIndex = new AtomicInteger(0);
+    private final ExecutorService runner = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "decompile-runner-" + threadIndex.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 在期限内执行任务，超时抛出 TimeoutException
+     *
+     * @param task 任务，其中创建的反编译器需要通过 bindContext 关联期限
+     * @param timeoutMillis 期限，单位毫秒
+     */
+    public <T> T run(Callable<T> task, long timeoutMillis) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Future<T> future = runner.submit(() -> {
+            currentDeadline.set(deadline);
+            try {
+                return task.call();
+            } finally {
+                currentDeadline.remove();
+            }
+        });
+
+        try {
+            return future.get(timeoutMillis + CANCEL_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 任务没有响应取消，放弃该线程，之后的任务会使用新的线程
+            future.cancel(true);
+            logger.warn("任务未能在期限内取消，已放弃执行该任务的线程");
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancelationManager.CanceledException) {
+                throw new TimeoutException("超过 " + timeoutMillis + " 毫秒");
+            }
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 把当前线程上的期限关联到当前的 Vineflower 上下文，需要在创建反编译器之后、反编译之前调用
+     * 不在 run 中执行时不做任何处理
+     *
+     * @return 关联的上下文，反编译结束后传给 unbindContext；没有关联时返回 null
+     */
+    public static DecompilerContext bindContext() {
+        Long deadline = currentDeadline.get();
+        DecompilerContext context = DecompilerContext.getCurrentContext();
+        if (deadline == null || context == null) {
+            return null;
+        }
+        contextDeadlines.put(context, deadline);
+        return context;
+    }
+
+    /**
+     * 反编译结束后解除上下文的期限，反编译结束时 Vineflower 已经清除了当前线程的上下文，因此需要传入
+     */
+    public static void unbindContext(DecompilerContext context) {
+        if (context != null) {
+            contextDeadlines.remove(context);
+        }
+    }
+
+    private static void checkDeadline() {
+        DecompilerContext context = DecompilerContext.getCurrentContext();
+        if (context == null) {
+            return;
+        }
+        Long deadline = contextDeadlines.get(context);
+        if (deadline != null && System.nanoTime() - deadline > 0) {
+            CancelationManager.cancel();
+        }
+    }
+
+    @Override
+    public void close() {
+        runner.shutdownNow();
+    }
+}
@@ -0,0 +1,211 @@
+package com.decompiler.util;
+
+import com.decompiler.model.DecompileJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 按路径缓存已打开的归档文件，供多个反编译任务并发地直接读取其中的 class 字节
+ * 每个归档的中央目录只解析一次，条目内容不会落盘
+ *
+ * 嵌套归档（如 WAR 中的 WEB-INF/lib/*.jar、Spring Boot 的 BOOT-INF/lib/*.jar）在第一次读取时解压到临时文件并映射到内存，
+ * 解析中央目录后其中的条目直接从映射中读取；映射不占用堆内存，由操作系统按需换入换出，
+ * 包含大量依赖的 WAR/EAR 也不会把所有嵌套归档留在堆中。临时文件在映射后立即删除，无法删除时（如 Windows）在 close 时删除
+ */
+public class ArchiveReader implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveReader.class);
+
+    private final Map<String, ZipFile> openArchives = new ConcurrentHashMap<>();
+    private final Map<String, Future<ZipIndex>> nestedArchives = new ConcurrentHashMap<>();
+    private final List<Path> spilledFiles = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * 读取任务对应的class字节，归档条目直接从归档中读取；任务已经读入内存的字节直接返回
+     */
+    public byte[] readClassBytes(DecompileJob job) throws IOException {
+        byte[] loaded = job.getLoadedBytes();
+        if (loaded != null) {
+            return loaded;
+        }
+        if (job.isArchiveEntry()) {
+            return readEntry(job.getSourceFile(), job.getEntryName());
+        }
+        return Files.readAllBytes(job.getSourceFile().toPath());
+    }
+
+    /**
+     * 读取归档中指定条目的全部字节，条目名称中含有 !/ 时从嵌套归档中读取
+     */
+    public byte[] readEntry(File archive, String entryName) throws IOException {
+        int separator = entryName.lastIndexOf(DecompileJob.NESTED_SEPARATOR);
+        if (separator >= 0) {
+            String nestedPath = entryName.substring(0, separator);
+            String innerName = entryName.substring(separator + DecompileJob.NESTED_SEPARATOR.length());
+            ZipIndex nested = openNested(archive, nestedPath);
+            ZipIndex.Entry entry = nested.getEntry(innerName);
+            if (entry == null) {
+                throw new FileNotFoundException("归档中不存在条目: " + archive.getName() + "!/" + entryName);
+            }
+            return nested.read(entry);
+        }
+
+        ZipFile zipFile = open(archive);
+        ZipEntry entry = zipFile.getEntry(entryName);
+        if (entry == null) {
+            throw new FileNotFoundException("归档中不存在条目: " + archive.getName() + "!/" + entryName);
+        }
+
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * 打开嵌套归档，同一个嵌套归档只读取和解析一次，并发的首次读取等待同一个结果
+     * 多层嵌套时外层的嵌套归档先被打开
+     */
+    private ZipIndex openNested(File archive, String nestedPath) throws IOException {
+        String key = archive.getAbsolutePath() + DecompileJob.NESTED_SEPARATOR + nestedPath;
+        Future<ZipIndex> future = nestedArchives.get(key);
+        if (future == null) {
+            FutureTask<ZipIndex> task = new FutureTask<>(() -> {
+                ZipIndex index = ZipIndex.parse(mapNested(archive, nestedPath));
+                if (index == null) {
+                    throw new IOException("不支持的嵌套归档格式: " + archive.getName() + "!/" + nestedPath);
+                }
+                return index;
+            });
+            future = nestedArchives.putIfAbsent(key, task);
+            if (future == null) {
+                future = task;
+                task.run();
+            }
+        }
+
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("读取嵌套归档失败: " + archive.getName() + "!/" + nestedPath, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待读取嵌套归档时被中断: " + nestedPath);
+        }
+    }
+
+    /**
+     * 把嵌套归档解压到临时文件并以只读方式映射，关闭通道后映射仍然有效
+     */
+    private ByteBuffer mapNested(File archive, String nestedPath) throws IOException {
+        Path file = Files.createTempFile("nested-", ".jar");
+        try {
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                writeEntry(archive, nestedPath, out);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("嵌套归档过大: " + archive.getName() + "!/" + nestedPath);
+                }
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        } finally {
+            try {
+                Files.delete(file);
+            } catch (IOException e) {
+                // 不允许删除已映射文件的系统上，等到 close 时再删除
+                spilledFiles.add(file);
+            }
+        }
+    }
+
+    /**
+     * 把归档中条目的内容写到通道中，条目名称中含有 !/ 时从嵌套归档中读取
+     */
+    private void writeEntry(File archive, String entryName, WritableByteChannel out) throws IOException {
+        int separator = entryName.lastIndexOf(DecompileJob.NESTED_SEPARATOR);
+        if (separator >= 0) {
+            String nestedPath = entryName.substring(0, separator);
+            String innerName = entryName.substring(separator + DecompileJob.NESTED_SEPARATOR.length());
+            ZipIndex nested = openNested(archive, nestedPath);
+            ZipIndex.Entry entry = nested.getEntry(innerName);
+            if (entry == null) {
+                throw new FileNotFoundException("归档中不存在条目: " + archive.getName() + "!/" + entryName);
+            }
+            nested.writeTo(entry, out);
+            return;
+        }
+
+        ZipFile zipFile = open(archive);
+        ZipEntry entry = zipFile.getEntry(entryName);
+        if (entry == null) {
+            throw new FileNotFoundException("归档中不存在条目: " + archive.getName() + "!/" + entryName);
+        }
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            in.transferTo(Channels.newOutputStream(out));
+        }
+    }
+
+    private ZipFile open(File archive) throws IOException {
+        try {
+            return openArchives.computeIfAbsent(archive.getAbsolutePath(), path -> {
+                try {
+                    return new ZipFile(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (ZipFile zipFile : openArchives.values()) {
+            try {
+                zipFile.close();
+            } catch (IOException e) {
+                logger.warn("关闭归档文件失败: {} - {}", zipFile.getName(), e.getMessage());
+            }
+        }
+        openArchives.clear();
+        nestedArchives.clear();
+        synchronized (spilledFiles) {
+            for (Path file : spilledFiles) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    file.toFile().deleteOnExit();
+                }
+            }
+            spilledFiles.clear();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.decompiler.util;
+
+import org.jetbrains.java.decompiler.main.extern.IContextSource;
+import org.jetbrains.java.decompiler.main.extern.IResultSaver;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * 以内存中的字节数组作为 Vineflower 的反编译源，不需要先把 class 文件写到磁盘
+ * 默认把反编译结果保存到 VineDecompiler 输出目录的根下，与直接添加单个 class 文件时一致
+ */
+public class ClassBytesSource implements IContextSource {
+    private final String className;
+    private final byte[] bytes;
+    private final String outputPath;
+
+    /**
+     * @param className 类的内部名称，如 com/example/Foo
+     * @param bytes class 文件内容
+     */
+    public ClassBytesSource(String className, byte[] bytes) {
+        this(className, bytes, "");
+    }
+
+    /**
+     * @param className 类的内部名称，如 com/example/Foo
+     * @param bytes class 文件内容
+     * @param outputPath 保存结果的目录，相对于输出目录或绝对路径；同一上下文中的多个源可以输出到不同目录
+     */
+    public ClassBytesSource(String className, byte[] bytes, String outputPath) {
+        this.className = className;
+        this.bytes = bytes;
+        this.outputPath = outputPath;
+    }
+
+    @Override
+    public String getName() {
+        return "memory " + className;
+    }
+
+    @Override
+    public Entries getEntries() {
+        return new Entries(List.of(Entry.atBase(className)), List.of(), List.of());
+    }
+
+    @Override
+    public InputStream getInputStream(String resource) {
+        return new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public IOutputSink createOutputSink(IResultSaver saver) {
+        return new IOutputSink() {
+            @Override
+            public void begin() {
+            }
+
+            @Override
+            public void acceptClass(String qualifiedName, String fileName, String content, int[] mapping) {
+                String entryName = fileName.substring(fileName.lastIndexOf('/') + 1);
+                saver.saveClassFile(outputPath, qualifiedName, entryName, content, mapping);
+            }
+
+            @Override
+            public void acceptDirectory(String directory) {
+            }
+
+            @Override
+            public void acceptOther(String path) {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,373 @@
+package com.decompiler.util;
+
+import com.decompiler.model.ClassInfo;
+import com.decompiler.model.DecompileJob;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 不解析字节码，顺序扫描常量池、字段表、方法表和类的属性，读取类名、外部类、方法数量和字节码长度，见 {@link ClassInfo}
+ * 用于在反编译之前粗略估计每个class的反编译开销和堆内存占用、判断内部类的输出文件，以及为不知道包根目录的class文件建立类路径索引
+ */
+public final class ClassFileScanner {
+    private static final int MAGIC = 0xCAFEBABE;
+
+    /**
+     * 每个方法的固定开销折算成的字节数
+     * 每个方法都要单独建立控制流图和变量分析，方法多的小class并不比方法少的大class便宜
+     */
+    private static final long METHOD_COST = 512;
+
+    /**
+     * 堆内存估算的系数：每个上下文的固定占用、每个class字节、每个方法、每个字节码字节，
+     * 以及最大的一个方法每个字节码字节额外的占用。方法逐个处理，控制流图、SSA 和表达式树在处理最大的方法时达到峰值，
+     * 处理完后只保留生成的语句
+     */
+    private static final long CONTEXT_HEAP = 512 * 1024;
+    private static final long CLASS_BYTE_HEAP = 8;
+    private static final long METHOD_HEAP = 8 * 1024;
+    private static final long CODE_BYTE_HEAP = 256;
+    private static final long PEAK_CODE_BYTE_HEAP = 2 * 1024;
+
+    private ClassFileScanner() {
+    }
+
+    /**
+     * 估算反编译开销：class字节数加上按方法数折算的固定开销
+     * 无法解析的class只按字节数计算
+     */
+    public static long estimateCost(byte[] classBytes) {
+        return estimateCost(scan(classBytes), classBytes.length);
+    }
+
+    /**
+     * 按扫描结果估算反编译开销，info 为 null（无法解析）时只按字节数 classSize 计算
+     */
+    public static long estimateCost(ClassInfo info, long classSize) {
+        return info == null ? classSize : info.getClassSize() + info.getMethodCount() * METHOD_COST;
+    }
+
+    /**
+     * 估算单独反编译这个class时的堆内存峰值（字节），按class大小、方法数量、字节码总长度和最长方法的字节码长度计算
+     * 只用于控制同时反编译的class，不要求准确；无法解析的class按字节数和最长方法占满整个class计算
+     */
+    public static long estimateHeapBytes(byte[] classBytes) {
+        return estimateHeapBytes(scan(classBytes), classBytes.length);
+    }
+
+    /**
+     * 按扫描结果估算堆内存峰值，info 为 null（无法解析）时按字节数 classSize 计算
+     */
+    public static long estimateHeapBytes(ClassInfo info, long classSize) {
+        if (info == null) {
+            return CONTEXT_HEAP + classSize * (CLASS_BYTE_HEAP + CODE_BYTE_HEAP + PEAK_CODE_BYTE_HEAP);
+        }
+        return CONTEXT_HEAP + info.getClassSize() * CLASS_BYTE_HEAP + info.getMethodCount() * METHOD_HEAP
+                + info.getCodeLength() * CODE_BYTE_HEAP + info.getMaxCodeLength() * PEAK_CODE_BYTE_HEAP;
+    }
+
+    /**
+     * 任务已有扫描结果时直接返回，否则扫描 classBytes 并保存到任务中；无法解析时返回 null
+     */
+    public static ClassInfo scan(DecompileJob job, byte[] classBytes) {
+        ClassInfo info = job.getClassInfo();
+        if (info == null) {
+            info = scan(classBytes);
+            job.setClassInfo(info);
+        }
+        return info;
+    }
+
+    public static ClassInfo scan(byte[] classBytes) {
+        return scan(ByteBuffer.wrap(classBytes));
+    }
+
+    /**
+     * 顺序扫描一遍 buffer 中剩余的字节，得到类名、外部类、访问标志、方法数量和字节码长度，不是合法的class文件时返回 null
+     * 常量池只记录每一项的位置，属性名按字节比较，只为类名创建字符串；不改变 buffer 的位置
+     */
+    public static ClassInfo scan(ByteBuffer input) {
+        ByteBuffer buffer = input.slice();
+        try {
+            if (buffer.getInt() != MAGIC) {
+                return null;
+            }
+            // minor_version, major_version
+            skip(buffer, 4);
+
+            int[] offsets = new int[Short.toUnsignedInt(buffer.getShort(buffer.position()))];
+            if (!skipConstantPool(buffer, offsets)) {
+                return null;
+            }
+
+            int accessFlags = Short.toUnsignedInt(buffer.getShort());
+            int thisClass = Short.toUnsignedInt(buffer.getShort());
+            // super_class
+            skip(buffer, 2);
+            int interfacesCount = Short.toUnsignedInt(buffer.getShort());
+            skip(buffer, interfacesCount * 2);
+
+            int fieldsCount = Short.toUnsignedInt(buffer.getShort());
+            for (int i = 0; i < fieldsCount; i++) {
+                // access_flags, name_index, descriptor_index
+                skip(buffer, 6);
+                skipAttributes(buffer);
+            }
+
+            int methodsCount = Short.toUnsignedInt(buffer.getShort());
+            long totalCode = 0;
+            long maxCode = 0;
+            for (int i = 0; i < methodsCount; i++) {
+                skip(buffer, 6);
+                int attributesCount = Short.toUnsignedInt(buffer.getShort());
+                for (int j = 0; j < attributesCount; j++) {
+                    int nameIndex = Short.toUnsignedInt(buffer.getShort());
+                    int length = attributeLength(buffer);
+                    if (length >= 8 && isUtf8(buffer, offsets, nameIndex, "Code")) {
+                        // max_stack, max_locals, code_length
+                        long codeLength = Integer.toUnsignedLong(buffer.getInt(buffer.position() + 4));
+                        totalCode += codeLength;
+                        maxCode = Math.max(maxCode, codeLength);
+                    }
+                    skip(buffer, length);
+                }
+            }
+
+            int innerClasses = -1;
+            int enclosingClass = 0;
+            int nestHost = 0;
+            int attributesCount = Short.toUnsignedInt(buffer.getShort());
+            for (int i = 0; i < attributesCount; i++) {
+                int nameIndex = Short.toUnsignedInt(buffer.getShort());
+                int length = attributeLength(buffer);
+                if (length >= 2) {
+                    if (isUtf8(buffer, offsets, nameIndex, "InnerClasses")) {
+                        innerClasses = buffer.position();
+                    } else if (isUtf8(buffer, offsets, nameIndex, "EnclosingMethod")) {
+                        enclosingClass = Short.toUnsignedInt(buffer.getShort(buffer.position()));
+                    } else if (isUtf8(buffer, offsets, nameIndex, "NestHost")) {
+                        nestHost = Short.toUnsignedInt(buffer.getShort(buffer.position()));
+                    }
+                }
+                skip(buffer, length);
+            }
+
+            String name = className(buffer, offsets, thisClass);
+            if (name == null) {
+                return null;
+            }
+            int outerClass = outerClass(buffer, innerClasses, thisClass);
+            if (outerClass == 0) {
+                // 局部类和匿名类在 InnerClasses 中没有外部类，由 EnclosingMethod 给出所在的类
+                outerClass = enclosingClass;
+            }
+            String outerName = outerClass == 0 ? null : className(buffer, offsets, outerClass);
+            String topLevelName = outerName == null ? name
+                    : nestHost != 0 ? className(buffer, offsets, nestHost)
+                    : topLevelName(buffer, offsets, innerClasses, outerClass);
+            return new ClassInfo(name, outerName, topLevelName == null ? name : topLevelName, accessFlags,
+                    buffer.limit(), methodsCount, totalCode, maxCode);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 从外部类沿 InnerClasses 表逐层向外找到顶层类（Java 11 之前没有 NestHost 属性）
+     * 表中包含所有外层的类，只有外层是匿名类或局部类时找不到它的外部类，此时按类名中第一个 $ 之前的部分推断
+     */
+    private static String topLevelName(ByteBuffer buffer, int[] offsets, int innerClasses, int outerClass) {
+        int current = outerClass;
+        int entries = innerClasses < 0 ? 0 : Short.toUnsignedInt(buffer.getShort(innerClasses));
+        for (int depth = 0; depth <= entries; depth++) {
+            int next = outerClass(buffer, innerClasses, current);
+            if (next == 0) {
+                break;
+            }
+            current = next;
+        }
+        String name = className(buffer, offsets, current);
+        if (name != null && isInnerClass(buffer, innerClasses, current)) {
+            int separator = name.indexOf('$', name.lastIndexOf('/') + 1);
+            return separator > 0 ? name.substring(0, separator) : name;
+        }
+        return name;
+    }
+
+    /**
+     * InnerClasses 表中 classIndex 的外部类，不在表中或者没有外部类（局部类、匿名类）时返回 0
+     */
+    private static int outerClass(ByteBuffer buffer, int innerClasses, int classIndex) {
+        int entry = innerClassEntry(buffer, innerClasses, classIndex);
+        return entry < 0 ? 0 : Short.toUnsignedInt(buffer.getShort(entry + 2));
+    }
+
+    private static boolean isInnerClass(ByteBuffer buffer, int innerClasses, int classIndex) {
+        return innerClassEntry(buffer, innerClasses, classIndex) >= 0;
+    }
+
+    /**
+     * InnerClasses 表中 inner_class_info_index 为 classIndex 的一项的位置，没有时返回 -1
+     */
+    private static int innerClassEntry(ByteBuffer buffer, int innerClasses, int classIndex) {
+        if (innerClasses < 0) {
+            return -1;
+        }
+        int count = Short.toUnsignedInt(buffer.getShort(innerClasses));
+        for (int i = 0; i < count; i++) {
+            // inner_class_info_index, outer_class_info_index, inner_name_index, inner_class_access_flags
+            int entry = innerClasses + 2 + i * 8;
+            if (Short.toUnsignedInt(buffer.getShort(entry)) == classIndex) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 常量池中 Class 常量 classIndex 的内部名称，不是 Class 常量时返回 null
+     */
+    private static String className(ByteBuffer buffer, int[] offsets, int classIndex) {
+        if (classIndex == 0 || classIndex >= offsets.length || buffer.get(offsets[classIndex]) != 7) {
+            return null;
+        }
+        int nameIndex = Short.toUnsignedInt(buffer.getShort(offsets[classIndex] + 1));
+        if (nameIndex == 0 || nameIndex >= offsets.length || buffer.get(offsets[nameIndex]) != 1) {
+            return null;
+        }
+        int length = Short.toUnsignedInt(buffer.getShort(offsets[nameIndex] + 1));
+        int start = offsets[nameIndex] + 3;
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 常量池中 index 处是否是内容为 expected 的 Utf8 常量，只比较ASCII
+     */
+    private static boolean isUtf8(ByteBuffer buffer, int[] offsets, int index, String expected) {
+        if (index == 0 || index >= offsets.length || buffer.get(offsets[index]) != 1) {
+            return false;
+        }
+        int offset = offsets[index];
+        if (Short.toUnsignedInt(buffer.getShort(offset + 1)) != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (buffer.get(offset + 3 + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 读取class文件中 this_class 的内部名称，如 com/example/Foo，不是合法的class文件时返回 null
+     */
+    public static String readClassName(byte[] classBytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(classBytes);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                return null;
+            }
+            skip(buffer, 4);
+
+            int[] offsets = new int[Short.toUnsignedInt(buffer.getShort(buffer.position()))];
+            if (!skipConstantPool(buffer, offsets)) {
+                return null;
+            }
+
+            // access_flags
+            skip(buffer, 2);
+            int thisClass = Short.toUnsignedInt(buffer.getShort());
+            if (thisClass == 0 || thisClass >= offsets.length || buffer.get(offsets[thisClass]) != 7) {
+                return null;
+            }
+            int nameIndex = Short.toUnsignedInt(buffer.getShort(offsets[thisClass] + 1));
+            if (nameIndex == 0 || nameIndex >= offsets.length || buffer.get(offsets[nameIndex]) != 1) {
+                return null;
+            }
+            int length = Short.toUnsignedInt(buffer.getShort(offsets[nameIndex] + 1));
+            return new String(classBytes, offsets[nameIndex] + 3, length, StandardCharsets.UTF_8);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 跳过常量池，offsets 不为 null 时记录每一项在缓冲区中的位置
+     */
+    private static boolean skipConstantPool(ByteBuffer buffer, int[] offsets) {
+        int constantPoolCount = Short.toUnsignedInt(buffer.getShort());
+        for (int i = 1; i < constantPoolCount; i++) {
+            if (offsets != null) {
+                offsets[i] = buffer.position();
+            }
+            int tag = Byte.toUnsignedInt(buffer.get());
+            switch (tag) {
+                case 1: // Utf8
+                    skip(buffer, Short.toUnsignedInt(buffer.getShort()));
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    skip(buffer, 4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    skip(buffer, 8);
+                    // 占用两个常量池位置
+                    i++;
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    skip(buffer, 2);
+                    break;
+                case 15: // MethodHandle
+                    skip(buffer, 3);
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static void skipAttributes(ByteBuffer buffer) {
+        int attributesCount = Short.toUnsignedInt(buffer.getShort());
+        for (int i = 0; i < attributesCount; i++) {
+            // attribute_name_index
+            skip(buffer, 2);
+            skip(buffer, attributeLength(buffer));
+        }
+    }
+
+    /**
+     * 读取属性长度，超出剩余字节时抛出 BufferUnderflowException
+     */
+    private static int attributeLength(ByteBuffer buffer) {
+        long length = Integer.toUnsignedLong(buffer.getInt());
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return (int) length;
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        // 越界时 position 抛出 IllegalArgumentException
+        buffer.position(buffer.position() + length);
+    }
+}
@@ -0,0 +1,526 @@
+package com.decompiler.util;
+
+import com.decompiler.model.DecompileJob;
+import org.jetbrains.java.decompiler.main.extern.IContextSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 输入中所有类的类路径索引：类的内部名称 -> class字节所在的位置（归档中的条目或单独的class文件）
+ * 作为 Vineflower 的库输入加入每一个反编译上下文，反编译时可以解析父类、接口和泛型签名，按需读取，不会整体加载
+ *
+ * 索引保存在磁盘上，按名称排序的定长记录加字符串区，打开时整体内存映射、二分查找，不需要反序列化；
+ * 多个工作进程映射同一个文件时共享操作系统的页缓存。再次运行时大小和修改时间都没有变化的输入直接沿用上次的记录，
+ * 全部没有变化时直接使用上次的索引文件
+ *
+ * 归档中的类名按条目路径确定（去掉 BOOT-INF/classes/、WEB-INF/classes/ 前缀，跳过 META-INF 下的条目），
+ * 嵌套归档中的类一并索引；单独的class文件不知道包的根目录，从常量池中读取类名。同名的类保留路径排在前面的输入中的那个
+ */
+public class ClasspathIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ClasspathIndex.class);
+
+    private static final int MAGIC = 0x4A435001;
+    // 名称偏移、名称长度、输入编号、条目偏移、条目长度
+    private static final int RECORD_SIZE = 20;
+    // 条目名称就是类名加 .class
+    private static final int ENTRY_SAME_AS_NAME = -1;
+    // 输入本身就是这个class文件
+    private static final int ENTRY_IS_SOURCE = -2;
+    private static final String[] CLASS_ROOTS = {"BOOT-INF/classes/", "WEB-INF/classes/"};
+
+    private final List<SourceFile> sources;
+    private final File[] sourceFiles;
+    private final ByteBuffer buffer;
+    private final int recordsOffset;
+    private final int stringsOffset;
+    private final int classCount;
+    private final ArchiveReader archiveReader;
+    private final IContextSource library = new LibrarySource();
+
+    private ClasspathIndex(List<SourceFile> sources, ByteBuffer buffer, int recordsOffset, int classCount,
+                           ArchiveReader archiveReader) {
+        this.sources = sources;
+        this.sourceFiles = sources.stream().map(source -> new File(source.path)).toArray(File[]::new);
+        this.buffer = buffer;
+        this.recordsOffset = recordsOffset;
+        this.stringsOffset = recordsOffset + classCount * RECORD_SIZE;
+        this.classCount = classCount;
+        this.archiveReader = archiveReader;
+    }
+
+    /**
+     * 打开已有的索引文件，不检查输入是否变化；文件不存在或格式错误时返回 null
+     * 用于工作进程等只需要读取主进程已经建好的索引的场合
+     */
+    public static ClasspathIndex open(File indexFile, ArchiveReader archiveReader) {
+        Path path = indexFile.toPath();
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 12 || size > Integer.MAX_VALUE) {
+                throw new IOException("索引文件大小错误");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("索引格式错误");
+            }
+            int classCount = buffer.getInt(4);
+            int sourcesLength = buffer.getInt(8);
+            int recordsOffset = 12 + sourcesLength;
+            if (classCount < 0 || sourcesLength < 0
+                    || (long) recordsOffset + (long) classCount * RECORD_SIZE > size) {
+                throw new IOException("索引格式错误");
+            }
+
+            byte[] sourceBytes = new byte[sourcesLength];
+            buffer.get(12, sourceBytes);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(sourceBytes));
+            int sourceCount = in.readInt();
+            List<SourceFile> sources = new ArrayList<>(sourceCount);
+            for (int i = 0; i < sourceCount; i++) {
+                sources.add(new SourceFile(in.readUTF(), in.readLong(), in.readLong()));
+            }
+            return new ClasspathIndex(sources, buffer, recordsOffset, classCount, archiveReader);
+        } catch (IOException e) {
+            logger.warn("读取类路径索引失败: {} - {}", indexFile.getAbsolutePath(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 打开索引并按当前的输入更新：只重新扫描新增或有变化的归档和class文件，输入全部没有变化时不重写索引文件
+     *
+     * @param input 输入的目录、JAR或class文件
+     */
+    public static ClasspathIndex update(File indexFile, File input, ArchiveReader archiveReader) throws IOException {
+        List<SourceFile> current = listSources(input);
+        ClasspathIndex previous = open(indexFile, archiveReader);
+        if (previous != null && previous.sources.equals(current)) {
+            logger.info("类路径索引没有变化: {} 个类，来自 {} 个输入", previous.classCount, current.size());
+            return previous;
+        }
+
+        Map<SourceFile, List<String[]>> reused = previous == null ? Map.of() : previous.recordsBySource(current);
+        List<List<String[]>> classes = current.parallelStream()
+                .map(source -> {
+                    List<String[]> records = reused.get(source);
+                    return records != null ? records : scan(source);
+                })
+                .collect(Collectors.toList());
+
+        write(indexFile, current, classes);
+        ClasspathIndex index = open(indexFile, archiveReader);
+        if (index == null) {
+            throw new IOException("无法打开刚写出的类路径索引: " + indexFile.getAbsolutePath());
+        }
+        logger.info("类路径索引: {} 个类，来自 {} 个输入，其中 {} 个输入沿用上次的记录",
+                index.classCount, current.size(), reused.size());
+        return index;
+    }
+
+    /**
+     * 作为 Vineflower 库输入的上下文源，按需查找和读取类，可以由多个反编译上下文同时使用
+     */
+    public IContextSource asLibrary() {
+        return library;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * 读取类的字节，索引中没有该类时返回 null
+     *
+     * @param internalName 内部名称，如 com/example/Foo
+     */
+    public byte[] readClass(String internalName) throws IOException {
+        int index = find(internalName);
+        if (index < 0) {
+            return null;
+        }
+
+        int record = recordsOffset + index * RECORD_SIZE;
+        File source = sourceFiles[buffer.getInt(record + 8)];
+        int entryOffset = buffer.getInt(record + 12);
+        if (entryOffset == ENTRY_IS_SOURCE) {
+            return Files.readAllBytes(source.toPath());
+        }
+        String entryName = entryOffset == ENTRY_SAME_AS_NAME
+                ? internalName + ".class"
+                : string(entryOffset, buffer.getInt(record + 16));
+        return archiveReader.readEntry(source, entryName);
+    }
+
+    /**
+     * 在按名称的 UTF-8 字节排序的记录中二分查找，找不到时返回 -1
+     */
+    private int find(String internalName) {
+        byte[] key = internalName.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = classCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareName(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareName(int index, byte[] key) {
+        int record = recordsOffset + index * RECORD_SIZE;
+        int offset = stringsOffset + buffer.getInt(record);
+        int length = buffer.getInt(record + 4);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.toUnsignedInt(buffer.get(offset + i)) - Byte.toUnsignedInt(key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private String string(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(stringsOffset + offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 取出在当前输入中仍然没有变化的输入的记录，每条记录为 {类名, 条目名称}，条目名称为 null 表示输入本身就是class文件
+     */
+    private Map<SourceFile, List<String[]>> recordsBySource(List<SourceFile> current) {
+        Set<SourceFile> unchanged = new HashSet<>(current);
+        Map<Integer, List<String[]>> byId = new HashMap<>();
+        for (int i = 0; i < sources.size(); i++) {
+            if (unchanged.contains(sources.get(i))) {
+                byId.put(i, new ArrayList<>());
+            }
+        }
+
+        for (int i = 0; i < classCount; i++) {
+            int record = recordsOffset + i * RECORD_SIZE;
+            List<String[]> records = byId.get(buffer.getInt(record + 8));
+            if (records == null) {
+                continue;
+            }
+            String name = string(buffer.getInt(record), buffer.getInt(record + 4));
+            int entryOffset = buffer.getInt(record + 12);
+            String entryName = entryOffset == ENTRY_IS_SOURCE ? null
+                    : entryOffset == ENTRY_SAME_AS_NAME ? name + ".class"
+                    : string(entryOffset, buffer.getInt(record + 16));
+            records.add(new String[]{name, entryName});
+        }
+
+        Map<SourceFile, List<String[]>> result = new HashMap<>();
+        byId.forEach((id, records) -> result.put(sources.get(id), records));
+        return result;
+    }
+
+    /**
+     * 列出输入中的所有归档和class文件，按路径排序
+     */
+    private static List<SourceFile> listSources(File input) throws IOException {
+        List<Path> paths;
+        if (input.isDirectory()) {
+            try (Stream<Path> walk = Files.walk(input.toPath())) {
+                paths = walk.filter(Files::isRegularFile)
+                        .filter(path -> {
+                            String name = path.getFileName().toString();
+                            return JarUtils.isArchiveName(name) || name.toLowerCase().endsWith(".class");
+                        })
+                        .collect(Collectors.toList());
+            }
+        } else {
+            paths = List.of(input.toPath());
+        }
+
+        List<SourceFile> sources = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            sources.add(new SourceFile(path.toAbsolutePath().normalize().toString(),
+                    attrs.size(), attrs.lastModifiedTime().toMillis()));
+        }
+        sources.sort(Comparator.comparing(source -> source.path));
+        return sources;
+    }
+
+    /**
+     * 扫描一个输入中的类，读取失败的输入视为没有类
+     */
+    private static List<String[]> scan(SourceFile source) {
+        List<String[]> classes = new ArrayList<>();
+        File file = new File(source.path);
+        try {
+            if (JarUtils.isArchiveName(file.getName())) {
+                scanArchive(file, classes);
+            } else {
+                String name = ClassFileScanner.readClassName(Files.readAllBytes(file.toPath()));
+                if (name != null) {
+                    classes.add(new String[]{name, null});
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("建立类路径索引时读取失败: {} - {}", source.path, e.getMessage());
+        }
+        return classes;
+    }
+
+    private static void scanArchive(File file, List<String[]> classes) throws IOException {
+        try (ZipFile zipFile = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String name = entry.getName();
+                if (JarUtils.isArchiveName(name)) {
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        scanNested(name, in.readAllBytes(), 1, classes);
+                    }
+                } else {
+                    addClass(name, name, classes);
+                }
+            }
+        }
+    }
+
+    private static void scanNested(String nestedPath, byte[] archiveBytes, int depth, List<String[]> classes)
+            throws IOException {
+        ZipIndex index = ZipIndex.parse(ByteBuffer.wrap(archiveBytes));
+        if (index == null) {
+            return;
+        }
+        for (ZipIndex.Entry entry : index.entries()) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            String entryPath = nestedPath + DecompileJob.NESTED_SEPARATOR + entry.name;
+            if (JarUtils.isArchiveName(entry.name)) {
+                if (depth < FileUtil.MAX_NESTING_DEPTH) {
+                    scanNested(entryPath, index.read(entry), depth + 1, classes);
+                }
+            } else {
+                addClass(entry.name, entryPath, classes);
+            }
+        }
+    }
+
+    /**
+     * 按条目路径确定类名，不是class或者不属于类路径的条目跳过
+     */
+    private static void addClass(String name, String entryPath, List<String[]> classes) {
+        if (!name.toLowerCase().endsWith(".class") || name.startsWith("META-INF/")) {
+            return;
+        }
+        for (String root : CLASS_ROOTS) {
+            if (name.startsWith(root)) {
+                name = name.substring(root.length());
+                break;
+            }
+        }
+        String className = name.substring(0, name.length() - 6);
+        if (className.endsWith("module-info") || className.endsWith("package-info")) {
+            return;
+        }
+        classes.add(new String[]{className, entryPath});
+    }
+
+    /**
+     * 写出索引文件：先写到临时文件再原子替换，正在映射旧文件的进程不受影响
+     */
+    private static void write(File indexFile, List<SourceFile> sources, List<List<String[]>> classes)
+            throws IOException {
+        // 同名的类只保留路径排在前面的输入中的那个
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            for (String[] entry : classes.get(i)) {
+                records.add(new Record(entry[0].getBytes(StandardCharsets.UTF_8), i, entry[1]));
+            }
+        }
+        records.sort((a, b) -> {
+            int cmp = Arrays.compareUnsigned(a.name, b.name);
+            return cmp != 0 ? cmp : Integer.compare(a.sourceId, b.sourceId);
+        });
+
+        ByteArrayOutputStream sourceBytes = new ByteArrayOutputStream();
+        DataOutputStream sourceOut = new DataOutputStream(sourceBytes);
+        sourceOut.writeInt(sources.size());
+        for (SourceFile source : sources) {
+            sourceOut.writeUTF(source.path);
+            sourceOut.writeLong(source.size);
+            sourceOut.writeLong(source.modified);
+        }
+
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(recordBytes);
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        int classCount = 0;
+        Record last = null;
+        for (Record record : records) {
+            if (last != null && Arrays.equals(last.name, record.name)) {
+                continue;
+            }
+            last = record;
+            classCount++;
+
+            recordOut.writeInt(strings.size());
+            recordOut.writeInt(record.name.length);
+            strings.write(record.name);
+            recordOut.writeInt(record.sourceId);
+            String name = new String(record.name, StandardCharsets.UTF_8);
+            if (record.entryName == null) {
+                recordOut.writeInt(ENTRY_IS_SOURCE);
+                recordOut.writeInt(0);
+            } else if (record.entryName.equals(name + ".class")) {
+                recordOut.writeInt(ENTRY_SAME_AS_NAME);
+                recordOut.writeInt(0);
+            } else {
+                byte[] entryName = record.entryName.getBytes(StandardCharsets.UTF_8);
+                recordOut.writeInt(strings.size());
+                recordOut.writeInt(entryName.length);
+                strings.write(entryName);
+            }
+        }
+
+        Path target = indexFile.toPath().toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path tempFile = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(classCount);
+                out.writeInt(sourceBytes.size());
+                sourceBytes.writeTo(out);
+                recordBytes.writeTo(out);
+                strings.writeTo(out);
+            }
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * 索引中记录的一个输入，大小和修改时间用于判断输入是否变化
+     */
+    private static class SourceFile {
+        final String path;
+        final long size;
+        final long modified;
+
+        SourceFile(String path, long size, long modified) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SourceFile)) {
+                return false;
+            }
+            SourceFile other = (SourceFile) o;
+            return path.equals(other.path) && size == other.size && modified == other.modified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, modified);
+        }
+    }
+
+    private static class Record {
+        final byte[] name;
+        final int sourceId;
+        final String entryName;
+
+        Record(byte[] name, int sourceId, String entryName) {
+            this.name = name;
+            this.sourceId = sourceId;
+            this.entryName = entryName;
+        }
+    }
+
+    /**
+     * 按需读取的库输入：Vineflower 通过 hasClass 和 getClassBytes 查找引用到的类，不枚举条目
+     */
+    private class LibrarySource implements IContextSource {
+        @Override
+        public String getName() {
+            return "classpath index";
+        }
+
+        @Override
+        public Entries getEntries() {
+            return Entries.EMPTY;
+        }
+
+        @Override
+        public boolean isLazy() {
+            return true;
+        }
+
+        @Override
+        public boolean hasClass(String className) {
+            return find(className) >= 0;
+        }
+
+        @Override
+        public byte[] getClassBytes(String className) throws IOException {
+            return readClass(className);
+        }
+
+        @Override
+        public InputStream getInputStream(String resource) throws IOException {
+            if (!resource.endsWith(CLASS_SUFFIX)) {
+                return null;
+            }
+            byte[] bytes = readClass(resource.substring(0, resource.length() - CLASS_SUFFIX.length()));
+            return bytes == null ? null : new ByteArrayInputStream(bytes);
+        }
+    }
+}
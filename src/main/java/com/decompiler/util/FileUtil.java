@@ -1,5 +1,9 @@
 package com.decompiler.util;
 
+import com.decompiler.cache.OutputManifest;
+import com.decompiler.config.ClassFilter;
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.metrics.DecompileMetrics;
 import com.decompiler.model.DecompileJob;
 import com.decompiler.task.TaskManager;
 import org.apache.commons.io.FileUtils;
@@ -10,29 +14,55 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 public class FileUtil {
     private static final Logger logger = LoggerFactory.getLogger(FileUtil.class);
 
+    // 嵌套归档最多展开的层数，如 EAR 中的 WAR 中的 JAR 为 2 层
+    static final int MAX_NESTING_DEPTH = 3;
+
     /**
      * 处理输入目录，解压所有JAR文件并收集所有class文件
+     * 内存模式下不解压JAR也不复制class文件，任务直接从原始位置读取
+     */
+    public static List<DecompileJob> processDirectory(File directory, DecompilerConfig config, TaskManager taskManager) throws IOException {
+        return processDirectory(directory, config, taskManager, null, null);
+    }
+
+    /**
+     * 处理输入目录，增量清单中没有变化的class文件和JAR直接跳过，不复制也不解压；已知的第三方库也不解压，见 {@link LibraryIndex}
+     * 被类名过滤器排除的class文件和JAR条目在遍历目录和中央目录时就去掉，不读取也不解压
+     *
+     * @param manifest 增量清单，不使用增量反编译时为 null
+     * @param libraries 已知第三方库的索引，不使用时为 null
      */
-    public static List<DecompileJob> processDirectory(File directory, String outputPath, TaskManager taskManager) throws IOException {
+    public static List<DecompileJob> processDirectory(File directory, DecompilerConfig config, TaskManager taskManager,
+                                                      OutputManifest manifest, LibraryIndex libraries) throws IOException {
         if (!directory.exists()) {
             throw new FileNotFoundException("目录不存在: " + directory.getAbsolutePath());
         }
 
-        File outputDir = new File(outputPath);
+        File outputDir = new File(config.getOutputPath());
         FileUtils.forceMkdir(outputDir);
 
         logger.info("处理目录: {}", directory.getAbsolutePath());
         final List<DecompileJob> jobs = Collections.synchronizedList(new ArrayList<>());
+        ClassFilter filter = config.getClassFilter();
+        DecompileMetrics metrics = taskManager.getMetrics();
+        long walkStart = System.nanoTime();
 
         // 1. 找出所有JAR文件和class文件
         List<File> jarFiles = new ArrayList<>();
@@ -44,90 +74,205 @@ public class FileUtil {
                     String fileName = path.toString().toLowerCase();
                     File file = path.toFile();
 
-                    if (fileName.endsWith(".jar") || fileName.endsWith(".war") ||
-                            fileName.endsWith(".ear") || fileName.endsWith(".aar")) {
+                    if (JarUtils.isArchiveName(fileName)) {
                         jarFiles.add(file);
-                    } else if (fileName.endsWith(".class")) {
+                    } else if (fileName.endsWith(".class")
+                            && filter.accepts(directory.toPath().relativize(path).toString())) {
                         classFiles.add(file);
                     }
                 });
 
         logger.info("找到 {} 个JAR文件和 {} 个class文件", jarFiles.size(), classFiles.size());
+        if (manifest != null) {
+            jarFiles.removeIf(file -> !needsDecompile(manifest, file));
+            classFiles.removeIf(file -> !needsDecompile(manifest, file));
+            logger.info("其中 {} 个JAR文件和 {} 个class文件有变化", jarFiles.size(), classFiles.size());
+        }
+        if (libraries != null) {
+            jarFiles.removeIf(file -> isKnownLibrary(libraries, file, getExtractDir(file, config)));
+        }
+
+        if (config.isInMemory()) {
+            for (File classFile : classFiles) {
+                jobs.add(register(manifest, classFile, createClassFileJob(directory, classFile, config)));
+            }
+            metrics.addPhaseTime(DecompileMetrics.Phase.WALK, System.nanoTime() - walkStart);
+
+            // 在I/O执行器中并行读取各个JAR的中央目录，再按JAR的顺序登记任务
+            long extractStart = System.nanoTime();
+            List<Callable<List<DecompileJob>>> readTasks = new ArrayList<>();
+            for (File jarFile : jarFiles) {
+                readTasks.add(() -> {
+                    try {
+                        return collectArchiveJobs(jarFile, getExtractDir(jarFile, config), filter, libraries);
+                    } catch (IOException e) {
+                        logger.error("读取JAR文件失败: {}", jarFile.getName(), e);
+                        return null;
+                    }
+                });
+            }
+            List<List<DecompileJob>> archiveJobs = taskManager.executeParallel(readTasks);
+            for (int i = 0; i < jarFiles.size(); i++) {
+                registerAll(manifest, jarFiles.get(i), archiveJobs.get(i), jobs);
+            }
+            metrics.addPhaseTime(DecompileMetrics.Phase.EXTRACT, System.nanoTime() - extractStart);
+
+            logger.info("总共找到 {} 个待反编译的class文件", jobs.size());
+            return jobs;
+        }
 
-        // 2. 使用TaskManager并行解压所有JAR文件
-        final List<File> extractedDirs = Collections.synchronizedList(new ArrayList<>());
-        // 创建JAR提取任务列表
-        List<Callable<Void>> extractionTasks = new ArrayList<>();
+        metrics.addPhaseTime(DecompileMetrics.Phase.WALK, System.nanoTime() - walkStart);
+
+        // 2. 在I/O执行器中并行解压所有JAR文件，每个任务返回解压出的class文件和嵌套归档中的class条目
+        List<Callable<List<DecompileJob>>> extractionTasks = new ArrayList<>();
         for (File jarFile : jarFiles) {
-            String jarName = jarFile.getName();
-            String dirName = FilenameUtils.getBaseName(jarName);
-            File extractDir = new File(outputDir, dirName);
+            File extractDir = getExtractDir(jarFile, config);
 
             extractionTasks.add(() -> {
+                long extractStart = System.nanoTime();
                 try {
-                    JarUtils.extractJar(jarFile, extractDir);
-                    extractedDirs.add(extractDir);
-                    return null;
+                    JarUtils.extractJar(jarFile, extractDir, null, filter);
+                    List<DecompileJob> jarJobs = new ArrayList<>();
+                    try (Stream<Path> paths = Files.walk(extractDir.toPath())) {
+                        paths.filter(path -> path.toString().toLowerCase().endsWith(".class"))
+                                .forEach(path -> jarJobs.add(
+                                        new DecompileJob(path.toFile(), path.getParent().toString(), null, jarFile)));
+                    }
+                    logger.info("从 {} 中提取了 {} 个class文件", extractDir.getName(), jarJobs.size());
+                    // JAR中嵌套归档里的class条目，不解压，直接从归档中读取
+                    jarJobs.addAll(collectNestedArchiveJobs(jarFile, extractDir, filter, libraries));
+                    return jarJobs;
                 } catch (Exception e) {
                     logger.error("解压JAR文件失败: {}", jarFile.getName(), e);
                     return null;
+                } finally {
+                    metrics.addPhaseTime(DecompileMetrics.Phase.EXTRACT, System.nanoTime() - extractStart);
                 }
             });
         }
+        List<List<DecompileJob>> extractedJobs = taskManager.executeParallel(extractionTasks);
 
-        // 并行执行所有JAR提取任务
-        if (!extractionTasks.isEmpty()) {
-            taskManager.executeParallel(extractionTasks);
+        // 3. 并行把原始class文件复制到输出目录
+        walkStart = System.nanoTime();
+        List<Callable<DecompileJob>> copyTasks = new ArrayList<>();
+        for (File classFile : classFiles) {
+            copyTasks.add(() -> {
+                try {
+                    return createClassFileJob(directory, classFile, config);
+                } catch (IOException e) {
+                    logger.error("复制class文件失败: {}", classFile.getPath(), e);
+                    return null;
+                }
+            });
         }
+        List<DecompileJob> copiedJobs = taskManager.executeParallel(copyTasks);
 
-        // 3. 收集所有class文件
-        // 处理原始class文件
-        for (File classFile : classFiles) {
-            Path relativePath = directory.toPath().relativize(classFile.toPath().getParent());
-            File targetDir = new File(outputDir, relativePath.toString());
-            FileUtils.forceMkdir(targetDir);
+        // 4. 按输入的顺序登记任务
+        for (int i = 0; i < classFiles.size(); i++) {
+            if (copiedJobs.get(i) != null) {
+                jobs.add(register(manifest, classFiles.get(i), copiedJobs.get(i)));
+            }
+        }
+        for (int i = 0; i < jarFiles.size(); i++) {
+            registerAll(manifest, jarFiles.get(i), extractedJobs.get(i), jobs);
+        }
+        metrics.addPhaseTime(DecompileMetrics.Phase.WALK, System.nanoTime() - walkStart);
 
-            File targetFile = new File(targetDir, classFile.getName());
-            FileUtils.copyFile(classFile, targetFile);
+        logger.info("总共找到 {} 个待反编译的class文件", jobs.size());
+        return jobs;
+    }
 
-            jobs.add(new DecompileJob(targetFile, targetDir.getAbsolutePath(), null));
+    /**
+     * 检查输入相对增量清单是否有变化，不使用增量反编译或检查失败时都按有变化处理
+     */
+    public static boolean needsDecompile(OutputManifest manifest, File input) {
+        if (manifest == null) {
+            return true;
         }
-        // 处理从JAR中解压出来的class文件
-        for (File extractDir : extractedDirs) {
-            List<File> jarClassFiles = new ArrayList<>();
-            Files.walk(extractDir.toPath())
-                    .filter(path -> path.toString().toLowerCase().endsWith(".class"))
-                    .forEach(path -> jarClassFiles.add(path.toFile()));
-
-            logger.info("从 {} 中提取了 {} 个class文件", extractDir.getName(), jarClassFiles.size());
+        try {
+            return manifest.needsDecompile(input);
+        } catch (IOException e) {
+            logger.warn("检查输入是否变化失败: {} - {}", input.getAbsolutePath(), e.getMessage());
+            return true;
+        }
+    }
 
-            for (File classFile : jarClassFiles) {
-                String outputDirPath = classFile.getParent();
-                jobs.add(new DecompileJob(classFile, outputDirPath, null));
+    /**
+     * 检查JAR是否是已知的第三方库，是则跳过或者输出源码JAR中的源码，返回 true 表示不需要反编译
+     * 读取失败时按未知的库处理
+     */
+    public static boolean isKnownLibrary(LibraryIndex libraries, File jarFile, File extractDir) {
+        if (libraries == null) {
+            return false;
+        }
+        try {
+            LibraryIndex.Match match = libraries.match(jarFile);
+            if (match == null) {
+                return false;
             }
+            libraries.apply(jarFile, jarFile.getName(), match, extractDir);
+            return true;
+        } catch (IOException e) {
+            logger.warn("识别第三方库失败: {} - {}", jarFile.getName(), e.getMessage());
+            return false;
         }
+    }
 
-        logger.info("总共找到 {} 个待反编译的class文件", jobs.size());
-        return jobs;
+    /**
+     * 在增量清单中登记输入产生的任务，返回任务本身
+     */
+    public static DecompileJob register(OutputManifest manifest, File input, DecompileJob job) {
+        if (manifest != null) {
+            manifest.addJob(input, job);
+        }
+        return job;
+    }
+
+    /**
+     * 把一个输入产生的任务加入 jobs 并登记到增量清单，处理失败的输入为 null
+     */
+    private static void registerAll(OutputManifest manifest, File input, List<DecompileJob> inputJobs,
+                                    List<DecompileJob> jobs) {
+        if (inputJobs == null) {
+            return;
+        }
+        for (DecompileJob job : inputJobs) {
+            jobs.add(register(manifest, input, job));
+        }
     }
 
     /**
      * 处理单个JAR文件
      */
-    public static List<DecompileJob> processJarFile(File jarFile, String outputPath) throws IOException {
+    public static List<DecompileJob> processJarFile(File jarFile, DecompilerConfig config) throws IOException {
+        return processJarFile(jarFile, config, null);
+    }
+
+    /**
+     * 处理单个JAR文件，已知的第三方库不解压也不生成任务
+     *
+     * @param libraries 已知第三方库的索引，不使用时为 null
+     */
+    public static List<DecompileJob> processJarFile(File jarFile, DecompilerConfig config, LibraryIndex libraries)
+            throws IOException {
         if (!jarFile.exists()) {
             throw new FileNotFoundException("文件不存在: " + jarFile.getAbsolutePath());
         }
 
-        File outputDir = new File(outputPath);
+        File outputDir = new File(config.getOutputPath());
         FileUtils.forceMkdir(outputDir);
 
         // 解压JAR文件到输出目录
-        String jarName = jarFile.getName();
-        String dirName = FilenameUtils.getBaseName(jarName);
-        File extractDir = new File(outputDir, dirName);
+        File extractDir = getExtractDir(jarFile, config);
+        if (isKnownLibrary(libraries, jarFile, extractDir)) {
+            return new ArrayList<>();
+        }
 
-        JarUtils.extractJar(jarFile, extractDir);
+        if (config.isInMemory()) {
+            return collectArchiveJobs(jarFile, extractDir, config.getClassFilter(), libraries);
+        }
+
+        JarUtils.extractJar(jarFile, extractDir, null, config.getClassFilter());
 
         // 收集所有class文件
         List<DecompileJob> jobs = new ArrayList<>();
@@ -141,8 +286,9 @@ public class FileUtil {
 
         for (File classFile : classFiles) {
             String outputDirPath = classFile.getParent();
-            jobs.add(new DecompileJob(classFile, outputDirPath, null));
+            jobs.add(new DecompileJob(classFile, outputDirPath, null, jarFile));
         }
+        jobs.addAll(collectNestedArchiveJobs(jarFile, extractDir, config.getClassFilter(), libraries));
 
         return jobs;
     }
@@ -150,22 +296,179 @@ public class FileUtil {
     /**
      * 处理单个class文件
      */
-    public static List<DecompileJob> processClassFile(File classFile, String outputPath) throws IOException {
+    public static List<DecompileJob> processClassFile(File classFile, DecompilerConfig config) throws IOException {
         if (!classFile.exists()) {
             throw new FileNotFoundException("文件不存在: " + classFile.getAbsolutePath());
         }
 
-        File outputDir = new File(outputPath);
+        File outputDir = new File(config.getOutputPath());
         FileUtils.forceMkdir(outputDir);
 
+        List<DecompileJob> jobs = new ArrayList<>();
+        if (config.isInMemory()) {
+            jobs.add(new DecompileJob(classFile, outputDir.getAbsolutePath(), null));
+            return jobs;
+        }
+
         // 复制class文件到输出目录
         File targetFile = new File(outputDir, classFile.getName());
         FileUtils.copyFile(classFile, targetFile);
 
         // 创建反编译任务
-        List<DecompileJob> jobs = new ArrayList<>();
         jobs.add(new DecompileJob(targetFile, outputDir.getAbsolutePath(), null));
 
         return jobs;
     }
-}
\ No newline at end of file
+
+    /**
+     * 为输入目录中的一个class文件创建任务，输出目录按相对路径对应到输出目录下
+     * 非内存模式下先把class文件复制到对应的输出目录
+     */
+    public static DecompileJob createClassFileJob(File directory, File classFile, DecompilerConfig config) throws IOException {
+        Path relativePath = directory.toPath().relativize(classFile.toPath().getParent());
+        File targetDir = new File(config.getOutputPath(), relativePath.toString());
+
+        if (config.isInMemory()) {
+            return new DecompileJob(classFile, targetDir.getAbsolutePath(), null);
+        }
+
+        FileUtils.forceMkdir(targetDir);
+        File targetFile = new File(targetDir, classFile.getName());
+        FileUtils.copyFile(classFile, targetFile);
+
+        return new DecompileJob(targetFile, targetDir.getAbsolutePath(), null);
+    }
+
+    /**
+     * JAR文件在输出目录下对应的解压目录
+     */
+    public static File getExtractDir(File jarFile, DecompilerConfig config) {
+        return new File(config.getOutputPath(), FilenameUtils.getBaseName(jarFile.getName()));
+    }
+
+    /**
+     * 为JAR中的每个class条目创建直接读取归档的任务，输出目录与解压模式下的位置保持一致
+     * 嵌套归档中的class条目一并收集，见 {@link #collectNestedArchiveJobs}
+     */
+    public static List<DecompileJob> collectArchiveJobs(File jarFile, File extractDir) throws IOException {
+        return collectArchiveJobs(jarFile, extractDir, ClassFilter.ACCEPT_ALL, null);
+    }
+
+    /**
+     * 为JAR中被过滤器接受的class条目创建任务，嵌套归档中已知的第三方库不生成任务
+     *
+     * @param libraries 已知第三方库的索引，不使用时为 null
+     */
+    public static List<DecompileJob> collectArchiveJobs(File jarFile, File extractDir, ClassFilter filter,
+                                                        LibraryIndex libraries) throws IOException {
+        List<DecompileJob> jobs = new ArrayList<>();
+
+        for (ZipEntry entry : JarUtils.listClassEntries(jarFile, filter)) {
+            jobs.add(new DecompileJob(jarFile, entry.getName(), entry.getSize(),
+                    getEntryTargetDir(extractDir, entry.getName()).getAbsolutePath(), null));
+        }
+
+        logger.info("从 {} 中找到 {} 个class条目", jarFile.getName(), jobs.size());
+        jobs.addAll(collectNestedArchiveJobs(jarFile, extractDir, filter, libraries));
+        return jobs;
+    }
+
+    /**
+     * 为JAR中嵌套的归档（如 WEB-INF/lib/*.jar、BOOT-INF/lib/*.jar、EAR 中的模块）中的class条目创建任务
+     * 嵌套归档在内存中读取，不写出到磁盘；输出保留嵌套路径，如 WEB-INF/lib/foo.jar 中的类输出到解压目录下的 WEB-INF/lib/foo/
+     * 多个嵌套归档并行读取，每个嵌套归档按JAR分组时各自成组；已知的第三方库跳过或者输出源码JAR中的源码
+     * 类名过滤器按条目在嵌套归档中的路径匹配
+     *
+     * @param libraries 已知第三方库的索引，不使用时为 null
+     */
+    public static List<DecompileJob> collectNestedArchiveJobs(File jarFile, File extractDir, ClassFilter filter,
+                                                              LibraryIndex libraries) throws IOException {
+        try (ZipFile zipFile = new ZipFile(jarFile)) {
+            List<ZipEntry> nestedEntries = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && JarUtils.isArchiveName(entry.getName())) {
+                    nestedEntries.add(entry);
+                }
+            }
+            if (nestedEntries.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            List<DecompileJob> jobs = nestedEntries.parallelStream()
+                    .flatMap(entry -> {
+                        List<DecompileJob> nestedJobs = new ArrayList<>();
+                        try (InputStream in = zipFile.getInputStream(entry)) {
+                            collectNestedJobs(jarFile, entry.getName(), in.readAllBytes(),
+                                    getNestedExtractDir(extractDir, entry.getName()), 1, filter, libraries, nestedJobs);
+                        } catch (IOException e) {
+                            logger.warn("读取嵌套归档失败: {}!/{} - {}", jarFile.getName(), entry.getName(), e.getMessage());
+                        }
+                        return nestedJobs.stream();
+                    })
+                    .collect(Collectors.toList());
+
+            logger.info("从 {} 的 {} 个嵌套归档中找到 {} 个class条目", jarFile.getName(), nestedEntries.size(), jobs.size());
+            return jobs;
+        }
+    }
+
+    /**
+     * 收集一个嵌套归档中的class条目，其中再嵌套的归档在层数限制内递归处理
+     *
+     * @param nestedPath 嵌套归档在最外层归档中的路径，多层时用 !/ 连接
+     */
+    private static void collectNestedJobs(File jarFile, String nestedPath, byte[] archiveBytes, File extractDir,
+                                          int depth, ClassFilter filter, LibraryIndex libraries,
+                                          List<DecompileJob> jobs) throws IOException {
+        ZipIndex index = ZipIndex.parse(ByteBuffer.wrap(archiveBytes));
+        if (index == null) {
+            logger.warn("不支持的嵌套归档格式，跳过: {}!/{}", jarFile.getName(), nestedPath);
+            return;
+        }
+        if (libraries != null) {
+            LibraryIndex.Match match = libraries.match(index);
+            if (match != null) {
+                libraries.apply(jarFile, jarFile.getName() + DecompileJob.NESTED_SEPARATOR + nestedPath, match, extractDir);
+                return;
+            }
+        }
+
+        for (ZipIndex.Entry entry : index.entries()) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            String name = entry.name;
+            if (name.toLowerCase().endsWith(".class")) {
+                if (!filter.accepts(name)) {
+                    continue;
+                }
+                jobs.add(new DecompileJob(jarFile, nestedPath + DecompileJob.NESTED_SEPARATOR + name, entry.size,
+                        getEntryTargetDir(extractDir, name).getAbsolutePath(), null));
+            } else if (JarUtils.isArchiveName(name)) {
+                if (depth >= MAX_NESTING_DEPTH) {
+                    logger.warn("嵌套层数过多，跳过: {}!/{}!/{}", jarFile.getName(), nestedPath, name);
+                    continue;
+                }
+                collectNestedJobs(jarFile, nestedPath + DecompileJob.NESTED_SEPARATOR + name, index.read(entry),
+                        getNestedExtractDir(extractDir, name), depth + 1, filter, libraries, jobs);
+            }
+        }
+    }
+
+    /**
+     * 归档条目的输出目录，即条目所在的目录在解压目录下对应的位置
+     */
+    private static File getEntryTargetDir(File extractDir, String entryName) {
+        int lastSlashIndex = entryName.lastIndexOf('/');
+        return lastSlashIndex < 0 ? extractDir : new File(extractDir, entryName.substring(0, lastSlashIndex));
+    }
+
+    /**
+     * 嵌套归档的输出目录，与外层解压目录的命名方式一致，去掉扩展名
+     */
+    private static File getNestedExtractDir(File extractDir, String entryName) {
+        return new File(getEntryTargetDir(extractDir, entryName), FilenameUtils.getBaseName(entryName));
+    }
+}
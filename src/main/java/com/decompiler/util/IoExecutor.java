@@ -0,0 +1,113 @@
+package com.decompiler.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 执行阻塞I/O的任务，如解压JAR、复制class文件、读取中央目录和写出源码，与反编译的线程池分开，
+ * 反编译线程不会被慢速或网络文件系统拖住，I/O任务也不占用反编译线程
+ *
+ * JDK 21 及以上每个任务使用一个虚拟线程，同时执行的任务数由信号量限制；
+ * 更早的 JDK 使用同样数量的平台线程，空闲一段时间后退出。运行时判断，同一份构建产物在两种 JDK 上都可以使用
+ */
+public class IoExecutor implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(IoExecutor.class);
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final boolean virtual;
+
+    /**
+     * @param maxConcurrency 同时执行的I/O任务数上限
+     */
+    public IoExecutor(int maxConcurrency) {
+        int concurrency = Math.max(maxConcurrency, 1);
+        ExecutorService virtualExecutor = newVirtualThreadExecutor();
+        this.virtual = virtualExecutor != null;
+        if (virtual) {
+            this.executor = virtualExecutor;
+            this.permits = new Semaphore(concurrency);
+        } else {
+            AtomicInteger threadId = new AtomicInteger(0);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(concurrency, concurrency,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "io-" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+            this.permits = null;
+        }
+    }
+
+    /**
+     * 提交一个I/O任务
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        if (permits == null) {
+            return executor.submit(task);
+        }
+        return executor.submit(() -> {
+            permits.acquire();
+            try {
+                return task.call();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * 是否使用虚拟线程
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * 不再接收新任务，等待已提交的任务结束
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 通过反射调用 JDK 21 的 Executors.newVirtualThreadPerTaskExecutor，不可用时返回 null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // 预览版本的 JDK 需要 --enable-preview 才能使用虚拟线程
+            logger.debug("无法创建虚拟线程，使用平台线程执行I/O任务", e);
+            return null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.decompiler.util;
 
+import com.decompiler.config.ClassFilter;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
@@ -8,9 +9,14 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 public class JarUtils {
     private static final Logger logger = LoggerFactory.getLogger(JarUtils.class);
@@ -19,6 +25,22 @@ public class JarUtils {
      * 解压JAR文件到指定目录
      */
     public static void extractJar(File jarFile, File outputDir) throws IOException {
+        extractJar(jarFile, outputDir, null);
+    }
+
+    /**
+     * 解压JAR文件到指定目录，每解压出一个class文件就通知一次监听器，调用方可以边解压边处理
+     * 条目由多个线程同时解压，监听器可能在不同的线程中被调用，但不会被同时调用
+     */
+    public static void extractJar(File jarFile, File outputDir, Consumer<File> classFileListener) throws IOException {
+        extractJar(jarFile, outputDir, classFileListener, ClassFilter.ACCEPT_ALL);
+    }
+
+    /**
+     * 解压JAR文件到指定目录，被过滤器排除的class条目不解压，其他条目照常解压
+     */
+    public static void extractJar(File jarFile, File outputDir, Consumer<File> classFileListener, ClassFilter filter)
+            throws IOException {
         if (jarFile == null || !jarFile.exists() || jarFile.length() == 0) {
             logger.warn("JAR文件无效或为空: {}", jarFile != null ? jarFile.getName() : "null");
             return;
@@ -26,6 +48,26 @@ public class JarUtils {
 
         logger.info("解压JAR文件: {} 到 {}", jarFile.getName(), outputDir.getAbsolutePath());
 
+        try {
+            int extractedFiles = MappedJarExtractor.extract(jarFile, outputDir, classFileListener, filter);
+            if (extractedFiles >= 0) {
+                logger.info("从JAR文件 {} 解压了 {} 个文件", jarFile.getName(), extractedFiles);
+                return;
+            }
+        } catch (Exception e) {
+            logger.error("解压JAR文件失败: {}", jarFile.getName(), e);
+            throw new IOException("解压JAR文件失败: " + e.getMessage(), e);
+        }
+
+        logger.debug("{} 使用了ZIP64、加密或其他压缩方式，逐个解压", jarFile.getName());
+        extractSequentially(jarFile, outputDir, classFileListener, filter);
+    }
+
+    /**
+     * 通过 JarFile 逐个解压条目，用于 MappedJarExtractor 不支持的归档
+     */
+    private static void extractSequentially(File jarFile, File outputDir, Consumer<File> classFileListener,
+                                            ClassFilter filter) throws IOException {
         // 确保输出目录存在
         FileUtils.forceMkdir(outputDir);
 
@@ -36,6 +78,10 @@ public class JarUtils {
             while (entries.hasMoreElements()) {
                 JarEntry entry = entries.nextElement();
                 String entryName = entry.getName();
+                boolean isClass = entryName.toLowerCase().endsWith(".class");
+                if (isClass && !filter.accepts(entryName)) {
+                    continue;
+                }
                 File outFile = new File(outputDir, entryName);
 
                 if (entry.isDirectory()) {
@@ -49,6 +95,11 @@ public class JarUtils {
                         extractedFiles++;
                     } catch (IOException e) {
                         logger.warn("解压文件失败: {} - {}", entryName, e.getMessage());
+                        continue;
+                    }
+
+                    if (classFileListener != null && isClass) {
+                        classFileListener.accept(outFile);
                     }
                 }
             }
@@ -60,6 +111,33 @@ public class JarUtils {
         }
     }
 
+    /**
+     * 只读取JAR的中央目录，列出其中所有class条目，不解压任何内容
+     */
+    public static List<ZipEntry> listClassEntries(File jarFile) throws IOException {
+        return listClassEntries(jarFile, ClassFilter.ACCEPT_ALL);
+    }
+
+    /**
+     * 只读取JAR的中央目录，列出其中被过滤器接受的class条目
+     */
+    public static List<ZipEntry> listClassEntries(File jarFile, ClassFilter filter) throws IOException {
+        List<ZipEntry> classEntries = new ArrayList<>();
+
+        try (ZipFile zipFile = new ZipFile(jarFile)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().toLowerCase().endsWith(".class")
+                        && filter.accepts(entry.getName())) {
+                    classEntries.add(entry);
+                }
+            }
+        }
+
+        return classEntries;
+    }
+
     /**
      * 检查文件是否是JAR文件
      */
@@ -68,7 +146,14 @@ public class JarUtils {
             return false;
         }
 
-        String name = file.getName().toLowerCase();
+        return isArchiveName(file.getName());
+    }
+
+    /**
+     * 按扩展名判断是否是JAR/WAR/EAR/AAR文件
+     */
+    public static boolean isArchiveName(String fileName) {
+        String name = fileName.toLowerCase();
         return name.endsWith(".jar") || name.endsWith(".war") ||
                 name.endsWith(".ear") || name.endsWith(".aar");
     }
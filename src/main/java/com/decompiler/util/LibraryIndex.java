@@ -0,0 +1,340 @@
+package com.decompiler.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 已知第三方库的索引，匹配的归档不反编译：配置了源码目录且其中有对应的源码JAR时直接输出其中的源码，否则跳过
+ *
+ * 索引文件每行一条记录，格式为 {@code <指纹>[=源码JAR文件名]}，# 开头的行是注释。指纹有三种：
+ * <ul>
+ *     <li>{@code maven:groupId:artifactId:version}，取自 META-INF/maven 下唯一的 pom.properties，
+ *     没有写源码JAR文件名时按 artifactId-version-sources.jar 查找</li>
+ *     <li>{@code manifest:Implementation-Title:Implementation-Version}，取自 MANIFEST.MF</li>
+ *     <li>{@code classes:<sha256>}，按名称排序的所有class条目的名称和 CRC-32 的摘要，与打包时间和压缩方式无关</li>
+ * </ul>
+ * maven 和 manifest 指纹的版本可以写成 *，匹配该库的所有版本
+ */
+public class LibraryIndex {
+    private static final Logger logger = LoggerFactory.getLogger(LibraryIndex.class);
+
+    private static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+    private static final String MAVEN_PREFIX = "META-INF/maven/";
+    private static final String POM_PROPERTIES = "/pom.properties";
+    private static final String ANY_VERSION = "*";
+
+    // 指纹 -> 源码JAR文件名，没有指定时为空字符串
+    private final Map<String, String> entries;
+    private final boolean hasClassDigests;
+    private final File sourcesDir;
+    private final SourceArchiveWriter archiveWriter;
+    private final AtomicInteger skippedArchives = new AtomicInteger(0);
+    private final AtomicInteger servedArchives = new AtomicInteger(0);
+    private final AtomicInteger skippedClasses = new AtomicInteger(0);
+    // 最外层的输入 -> 为它输出的源码文件
+    private final Map<File, List<File>> servedFiles = new ConcurrentHashMap<>();
+
+    private LibraryIndex(Map<String, String> entries, File sourcesDir, SourceArchiveWriter archiveWriter) {
+        this.entries = entries;
+        this.hasClassDigests = entries.keySet().stream().anyMatch(key -> key.startsWith("classes:"));
+        this.sourcesDir = sourcesDir;
+        this.archiveWriter = archiveWriter;
+    }
+
+    /**
+     * 读取索引文件
+     *
+     * @param sourcesDir 源码JAR所在的目录，为 null 时匹配的归档全部跳过
+     */
+    public static LibraryIndex load(File indexFile, File sourcesDir) throws IOException {
+        return load(indexFile, sourcesDir, null);
+    }
+
+    /**
+     * 读取索引文件，源码JAR中的源码写入源码归档
+     *
+     * @param archiveWriter 写入源码归档，为 null 时输出到目录
+     */
+    public static LibraryIndex load(File indexFile, File sourcesDir, SourceArchiveWriter archiveWriter)
+            throws IOException {
+        Map<String, String> entries = new HashMap<>();
+        for (String line : Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            // Implementation-Title 中可能有空格，源码JAR文件名用最后一个 = 分隔
+            int separator = line.lastIndexOf('=');
+            if (separator < 0) {
+                entries.put(line, "");
+            } else {
+                entries.put(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+            }
+        }
+        logger.info("已知第三方库索引: {}，共 {} 条记录", indexFile.getAbsolutePath(), entries.size());
+        return new LibraryIndex(entries, sourcesDir, archiveWriter);
+    }
+
+    /**
+     * 一次匹配的结果
+     */
+    public static class Match {
+        private final String fingerprint;
+        private final String sourcesJar;
+        private final int classCount;
+
+        Match(String fingerprint, String sourcesJar, int classCount) {
+            this.fingerprint = fingerprint;
+            this.sourcesJar = sourcesJar;
+            this.classCount = classCount;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * 源码JAR文件名，无法确定时为 null
+         */
+        public String getSourcesJar() {
+            return sourcesJar;
+        }
+
+        public int getClassCount() {
+            return classCount;
+        }
+    }
+
+    /**
+     * 匹配磁盘上的归档，不是已知的库时返回 null
+     */
+    public Match match(File archive) throws IOException {
+        Contents contents = new Contents();
+        try (ZipFile zipFile = new ZipFile(archive)) {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry entry = zipEntries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if (contents.accept(entry.getName(), entry.getCrc())) {
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        contents.add(entry.getName(), in.readAllBytes());
+                    }
+                }
+            }
+        }
+        return match(contents);
+    }
+
+    /**
+     * 匹配已经读入内存的嵌套归档
+     */
+    Match match(ZipIndex archive) throws IOException {
+        Contents contents = new Contents();
+        for (ZipIndex.Entry entry : archive.entries()) {
+            if (!entry.isDirectory() && contents.accept(entry.name, entry.crc)) {
+                contents.add(entry.name, archive.read(entry));
+            }
+        }
+        return match(contents);
+    }
+
+    private Match match(Contents contents) {
+        int classCount = contents.classCrcs.size();
+        if (contents.pomProperties.size() == 1) {
+            Properties pom = contents.pomProperties.get(0);
+            String artifactId = pom.getProperty("artifactId");
+            String version = pom.getProperty("version");
+            String groupId = pom.getProperty("groupId");
+            if (groupId != null && artifactId != null && version != null) {
+                String prefix = "maven:" + groupId + ":" + artifactId + ":";
+                Match match = lookup(prefix, version, artifactId + "-" + version + "-sources.jar", classCount);
+                if (match != null) {
+                    return match;
+                }
+            }
+        }
+
+        if (contents.manifest != null) {
+            Attributes attributes = contents.manifest.getMainAttributes();
+            String title = attributes.getValue(Attributes.Name.IMPLEMENTATION_TITLE);
+            String version = attributes.getValue(Attributes.Name.IMPLEMENTATION_VERSION);
+            if (title != null && version != null) {
+                Match match = lookup("manifest:" + title + ":", version, null, classCount);
+                if (match != null) {
+                    return match;
+                }
+            }
+        }
+
+        if (hasClassDigests && classCount > 0) {
+            String key = "classes:" + contents.classDigest();
+            String sourcesJar = entries.get(key);
+            if (sourcesJar != null) {
+                return new Match(key, sourcesJar.isEmpty() ? null : sourcesJar, classCount);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 先按完整的版本查找，再查找匹配所有版本的记录
+     */
+    private Match lookup(String prefix, String version, String defaultSourcesJar, int classCount) {
+        for (String key : new String[]{prefix + version, prefix + ANY_VERSION}) {
+            String sourcesJar = entries.get(key);
+            if (sourcesJar != null) {
+                return new Match(prefix + version, sourcesJar.isEmpty() ? defaultSourcesJar : sourcesJar, classCount);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 处理匹配的归档：源码目录中有对应的源码JAR时把其中的 .java 文件输出到 outputDir，否则跳过
+     *
+     * @param input 最外层的输入，输出的源码文件记在它名下
+     * @param displayName 用于日志的归档名称
+     */
+    public void apply(File input, String displayName, Match match, File outputDir) {
+        skippedClasses.addAndGet(match.getClassCount());
+        File sourcesJar = sourcesDir == null || match.getSourcesJar() == null
+                ? null : new File(sourcesDir, match.getSourcesJar());
+        if (sourcesJar == null || !sourcesJar.isFile()) {
+            skippedArchives.incrementAndGet();
+            logger.info("跳过已知的第三方库: {} ({})", displayName, match.getFingerprint());
+            return;
+        }
+
+        try {
+            List<File> files = extractSources(sourcesJar, outputDir);
+            servedFiles.computeIfAbsent(input, key -> Collections.synchronizedList(new ArrayList<>())).addAll(files);
+            servedArchives.incrementAndGet();
+            logger.info("已知的第三方库 {} 使用源码JAR: {}，输出 {} 个源码文件", displayName, sourcesJar.getName(), files.size());
+        } catch (IOException e) {
+            skippedArchives.incrementAndGet();
+            logger.warn("读取源码JAR失败，跳过: {} - {}", sourcesJar.getAbsolutePath(), e.getMessage());
+        }
+    }
+
+    private List<File> extractSources(File sourcesJar, File outputDir) throws IOException {
+        Path root = outputDir.toPath().toAbsolutePath().normalize();
+        List<File> files = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(sourcesJar)) {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry entry = zipEntries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".java")) {
+                    continue;
+                }
+                Path target = root.resolve(entry.getName()).normalize();
+                if (!target.startsWith(root)) {
+                    logger.warn("跳过输出目录之外的条目: {}", entry.getName());
+                    continue;
+                }
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    if (archiveWriter != null) {
+                        archiveWriter.write(target.toFile(), in.readAllBytes());
+                    } else {
+                        Files.createDirectories(target.getParent());
+                        Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                files.add(target.toFile());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * 各个最外层输入输出的源码文件，用于记录到增量清单
+     */
+    public Map<File, List<File>> getServedFiles() {
+        return servedFiles;
+    }
+
+    public int getSkippedArchiveCount() {
+        return skippedArchives.get();
+    }
+
+    public int getServedArchiveCount() {
+        return servedArchives.get();
+    }
+
+    public int getSkippedClassCount() {
+        return skippedClasses.get();
+    }
+
+    /**
+     * 计算指纹需要的归档内容：所有class条目的 CRC-32，MANIFEST.MF 和 pom.properties
+     */
+    private static class Contents {
+        final Map<String, Long> classCrcs = new TreeMap<>();
+        final List<Properties> pomProperties = new ArrayList<>();
+        Manifest manifest;
+
+        /**
+         * 记录条目，返回 true 表示还需要读取条目的内容
+         */
+        boolean accept(String name, long crc) {
+            if (name.endsWith(".class")) {
+                classCrcs.put(name, crc);
+                return false;
+            }
+            return name.equals(MANIFEST_NAME) || (name.startsWith(MAVEN_PREFIX) && name.endsWith(POM_PROPERTIES));
+        }
+
+        void add(String name, byte[] bytes) throws IOException {
+            if (name.equals(MANIFEST_NAME)) {
+                manifest = new Manifest(new ByteArrayInputStream(bytes));
+            } else {
+                Properties properties = new Properties();
+                properties.load(new ByteArrayInputStream(bytes));
+                pomProperties.add(properties);
+            }
+        }
+
+        String classDigest() {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 不可用", e);
+            }
+            for (Map.Entry<String, Long> entry : classCrcs.entrySet()) {
+                digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(Long.toString(entry.getValue()).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+}
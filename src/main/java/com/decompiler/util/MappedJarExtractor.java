@@ -0,0 +1,123 @@
+package com.decompiler.util;
+
+import com.decompiler.config.ClassFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 基于内存映射的JAR解压
+ * 中央目录只解析一次（见 {@link ZipIndex}），先一次性创建所有目录，再把条目分给多个线程同时解压：
+ * STORED 条目通过 FileChannel.transferTo 直接从归档复制到目标文件，DEFLATED 条目直接从映射的缓冲区解压
+ *
+ * 只处理常见的JAR：ZIP64、加密条目、其他压缩方式或者超过2GB的文件由调用方改用逐个解压的方式
+ */
+final class MappedJarExtractor {
+    private static final Logger logger = LoggerFactory.getLogger(MappedJarExtractor.class);
+
+    private static final int MIN_ARCHIVE_SIZE = 22;
+
+    private MappedJarExtractor() {
+    }
+
+    /**
+     * 解压JAR，返回解压出的文件数；归档不是这里支持的格式时返回 -1，此时没有写出任何文件
+     * classFileListener 在多个线程中被调用，但同一时间只有一个线程在调用；被过滤器排除的class条目不解压
+     */
+    static int extract(File jarFile, File outputDir, Consumer<File> classFileListener, ClassFilter filter)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(jarFile.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE || fileSize < MIN_ARCHIVE_SIZE) {
+                return -1;
+            }
+
+            ZipIndex index = ZipIndex.parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize));
+            if (index == null) {
+                return -1;
+            }
+
+            Path root = outputDir.toPath().toAbsolutePath().normalize();
+            List<ZipIndex.Entry> files = new ArrayList<>(index.entries().size());
+            Set<Path> dirs = new TreeSet<>();
+            dirs.add(root);
+            for (ZipIndex.Entry entry : index.entries()) {
+                if (isClassEntry(entry) && !filter.accepts(entry.name)) {
+                    continue;
+                }
+                Path target = root.resolve(entry.name).normalize();
+                if (!target.startsWith(root)) {
+                    logger.warn("跳过输出目录之外的条目: {}", entry.name);
+                    continue;
+                }
+                if (entry.isDirectory()) {
+                    dirs.add(target);
+                } else {
+                    dirs.add(target.getParent());
+                    files.add(entry);
+                }
+            }
+
+            // 目录按路径排序，父目录总是先于子目录创建
+            for (Path dir : dirs) {
+                Files.createDirectories(dir);
+            }
+
+            AtomicInteger extractedFiles = new AtomicInteger(0);
+            Object listenerLock = new Object();
+            files.parallelStream().forEach(entry -> {
+                Path target = root.resolve(entry.name).normalize();
+                try {
+                    extractEntry(channel, index, entry, target);
+                    extractedFiles.incrementAndGet();
+                } catch (IOException e) {
+                    logger.warn("解压文件失败: {} - {}", entry.name, e.getMessage());
+                    return;
+                }
+
+                if (classFileListener != null && isClassEntry(entry)) {
+                    synchronized (listenerLock) {
+                        classFileListener.accept(target.toFile());
+                    }
+                }
+            });
+            return extractedFiles.get();
+        }
+    }
+
+    private static boolean isClassEntry(ZipIndex.Entry entry) {
+        return !entry.isDirectory() && entry.name.toLowerCase().endsWith(".class");
+    }
+
+    private static void extractEntry(FileChannel source, ZipIndex index, ZipIndex.Entry entry, Path target)
+            throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (entry.isStored()) {
+                long dataOffset = index.dataOffset(entry);
+                long transferred = 0;
+                while (transferred < entry.size) {
+                    long count = source.transferTo(dataOffset + transferred, entry.size - transferred, out);
+                    if (count <= 0) {
+                        throw new IOException("条目数据不完整");
+                    }
+                    transferred += count;
+                }
+            } else {
+                index.inflateTo(entry, out);
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.decompiler.util;
+
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.main.extern.IResultSaver;
+import org.jetbrains.java.decompiler.util.InterpreterUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.jar.Manifest;
+
+/**
+ * 把反编译结果写到目录中，并记录实际写出的每一个Java文件
+ * 调用方据此准确判断反编译是否产生了输出，不需要在反编译前后扫描输出目录
+ *
+ * 指定了 {@link SourceArchiveWriter} 时结果写入归档，不创建任何目录和文件；记录的仍是输出到目录时的文件位置
+ * 指定了 {@link IoExecutor} 时在其中并行写出，Vineflower 在一个线程中依次保存上下文中所有class的结果，
+ * 多个class的上下文由 {@link VineDecompiler} 在反编译结束后调用 awaitWrites 等待写出完成
+ */
+public class RecordingResultSaver implements IResultSaver {
+    private final Path root;
+    private final SourceArchiveWriter archiveWriter;
+    private final IoExecutor ioExecutor;
+    private final List<Future<?>> pendingWrites = Collections.synchronizedList(new ArrayList<>());
+    private final List<File> savedFiles = Collections.synchronizedList(new ArrayList<>());
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+
+    public RecordingResultSaver(File root) {
+        this(root, (SourceArchiveWriter) null);
+    }
+
+    /**
+     * @param archiveWriter 写入源码归档，为 null 时写到目录
+     */
+    public RecordingResultSaver(File root, SourceArchiveWriter archiveWriter) {
+        this.root = root.toPath().toAbsolutePath().normalize();
+        this.archiveWriter = archiveWriter;
+        this.ioExecutor = null;
+    }
+
+    /**
+     * @param ioExecutor 并行写到目录，写出完成前需要调用 awaitWrites
+     */
+    public RecordingResultSaver(File root, IoExecutor ioExecutor) {
+        this.root = root.toPath().toAbsolutePath().normalize();
+        this.archiveWriter = null;
+        this.ioExecutor = ioExecutor;
+    }
+
+    /**
+     * 本次反编译写出的Java文件，均为规范化后的绝对路径
+     */
+    public List<File> getSavedFiles() {
+        synchronized (savedFiles) {
+            return new ArrayList<>(savedFiles);
+        }
+    }
+
+    /**
+     * 写出的Java文件总字节数
+     */
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * 写文件花费的时间，多个线程同时保存时为各线程之和；并行写出时为等待写出完成的时间
+     */
+    public long getWriteNanos() {
+        return writeNanos.sum();
+    }
+
+    /**
+     * 等待已提交的写出完成，有写出失败时抛出第一个失败；没有使用I/O执行器时直接返回
+     */
+    public void awaitWrites() {
+        if (ioExecutor == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Future<?>> writes;
+        synchronized (pendingWrites) {
+            writes = new ArrayList<>(pendingWrites);
+            pendingWrites.clear();
+        }
+        RuntimeException failure = null;
+        try {
+            for (Future<?> write : writes) {
+                try {
+                    write.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException
+                                ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writes.forEach(write -> write.cancel(true));
+            throw new RuntimeException("等待写出源码时被中断", e);
+        } finally {
+            writeNanos.add(System.nanoTime() - start);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void saveFolder(String path) {
+        if (archiveWriter != null) {
+            return;
+        }
+        try {
+            Files.createDirectories(root.resolve(path));
+        } catch (IOException e) {
+            throw new RuntimeException("创建输出目录失败: " + path, e);
+        }
+    }
+
+    @Override
+    public void copyFile(String source, String path, String entryName) {
+        try {
+            File target = root.resolve(path).resolve(entryName).toFile();
+            if (archiveWriter != null) {
+                archiveWriter.write(target, Files.readAllBytes(Path.of(source)));
+            } else {
+                InterpreterUtil.copyFile(new File(source), target);
+            }
+        } catch (IOException e) {
+            DecompilerContext.getLogger().writeMessage("复制文件失败: " + source + " 到 " + entryName, e);
+        }
+    }
+
+    @Override
+    public void saveClassFile(String path, String qualifiedName, String entryName, String content, int[] mapping) {
+        write(root.resolve(path).resolve(entryName), content);
+    }
+
+    @Override
+    public void createArchive(String path, String archiveName, Manifest manifest) {
+    }
+
+    @Override
+    public void saveDirEntry(String path, String archiveName, String entryName) {
+        saveFolder(entryName);
+    }
+
+    @Override
+    public void copyEntry(String source, String path, String archiveName, String entryName) {
+    }
+
+    @Override
+    public void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content) {
+        write(root.resolve(entryName), content);
+    }
+
+    @Override
+    public void closeArchive(String path, String archiveName) {
+    }
+
+    private void write(Path file, String content) {
+        if (content == null) {
+            DecompilerContext.getLogger().writeMessage("源码为空，不写出: " + file,
+                    IFernflowerLogger.Severity.WARN);
+            return;
+        }
+
+        if (ioExecutor != null) {
+            pendingWrites.add(ioExecutor.submit(() -> {
+                writeFile(file, content);
+                return null;
+            }));
+            return;
+        }
+        long start = System.nanoTime();
+        writeFile(file, content);
+        writeNanos.add(System.nanoTime() - start);
+    }
+
+    private void writeFile(Path file, String content) {
+        Path normalized = file.toAbsolutePath().normalize();
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (archiveWriter != null) {
+                archiveWriter.write(normalized.toFile(), bytes);
+            } else {
+                Files.write(normalized, bytes);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("写出源码失败: " + normalized, e);
+        }
+        savedFiles.add(normalized.toFile());
+        bytesWritten.add(bytes.length);
+    }
+}
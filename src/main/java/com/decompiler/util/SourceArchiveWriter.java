@@ -0,0 +1,179 @@
+package com.decompiler.util;
+
+import com.decompiler.metrics.DecompileMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 把反编译出的源码写到一个 sources JAR/ZIP 中，不在输出目录下创建任何目录和文件
+ * 工作线程只把条目放入有界队列，由单独的写线程按到达顺序压缩写出；写线程处理不过来时工作线程阻塞等待
+ *
+ * 条目名称是源码文件相对输出目录的路径，与输出到目录时的目录结构一致。
+ * 归档先写到同目录下的临时文件，close 成功后才替换目标文件，中途失败不会留下不完整的归档
+ */
+public class SourceArchiveWriter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SourceArchiveWriter.class);
+
+    private static final Entry END_OF_ENTRIES = new Entry("", new byte[0]);
+
+    private final Path archive;
+    private final Path tempFile;
+    private final Path root;
+    private final DecompileMetrics metrics;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writerThread;
+    private volatile IOException failure;
+    private int entryCount;
+    private int duplicateCount;
+    private boolean closed;
+
+    /**
+     * 创建归档并启动写线程
+     *
+     * @param archive 输出的归档文件
+     * @param root 源码文件的根目录，即配置的输出目录，条目名称相对它计算
+     * @param queueCapacity 等待写出的条目数上限
+     */
+    public SourceArchiveWriter(File archive, File root, int queueCapacity, DecompileMetrics metrics) throws IOException {
+        this.archive = archive.toPath().toAbsolutePath().normalize();
+        this.root = root.toPath().toAbsolutePath().normalize();
+        this.metrics = metrics;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Files.createDirectories(this.archive.getParent());
+        this.tempFile = Files.createTempFile(this.archive.getParent(), this.archive.getFileName().toString(), ".tmp");
+        ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 64 * 1024));
+
+        this.writerThread = new Thread(() -> writeEntries(out), "source-archive-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+        logger.info("反编译结果写入归档: {}", this.archive);
+    }
+
+    /**
+     * 把源码文件放入写出队列，队列满时阻塞；写线程已经失败时抛出它的异常
+     *
+     * @param file 输出到目录时源码文件的位置，必须在输出目录下
+     */
+    public void write(File file, byte[] content) throws IOException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        if (!path.startsWith(root)) {
+            throw new IOException("源码文件不在输出目录中: " + path);
+        }
+        checkFailure();
+
+        String name = root.relativize(path).toString().replace(File.separatorChar, '/');
+        try {
+            queue.put(new Entry(name, content));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待写出源码时被中断: " + name);
+        }
+    }
+
+    /**
+     * 等待队列中的条目全部写出，完成归档并替换目标文件
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(END_OF_ENTRIES);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            writerThread.interrupt();
+            Thread.currentThread().interrupt();
+            Files.deleteIfExists(tempFile);
+            throw new InterruptedIOException("等待写出源码时被中断");
+        }
+
+        if (failure != null) {
+            Files.deleteIfExists(tempFile);
+            throw failure;
+        }
+        Files.move(tempFile, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        logger.info("归档 {} 共 {} 个源码文件{}", archive.getFileName(), entryCount,
+                duplicateCount > 0 ? "，忽略了 " + duplicateCount + " 个同名文件" : "");
+    }
+
+    public Path getArchive() {
+        return archive;
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException("写入源码归档失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 写线程：逐个写出队列中的条目，失败后继续取出条目但不再写出，使工作线程不会因为队列已满而一直阻塞
+     */
+    private void writeEntries(ZipOutputStream out) {
+        Set<String> names = new HashSet<>();
+        try (out) {
+            while (true) {
+                Entry entry = queue.take();
+                if (entry == END_OF_ENTRIES) {
+                    break;
+                }
+                if (failure != null) {
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                try {
+                    if (!names.add(entry.name)) {
+                        // 同一个源码文件被写出多次时保留第一次的内容，与输出到目录时的覆盖顺序无关
+                        duplicateCount++;
+                        logger.debug("忽略同名的源码文件: {}", entry.name);
+                        continue;
+                    }
+                    out.putNextEntry(new ZipEntry(entry.name));
+                    out.write(entry.content);
+                    out.closeEntry();
+                    entryCount++;
+                } catch (IOException e) {
+                    logger.error("写入源码归档失败: {}", archive, e);
+                    failure = e;
+                } finally {
+                    metrics.addPhaseTime(DecompileMetrics.Phase.WRITE, System.nanoTime() - start);
+                }
+            }
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("写线程被中断");
+        }
+    }
+
+    private static class Entry {
+        final String name;
+        final byte[] content;
+
+        Entry(String name, byte[] content) {
+            this.name = name;
+            this.content = content;
+        }
+    }
+}
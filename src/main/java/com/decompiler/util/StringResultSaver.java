@@ -0,0 +1,76 @@
+package com.decompiler.util;
+
+import org.jetbrains.java.decompiler.main.extern.IResultSaver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.Manifest;
+
+/**
+ * 把反编译出的源码保存在内存中，不创建任何目录和文件
+ * 源码按类的内部名称（如 com/example/Foo）记录，内部类与外部类在同一个上下文中时只有外部类的一份源码
+ */
+public class StringResultSaver implements IResultSaver {
+    private final Map<String, String> sources = new LinkedHashMap<>();
+
+    /**
+     * 类的源码，没有反编译出该类时返回 null
+     */
+    public synchronized String getSource(String internalName) {
+        return sources.get(internalName);
+    }
+
+    /**
+     * 本次反编译得到的全部源码，按保存顺序排列
+     */
+    public synchronized Map<String, String> getSources() {
+        return new LinkedHashMap<>(sources);
+    }
+
+    /**
+     * 清空已保存的源码，以便下次反编译重复使用
+     */
+    public synchronized void clear() {
+        sources.clear();
+    }
+
+    @Override
+    public void saveFolder(String path) {
+    }
+
+    @Override
+    public void copyFile(String source, String path, String entryName) {
+    }
+
+    @Override
+    public synchronized void saveClassFile(String path, String qualifiedName, String entryName, String content,
+                                           int[] mapping) {
+        if (content != null) {
+            sources.put(qualifiedName, content);
+        }
+    }
+
+    @Override
+    public void createArchive(String path, String archiveName, Manifest manifest) {
+    }
+
+    @Override
+    public void saveDirEntry(String path, String archiveName, String entryName) {
+    }
+
+    @Override
+    public void copyEntry(String source, String path, String archiveName, String entryName) {
+    }
+
+    @Override
+    public synchronized void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName,
+                                            String content) {
+        if (content != null) {
+            sources.put(qualifiedName, content);
+        }
+    }
+
+    @Override
+    public void closeArchive(String path, String archiveName) {
+    }
+}
@@ -1,16 +1,22 @@
 package com.decompiler.util;
 
-import org.jetbrains.java.decompiler.main.decompiler.ConsoleDecompiler;
+import org.jetbrains.java.decompiler.main.decompiler.BaseDecompiler;
+import org.jetbrains.java.decompiler.main.decompiler.ConsoleDecompiler.SaveType;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.main.extern.IResultSaver;
 
 import java.io.File;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Vineflower 反编译器包装类
- * 通过继承 ConsoleDecompiler 来访问其 protected 构造函数
+ * 基于 BaseDecompiler，除了文件之外还可以添加 IContextSource 作为反编译源（如直接从 JAR 读取的字节）
+ * 输出到目录时记录实际写出的Java文件，可通过 getSavedFiles 获取
+ * 保存器并行写出时，decompileContext 在全部写出完成后才返回
  */
-public class VineDecompiler extends ConsoleDecompiler {
+public class VineDecompiler extends BaseDecompiler {
+    private final IResultSaver saver;
 
     /**
      * 创建一个VineDecompiler实例
@@ -20,7 +26,7 @@ public class VineDecompiler extends ConsoleDecompiler {
      * @param logger 日志记录器
      */
     public VineDecompiler(File destination, Map<String, Object> options, IFernflowerLogger logger) {
-        super(destination, options, logger);
+        this(destination, options, logger, destination.isDirectory() ? SaveType.LEGACY_CONSOLEDECOMPILER : SaveType.FILE);
     }
 
     /**
@@ -32,6 +38,69 @@ public class VineDecompiler extends ConsoleDecompiler {
      * @param saveType 保存类型
      */
     public VineDecompiler(File destination, Map<String, Object> options, IFernflowerLogger logger, SaveType saveType) {
-        super(destination, options, logger, saveType);
+        this(createSaver(destination, saveType), options, logger);
     }
-}
\ No newline at end of file
+
+    /**
+     * 创建一个VineDecompiler实例
+     *
+     * @param saver 结果保存器
+     * @param options 反编译选项
+     * @param logger 日志记录器
+     */
+    public VineDecompiler(IResultSaver saver, Map<String, Object> options, IFernflowerLogger logger) {
+        super(saver, options, logger);
+        this.saver = saver;
+    }
+
+    @Override
+    public void decompileContext() {
+        try {
+            super.decompileContext();
+        } finally {
+            if (saver instanceof RecordingResultSaver) {
+                ((RecordingResultSaver) saver).awaitWrites();
+            }
+        }
+    }
+
+    /**
+     * 获取本次反编译写出的Java文件
+     * 只有输出到目录时才会记录，其他保存方式返回空列表
+     */
+    public List<File> getSavedFiles() {
+        if (saver instanceof RecordingResultSaver) {
+            return ((RecordingResultSaver) saver).getSavedFiles();
+        }
+        return List.of();
+    }
+
+    /**
+     * 本次反编译写出的字节数，规则与 getSavedFiles 相同
+     */
+    public long getBytesWritten() {
+        if (saver instanceof RecordingResultSaver) {
+            return ((RecordingResultSaver) saver).getBytesWritten();
+        }
+        return 0;
+    }
+
+    /**
+     * 本次反编译写文件花费的时间，规则与 getSavedFiles 相同
+     */
+    public long getWriteNanos() {
+        if (saver instanceof RecordingResultSaver) {
+            return ((RecordingResultSaver) saver).getWriteNanos();
+        }
+        return 0;
+    }
+
+    private static IResultSaver createSaver(File destination, SaveType saveType) {
+        // LEGACY_CONSOLEDECOMPILER 模式下 ConsoleDecompiler 以自身作为保存器，输出到目录时与 DirectoryResultSaver 行为一致
+        // 这里使用同样写到目录、但会记录写出文件的保存器
+        if (saveType == SaveType.LEGACY_CONSOLEDECOMPILER) {
+            return new RecordingResultSaver(destination);
+        }
+        return saveType.getSaver().apply(destination);
+    }
+}
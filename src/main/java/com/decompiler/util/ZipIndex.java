@@ -0,0 +1,248 @@
+package com.decompiler.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 从缓冲区（内存映射的文件或者读入内存的嵌套JAR）中解析出的ZIP中央目录，可以按名称随机读取条目
+ * 只支持常见的JAR：ZIP64、加密条目以及 STORED/DEFLATED 之外的压缩方式都视为不支持
+ * 解析完成后只做绝对位置的读取，可以由多个线程同时使用
+ */
+final class ZipIndex {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int CEN_HEADER_SIZE = 46;
+    private static final int LOC_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int INFLATE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 中央目录中的一个条目
+     */
+    static final class Entry {
+        final String name;
+        final int method;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        final long localHeaderOffset;
+
+        Entry(String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        boolean isStored() {
+            return method == STORED;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final List<Entry> entries;
+    private volatile Map<String, Entry> entriesByName;
+
+    private ZipIndex(ByteBuffer buffer, List<Entry> entries) {
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    /**
+     * 解析缓冲区中的中央目录，格式不支持时返回 null
+     */
+    static ZipIndex parse(ByteBuffer buffer) {
+        ByteBuffer littleEndian = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int eocd = findEndOfCentralDirectory(littleEndian);
+        if (eocd < 0) {
+            return null;
+        }
+
+        int entryCount = Short.toUnsignedInt(littleEndian.getShort(eocd + 10));
+        long cenSize = Integer.toUnsignedLong(littleEndian.getInt(eocd + 12));
+        long cenOffset = Integer.toUnsignedLong(littleEndian.getInt(eocd + 16));
+        // ZIP64 的中央目录需要读取扩展记录
+        if (entryCount == 0xFFFF || cenSize == 0xFFFFFFFFL || cenOffset == 0xFFFFFFFFL
+                || cenOffset + cenSize > eocd) {
+            return null;
+        }
+
+        List<Entry> entries = new ArrayList<>(entryCount);
+        int pos = (int) cenOffset;
+        for (int i = 0; i < entryCount; i++) {
+            if (pos + CEN_HEADER_SIZE > eocd || littleEndian.getInt(pos) != CEN_SIGNATURE) {
+                return null;
+            }
+            int flags = Short.toUnsignedInt(littleEndian.getShort(pos + 8));
+            int method = Short.toUnsignedInt(littleEndian.getShort(pos + 10));
+            long crc = Integer.toUnsignedLong(littleEndian.getInt(pos + 16));
+            long compressedSize = Integer.toUnsignedLong(littleEndian.getInt(pos + 20));
+            long size = Integer.toUnsignedLong(littleEndian.getInt(pos + 24));
+            int nameLength = Short.toUnsignedInt(littleEndian.getShort(pos + 28));
+            int extraLength = Short.toUnsignedInt(littleEndian.getShort(pos + 30));
+            int commentLength = Short.toUnsignedInt(littleEndian.getShort(pos + 32));
+            long localHeaderOffset = Integer.toUnsignedLong(littleEndian.getInt(pos + 42));
+
+            boolean encrypted = (flags & 1) != 0;
+            boolean zip64 = compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL;
+            if (encrypted || zip64 || (method != STORED && method != DEFLATED)) {
+                return null;
+            }
+
+            byte[] name = new byte[nameLength];
+            littleEndian.get(pos + CEN_HEADER_SIZE, name);
+            entries.add(new Entry(new String(name, StandardCharsets.UTF_8), method, crc,
+                    compressedSize, size, localHeaderOffset));
+            pos += CEN_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return new ZipIndex(littleEndian, Collections.unmodifiableList(entries));
+    }
+
+    /**
+     * 从末尾向前查找中央目录结束记录，末尾可能还有最长 65535 字节的注释
+     */
+    private static int findEndOfCentralDirectory(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        int stop = Math.max(0, limit - EOCD_SIZE - MAX_COMMENT_SIZE);
+        for (int pos = limit - EOCD_SIZE; pos >= stop; pos--) {
+            if (buffer.getInt(pos) == EOCD_SIGNATURE
+                    && pos + EOCD_SIZE + Short.toUnsignedInt(buffer.getShort(pos + 20)) == limit) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    List<Entry> entries() {
+        return entries;
+    }
+
+    Entry getEntry(String name) {
+        Map<String, Entry> byName = entriesByName;
+        if (byName == null) {
+            byName = new HashMap<>(entries.size() * 2);
+            for (Entry entry : entries) {
+                byName.putIfAbsent(entry.name, entry);
+            }
+            entriesByName = byName;
+        }
+        return byName.get(name);
+    }
+
+    /**
+     * 条目数据在缓冲区中的起始位置，本地文件头中的扩展字段长度可能与中央目录不同
+     */
+    long dataOffset(Entry entry) throws IOException {
+        int local = (int) entry.localHeaderOffset;
+        if (local + LOC_HEADER_SIZE > buffer.limit() || buffer.getInt(local) != LOC_SIGNATURE) {
+            throw new IOException("本地文件头错误: " + entry.name);
+        }
+        long dataOffset = local + LOC_HEADER_SIZE
+                + Short.toUnsignedInt(buffer.getShort(local + 26))
+                + Short.toUnsignedInt(buffer.getShort(local + 28));
+        if (dataOffset + entry.compressedSize > buffer.limit()) {
+            throw new IOException("条目数据超出文件范围: " + entry.name);
+        }
+        return dataOffset;
+    }
+
+    /**
+     * 读取条目解压后的全部字节
+     */
+    byte[] read(Entry entry) throws IOException {
+        if (entry.size > Integer.MAX_VALUE - 8) {
+            throw new IOException("条目过大: " + entry.name);
+        }
+        ByteBuffer data = compressedData(entry);
+        byte[] bytes = new byte[(int) entry.size];
+        if (entry.isStored()) {
+            data.get(bytes);
+            return bytes;
+        }
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            int offset = 0;
+            while (offset < bytes.length && !inflater.finished()) {
+                int count = inflater.inflate(bytes, offset, bytes.length - offset);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("压缩数据不完整: " + entry.name);
+                }
+                offset += count;
+            }
+            if (offset != bytes.length) {
+                throw new IOException("条目大小与中央目录不一致: " + entry.name);
+            }
+            return bytes;
+        } catch (DataFormatException e) {
+            throw new IOException("解压条目失败: " + entry.name, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 把条目的内容写到通道中，STORED 条目直接写出，DEFLATED 条目边解压边写出
+     */
+    void writeTo(Entry entry, WritableByteChannel out) throws IOException {
+        if (!entry.isStored()) {
+            inflateTo(entry, out);
+            return;
+        }
+        ByteBuffer data = compressedData(entry);
+        while (data.hasRemaining()) {
+            out.write(data);
+        }
+    }
+
+    /**
+     * 把 DEFLATED 条目解压后写到通道中，只使用固定大小的缓冲区
+     */
+    void inflateTo(Entry entry, WritableByteChannel out) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressedData(entry));
+            ByteBuffer chunk = ByteBuffer.allocate(INFLATE_BUFFER_SIZE);
+            while (!inflater.finished()) {
+                int count = inflater.inflate(chunk);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("压缩数据不完整: " + entry.name);
+                }
+                chunk.flip();
+                while (chunk.hasRemaining()) {
+                    out.write(chunk);
+                }
+                chunk.clear();
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("解压条目失败: " + entry.name, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private ByteBuffer compressedData(Entry entry) throws IOException {
+        return buffer.slice((int) dataOffset(entry), (int) entry.compressedSize);
+    }
+}
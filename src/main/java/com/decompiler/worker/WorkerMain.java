@@ -0,0 +1,108 @@
+package com.decompiler.worker;
+
+import com.decompiler.cache.ResultCache;
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.config.GroupingMode;
+import com.decompiler.metrics.DecompileMetrics;
+import com.decompiler.model.DecompileBatch;
+import com.decompiler.model.DecompileJob;
+import com.decompiler.task.BatchDecompileTask;
+import com.decompiler.task.DecompileResult;
+import com.decompiler.task.DecompileTask;
+import com.decompiler.task.TaskContext;
+import com.decompiler.task.TimeoutGuard;
+import com.decompiler.util.ArchiveReader;
+import com.decompiler.util.ClasspathIndex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工作进程入口，由 WorkerPool 启动
+ * 从标准输入读取任务，反编译后把结果写到标准输出，主进程关闭标准输入时退出
+ */
+public class WorkerMain {
+
+    public static void main(String[] args) throws IOException {
+        // 标准输出用于传递结果，日志和 Vineflower 的输出都改到标准错误，需要在初始化日志之前完成
+        FileOutputStream protocolOut = new FileOutputStream(FileDescriptor.out);
+        System.setOut(System.err);
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(protocolOut));
+
+        DecompilerConfig config = WorkerProtocol.readConfig(in);
+        Map<String, Object> options = WorkerProtocol.readOptions(in);
+
+        ResultCache resultCache = config.getCacheDir() != null
+                ? new ResultCache(new File(config.getCacheDir()), config.getCacheMaxSize(), options,
+                        config.getClasspathIndex() != null)
+                : null;
+        TimeoutGuard timeoutGuard = config.getJobTimeoutMillis() > 0 ? new TimeoutGuard() : null;
+
+        try (ArchiveReader archiveReader = new ArchiveReader()) {
+            // 主进程已经建好类路径索引，工作进程只映射同一个文件
+            ClasspathIndex classpath = config.getClasspathIndex() != null
+                    ? ClasspathIndex.open(new File(config.getClasspathIndex()), archiveReader)
+                    : null;
+            // 读写字节数和阶段耗时随每组结果回传主进程
+            DecompileMetrics metrics = new DecompileMetrics(1);
+            TaskContext context = new TaskContext(config, options, archiveReader, resultCache, timeoutGuard,
+                    metrics, null, classpath);
+            while (true) {
+                List<DecompileJob> jobs;
+                try {
+                    jobs = WorkerProtocol.readJobs(in);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                long[] before = WorkerProtocol.snapshot(metrics);
+                List<DecompileResult> results;
+                if (config.getGroupingMode() != GroupingMode.NONE && jobs.size() > 1) {
+                    DecompileBatch batch = new DecompileBatch(jobs.get(0).getTargetPath());
+                    jobs.forEach(batch::addJob);
+                    results = new BatchDecompileTask(batch, context).call();
+                } else {
+                    results = new ArrayList<>(jobs.size());
+                    for (DecompileJob job : jobs) {
+                        results.add(new DecompileTask(job, context).call());
+                    }
+                }
+
+                WorkerProtocol.writeResults(out, results, indexesOf(jobs, results), metrics, before);
+            }
+        } finally {
+            if (timeoutGuard != null) {
+                timeoutGuard.close();
+            }
+        }
+    }
+
+    /**
+     * 结果的顺序不一定与任务相同，按任务对象找到每个结果对应的下标
+     */
+    private static List<Integer> indexesOf(List<DecompileJob> jobs, List<DecompileResult> results) {
+        Map<DecompileJob, Integer> jobIndexes = new IdentityHashMap<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            jobIndexes.put(jobs.get(i), i);
+        }
+
+        List<Integer> indexes = new ArrayList<>(results.size());
+        for (DecompileResult result : results) {
+            indexes.add(jobIndexes.get(result.getJob()));
+        }
+        return indexes;
+    }
+}
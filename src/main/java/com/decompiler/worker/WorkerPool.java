@@ -0,0 +1,198 @@
+package com.decompiler.worker;
+
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.metrics.DecompileMetrics;
+import com.decompiler.model.DecompileJob;
+import com.decompiler.task.DecompileResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工作进程池，把反编译任务交给长期运行的子进程执行
+ * 子进程内存溢出、栈溢出导致崩溃或者无响应时只影响正在处理的任务，进程会在下次使用时重新启动
+ * 看门狗按class数量给每个请求一个期限，超过期限的进程被结束，其中的任务逐个重新提交
+ */
+public class WorkerPool implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(WorkerPool.class);
+
+    /**
+     * 工作进程在期限之外额外允许的时间（包括进程启动时间）
+     */
+    private static final long WORKER_GRACE_MILLIS = 10_000;
+
+    /**
+     * 没有设置任务期限时，看门狗为每个class允许的时间；工作进程内部不限制时间，只靠看门狗结束卡住的进程
+     */
+    private static final long DEFAULT_WORKER_JOB_TIMEOUT_MILLIS = 300_000;
+
+    /**
+     * 计算一个请求的期限时最多计入的class数量，更大的请求超时后逐个重新提交，每个class有自己的期限
+     */
+    private static final int MAX_DEADLINE_JOBS = 10;
+
+    private final DecompilerConfig config;
+    private final Map<String, Object> options;
+    private final DecompileMetrics metrics;
+    private final WorkerProcess[] workers;
+    private final BlockingQueue<Integer> idleSlots;
+    private final ScheduledExecutorService watchdog;
+    private final AtomicInteger nextWorkerId = new AtomicInteger(0);
+    private final AtomicInteger restartCount = new AtomicInteger(0);
+
+    /**
+     * @param metrics 累加工作进程返回的读写字节数和反编译、写文件耗时
+     * @param size 工作进程的数量
+     */
+    public WorkerPool(DecompilerConfig config, Map<String, Object> options, DecompileMetrics metrics, int size) {
+        this.config = config;
+        this.options = options;
+        this.metrics = metrics;
+        this.workers = new WorkerProcess[size];
+        this.idleSlots = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            idleSlots.add(i);
+        }
+        // 由看门狗结束无响应的进程
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "worker-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("使用 {} 个工作进程，每个进程最大堆内存 {} MB", size, config.getWorkerHeapMb());
+    }
+
+    /**
+     * 在工作进程中反编译一组任务
+     * 处理过程中进程退出时，多个任务改为逐个重新提交以找出导致崩溃的class，单个任务直接报告失败
+     */
+    public List<DecompileResult> decompile(List<DecompileJob> jobs) {
+        List<DecompileResult> results = send(jobs);
+        if (results != null) {
+            return results;
+        }
+        if (jobs.size() == 1) {
+            return List.of(new DecompileResult(jobs.get(0), false, "工作进程异常退出", null));
+        }
+
+        logger.warn("工作进程在处理 {} 个class时退出，改为逐个反编译", jobs.size());
+        results = new ArrayList<>(jobs.size());
+        for (DecompileJob job : jobs) {
+            List<DecompileResult> jobResults = send(List.of(job));
+            if (jobResults != null) {
+                results.addAll(jobResults);
+            } else {
+                results.add(new DecompileResult(job, false, "工作进程异常退出", null));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 取一个空闲的工作进程发送请求，进程不存在或已退出时先启动新进程
+     * 进程在处理过程中退出时返回 null
+     */
+    private List<DecompileResult> send(List<DecompileJob> jobs) {
+        int slot;
+        try {
+            slot = idleSlots.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failAll(jobs, "等待工作进程时被中断");
+        }
+
+        ScheduledFuture<?> killer = null;
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+        try {
+            WorkerProcess worker = workers[slot];
+            if (worker != null && !worker.isAlive()) {
+                // 空闲期间退出的进程
+                restartCount.incrementAndGet();
+                logger.warn("工作进程 {} 已退出，重新启动", worker.getId());
+                worker = null;
+            }
+            if (worker == null) {
+                worker = new WorkerProcess(nextWorkerId.incrementAndGet(), config, options);
+                workers[slot] = worker;
+            }
+
+            long deadline = deadlineMillis(jobs.size());
+            WorkerProcess target = worker;
+            killer = watchdog.schedule(() -> {
+                timedOut.set(true);
+                logger.warn("工作进程 {} 超过 {} ms 未返回结果，结束进程", target.getId(), deadline);
+                target.kill();
+            }, deadline, TimeUnit.MILLISECONDS);
+
+            try {
+                return worker.decompile(jobs, metrics);
+            } catch (IOException e) {
+                logger.warn("工作进程 {} 已退出，下次使用时重新启动: {}", worker.getId(), e.toString());
+                // 结束进程是异步的，直接丢弃该进程，避免下次使用时误认为它仍然可用
+                worker.kill();
+                workers[slot] = null;
+                restartCount.incrementAndGet();
+                if (timedOut.get() && jobs.size() == 1) {
+                    return failAll(jobs, "反编译超时（工作进程超过 " + deadline + " ms 未返回结果）");
+                }
+                return null;
+            }
+        } catch (IOException e) {
+            logger.error("启动工作进程失败", e);
+            return failAll(jobs, "启动工作进程失败: " + e.getMessage());
+        } finally {
+            if (killer != null) {
+                killer.cancel(false);
+            }
+            idleSlots.add(slot);
+        }
+    }
+
+    /**
+     * 一个请求的期限，按单个class的期限和请求中的class数量计算，class数量超过 MAX_DEADLINE_JOBS 时按它计算
+     * 设置了任务期限时工作进程内部整组超时后会逐个重试，因此留出两倍的时间
+     */
+    private long deadlineMillis(int jobCount) {
+        long perClass = config.getJobTimeoutMillis() > 0 ? config.getJobTimeoutMillis() * 2
+                : DEFAULT_WORKER_JOB_TIMEOUT_MILLIS;
+        return perClass * Math.min(jobCount, MAX_DEADLINE_JOBS) + WORKER_GRACE_MILLIS;
+    }
+
+    private static List<DecompileResult> failAll(List<DecompileJob> jobs, String errorMessage) {
+        List<DecompileResult> results = new ArrayList<>(jobs.size());
+        for (DecompileJob job : jobs) {
+            results.add(new DecompileResult(job, false, errorMessage, null));
+        }
+        return results;
+    }
+
+    /**
+     * 工作进程退出后被重新启动的次数
+     */
+    public int getRestartCount() {
+        return restartCount.get();
+    }
+
+    @Override
+    public void close() {
+        for (WorkerProcess worker : workers) {
+            if (worker != null) {
+                worker.close();
+            }
+        }
+        watchdog.shutdownNow();
+    }
+}
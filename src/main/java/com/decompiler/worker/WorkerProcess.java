@@ -0,0 +1,99 @@
+package com.decompiler.worker;
+
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.metrics.DecompileMetrics;
+import com.decompiler.model.DecompileJob;
+import com.decompiler.task.DecompileResult;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个工作进程，同一时间只处理一个请求
+ */
+class WorkerProcess implements Closeable {
+    /**
+     * 工作进程使用的日志配置，位于类路径中
+     */
+    private static final String WORKER_LOG_CONFIG = "logback-worker.xml";
+    /**
+     * 传给工作进程的进程编号，日志配置中引用它
+     */
+    private static final String WORKER_ID_PROPERTY = "decompiler.worker.id";
+
+    private final int id;
+    private final Process process;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+
+    WorkerProcess(int id, DecompilerConfig config, Map<String, Object> options) throws IOException {
+        this.id = id;
+
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+        command.add("-Xmx" + config.getWorkerHeapMb() + "m");
+        // 内存溢出后直接退出，由主进程重新启动，不在状态不确定的进程中继续反编译
+        command.add("-XX:+ExitOnOutOfMemoryError");
+        // 每个工作进程只有一个反编译线程，串行回收器的额外开销最小
+        command.add("-XX:+UseSerialGC");
+        // 虚拟机自身的输出（如内存溢出退出时的提示）默认写到标准输出，会破坏通信内容
+        command.add("-XX:+DisplayVMOutputToStderr");
+        // 日志只写到标准错误并标出进程编号，不与主进程同时写 logs/decompiler.log
+        command.add("-Dlogback.configurationFile=" + WORKER_LOG_CONFIG);
+        command.add("-D" + WORKER_ID_PROPERTY + "=" + id);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(WorkerMain.class.getName());
+
+        this.process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+        this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+
+        WorkerProtocol.writeHandshake(out, config, options);
+    }
+
+    int getId() {
+        return id;
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * 发送一组任务并等待结果，进程返回的指标计入 metrics，进程退出时抛出 IOException
+     */
+    List<DecompileResult> decompile(List<DecompileJob> jobs, DecompileMetrics metrics) throws IOException {
+        WorkerProtocol.writeJobs(out, jobs);
+        return WorkerProtocol.readResults(in, jobs, metrics);
+    }
+
+    /**
+     * 强制结束进程，用于进程无响应时
+     */
+    void kill() {
+        process.destroyForcibly();
+    }
+
+    /**
+     * 关闭标准输入通知进程退出
+     */
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            process.destroyForcibly();
+        }
+    }
+}
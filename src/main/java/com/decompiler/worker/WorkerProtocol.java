@@ -0,0 +1,206 @@
+package com.decompiler.worker;
+
+import com.decompiler.config.DecompilerConfig;
+import com.decompiler.config.GroupingMode;
+import com.decompiler.metrics.DecompileMetrics;
+import com.decompiler.model.DecompileJob;
+import com.decompiler.task.DecompileResult;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 主进程与工作进程之间的通信格式，通过工作进程的标准输入输出传递
+ *
+ * 启动时主进程发送一次配置和 Vineflower 选项，之后每个请求是一组任务，
+ * 工作进程处理完后按任务下标返回每个任务的结果和反编译耗时，以及处理这组任务时读写的字节数和各阶段耗时
+ */
+final class WorkerProtocol {
+    private static final int MAGIC = 0x4A44570A;
+    private static final int RESULTS_MAGIC = 0x4A445752;
+    /**
+     * writeUTF 最多写出 65535 字节，错误信息超出时截断
+     */
+    private static final int MAX_MESSAGE_LENGTH = 8192;
+
+    private WorkerProtocol() {
+    }
+
+    static void writeHandshake(DataOutputStream out, DecompilerConfig config, Map<String, Object> options) throws IOException {
+        out.writeInt(MAGIC);
+        writeNullableString(out, config.getInputPath());
+        writeNullableString(out, config.getOutputPath());
+        out.writeBoolean(config.isDeleteClassFiles());
+        out.writeBoolean(config.isInMemory());
+        out.writeUTF(config.getGroupingMode().name());
+        writeNullableString(out, config.getCacheDir());
+        out.writeLong(config.getCacheMaxSize());
+        out.writeLong(config.getJobTimeoutMillis());
+        writeNullableString(out, config.getClasspathIndex());
+
+        out.writeInt(options.size());
+        for (Map.Entry<String, Object> option : options.entrySet()) {
+            out.writeUTF(option.getKey());
+            out.writeUTF(String.valueOf(option.getValue()));
+        }
+        out.flush();
+    }
+
+    /**
+     * 读取主进程发送的配置，工作进程内只使用一个线程且不再启动子进程
+     */
+    static DecompilerConfig readConfig(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("工作进程协议不匹配");
+        }
+        return new DecompilerConfig.Builder()
+                .inputPath(readNullableString(in))
+                .outputPath(readNullableString(in))
+                .threadCount(1)
+                .deleteClassFiles(in.readBoolean())
+                .inMemory(in.readBoolean())
+                .groupingMode(GroupingMode.valueOf(in.readUTF()))
+                .cacheDir(readNullableString(in))
+                .cacheMaxSize(in.readLong())
+                .jobTimeoutMillis(in.readLong())
+                .classpathIndex(readNullableString(in))
+                .build();
+    }
+
+    static Map<String, Object> readOptions(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Map<String, Object> options = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            options.put(in.readUTF(), in.readUTF());
+        }
+        return options;
+    }
+
+    static void writeJobs(DataOutputStream out, List<DecompileJob> jobs) throws IOException {
+        out.writeInt(jobs.size());
+        for (DecompileJob job : jobs) {
+            out.writeUTF(job.getSourceFile().getPath());
+            writeNullableString(out, job.getEntryName());
+            out.writeLong(job.isArchiveEntry() ? job.getSize() : -1);
+            out.writeUTF(job.getTargetPath());
+            writeNullableString(out, job.getRelativePath());
+        }
+        out.flush();
+    }
+
+    static List<DecompileJob> readJobs(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<DecompileJob> jobs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            File sourceFile = new File(in.readUTF());
+            String entryName = readNullableString(in);
+            long entrySize = in.readLong();
+            String targetPath = in.readUTF();
+            String relativePath = readNullableString(in);
+            jobs.add(new DecompileJob(sourceFile, entryName, entrySize, targetPath, relativePath));
+        }
+        return jobs;
+    }
+
+    /**
+     * 工作进程中需要回传的指标的当前值，处理一组任务前后各取一次，差值随结果返回
+     */
+    static long[] snapshot(DecompileMetrics metrics) {
+        return new long[]{
+                metrics.getBytesRead(),
+                metrics.getBytesWritten(),
+                metrics.getPhaseNanos(DecompileMetrics.Phase.DECOMPILE),
+                metrics.getPhaseNanos(DecompileMetrics.Phase.WRITE)
+        };
+    }
+
+    /**
+     * 写出一组任务的结果
+     *
+     * @param jobIndexes 每个结果对应的任务在请求中的下标
+     * @param before 处理这组任务之前的指标，由 snapshot 得到
+     */
+    static void writeResults(DataOutputStream out, List<DecompileResult> results, List<Integer> jobIndexes,
+                             DecompileMetrics metrics, long[] before) throws IOException {
+        out.writeInt(RESULTS_MAGIC);
+        out.writeInt(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            DecompileResult result = results.get(i);
+            out.writeInt(jobIndexes.get(i));
+            out.writeUTF(result.getStatus().name());
+            String errorMessage = result.getErrorMessage();
+            if (errorMessage != null && errorMessage.length() > MAX_MESSAGE_LENGTH) {
+                errorMessage = errorMessage.substring(0, MAX_MESSAGE_LENGTH);
+            }
+            writeNullableString(out, errorMessage);
+            writeNullableString(out, result.getOutputPath());
+            out.writeInt(result.getOutputFiles().size());
+            for (File outputFile : result.getOutputFiles()) {
+                out.writeUTF(outputFile.getPath());
+            }
+            out.writeLong(result.getDecompileNanos());
+        }
+
+        long[] after = snapshot(metrics);
+        for (int i = 0; i < after.length; i++) {
+            out.writeLong(after[i] - before[i]);
+        }
+        out.flush();
+    }
+
+    /**
+     * 读取一组任务的结果，结果中的任务替换为主进程中对应的任务对象，工作进程返回的指标计入 metrics
+     */
+    static List<DecompileResult> readResults(DataInputStream in, List<DecompileJob> jobs, DecompileMetrics metrics)
+            throws IOException {
+        // 工作进程的标准输出混入了其他内容时按进程异常处理
+        int count = in.readInt() == RESULTS_MAGIC ? in.readInt() : -1;
+        if (count < 0 || count > jobs.size()) {
+            throw new IOException("工作进程返回的内容格式错误");
+        }
+
+        List<DecompileResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int jobIndex = in.readInt();
+            if (jobIndex < 0 || jobIndex >= jobs.size()) {
+                throw new IOException("工作进程返回的内容格式错误");
+            }
+            DecompileJob job = jobs.get(jobIndex);
+            DecompileResult.Status status = DecompileResult.Status.valueOf(in.readUTF());
+            String errorMessage = readNullableString(in);
+            String outputPath = readNullableString(in);
+
+            int fileCount = in.readInt();
+            List<File> outputFiles = new ArrayList<>(fileCount);
+            for (int j = 0; j < fileCount; j++) {
+                outputFiles.add(new File(in.readUTF()));
+            }
+            DecompileResult result = new DecompileResult(job, status, errorMessage, outputPath, outputFiles);
+            result.setDecompileNanos(in.readLong());
+            results.add(result);
+        }
+
+        metrics.addBytesRead(in.readLong());
+        metrics.addBytesWritten(in.readLong());
+        metrics.addPhaseTime(DecompileMetrics.Phase.DECOMPILE, in.readLong());
+        metrics.addPhaseTime(DecompileMetrics.Phase.WRITE, in.readLong());
+        return results;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}